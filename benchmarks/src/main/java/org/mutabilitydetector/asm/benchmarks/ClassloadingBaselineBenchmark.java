@@ -0,0 +1,109 @@
+package org.mutabilitydetector.asm.benchmarks;
+
+import static org.mutabilitydetector.asm.benchmarks.VerifierBenchmark.analyzeAllMethods;
+import static org.mutabilitydetector.asm.benchmarks.VerifierBenchmark.classesToVerify;
+import static org.mutabilitydetector.asm.benchmarks.VerifierBenchmark.interfacesOf;
+import static org.mutabilitydetector.asm.benchmarks.VerifierBenchmark.isInterface;
+import static org.mutabilitydetector.asm.benchmarks.VerifierBenchmark.superTypeOf;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.SimpleVerifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The classloading implementations from ASM, {@link SimpleVerifier} and {@link ClassWriter}, run over the same
+ * {@link Workload} as the non-classloading benchmarks. Since the JVM caches loaded classes, these represent the
+ * target for a fully warmed cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassloadingBaselineBenchmark {
+
+    private ExposedSimpleVerifier simpleVerifier;
+    private ExposedClassWriter classWriter;
+    private Type[][] assignabilityPairs;
+    private List<ClassNode> classes;
+
+    @Setup
+    public void setUp() throws IOException {
+        simpleVerifier = new ExposedSimpleVerifier();
+        classWriter = new ExposedClassWriter();
+        assignabilityPairs = Workload.descriptorPairs(Workload.ASSIGNABILITY_PAIRS);
+        classes = classesToVerify();
+    }
+
+    @Benchmark
+    public void isAssignableFrom(Blackhole blackhole) {
+        for (Type[] pair : assignabilityPairs) {
+            blackhole.consume(simpleVerifier.isAssignableFrom(pair[0], pair[1]));
+        }
+    }
+
+    @Benchmark
+    public void getCommonSuperClass(Blackhole blackhole) {
+        for (String[] pair : Workload.COMMON_SUPER_CLASS_PAIRS) {
+            blackhole.consume(classWriter.getCommonSuperClass(pair[0], pair[1]));
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void simpleVerifier(Blackhole blackhole) throws AnalyzerException {
+        for (ClassNode classNode : classes) {
+            analyzeAllMethods(classNode, new SimpleVerifier(
+                Opcodes.ASM7,
+                Type.getObjectType(classNode.name),
+                superTypeOf(classNode),
+                interfacesOf(classNode),
+                isInterface(classNode)) { }, blackhole);
+        }
+    }
+
+    // extend ASM's implementations in order to make the protected methods visible
+
+    private static final class ExposedSimpleVerifier extends SimpleVerifier {
+
+        ExposedSimpleVerifier() {
+            super(Opcodes.ASM7, null, null, null, false);
+        }
+
+        @Override
+        public boolean isAssignableFrom(Type t, Type u) {
+            return super.isAssignableFrom(t, u);
+        }
+    }
+
+    private static final class ExposedClassWriter extends ClassWriter {
+
+        ExposedClassWriter() {
+            super(ClassWriter.COMPUTE_FRAMES);
+        }
+
+        @Override
+        public String getCommonSuperClass(String type1, String type2) {
+            return super.getCommonSuperClass(type1, type2);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.mutabilitydetector.asm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mutabilitydetector.asm.NonClassloadingClassWriter;
+import org.mutabilitydetector.asm.typehierarchy.TypeHierarchyReader;
+import org.objectweb.asm.ClassWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link NonClassloadingClassWriter}'s implementation of getCommonSuperClass for each {@link ReaderKind}.
+ * See {@link ClassloadingBaselineBenchmark} for the classloading equivalent.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommonSuperClassBenchmark {
+
+    @Param
+    public ReaderKind readerKind;
+
+    private ExposedNonClassloadingClassWriter nonClassloadingWriter;
+    private String[][] pairs;
+
+    @Setup
+    public void setUp() {
+        nonClassloadingWriter = new ExposedNonClassloadingClassWriter(readerKind.create());
+        pairs = Workload.COMMON_SUPER_CLASS_PAIRS;
+    }
+
+    @Benchmark
+    public void getCommonSuperClass(Blackhole blackhole) {
+        for (String[] pair : pairs) {
+            blackhole.consume(nonClassloadingWriter.getCommonSuperClass(pair[0], pair[1]));
+        }
+    }
+
+    // extends NonClassloadingClassWriter in order to make getCommonSuperClass visible
+
+    private static final class ExposedNonClassloadingClassWriter extends NonClassloadingClassWriter {
+
+        ExposedNonClassloadingClassWriter(TypeHierarchyReader typeHierarchyReader) {
+            super(null, ClassWriter.COMPUTE_FRAMES, typeHierarchyReader);
+        }
+
+        @Override
+        public String getCommonSuperClass(String type1, String type2) {
+            return super.getCommonSuperClass(type1, type2);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.mutabilitydetector.asm.benchmarks;
+
+import org.mutabilitydetector.asm.typehierarchy.ConcurrentMapCachingTypeHierarchyReader;
+import org.mutabilitydetector.asm.typehierarchy.IsAssignableFromCachingTypeHierarchyReader;
+import org.mutabilitydetector.asm.typehierarchy.TypeHierarchyReader;
+
+/**
+ * The {@link TypeHierarchyReader} configurations compared by the benchmarks. Used as a JMH <code>@Param</code>, so
+ * the constant names are what appears in the results.
+ */
+public enum ReaderKind {
+
+    /**
+     * The default reader, which re-reads the class file on every query.
+     */
+    PLAIN {
+        @Override
+        public TypeHierarchyReader create() {
+            return new TypeHierarchyReader();
+        }
+    },
+
+    /**
+     * Caches {@link org.mutabilitydetector.asm.typehierarchy.TypeHierarchy} instances, but recomputes assignability.
+     */
+    CONCURRENT_MAP {
+        @Override
+        public TypeHierarchyReader create() {
+            return new ConcurrentMapCachingTypeHierarchyReader(new TypeHierarchyReader());
+        }
+    },
+
+    /**
+     * Caches the results of isAssignableFrom, but re-reads class files for every other query.
+     */
+    IS_ASSIGNABLE_FROM {
+        @Override
+        public TypeHierarchyReader create() {
+            return new IsAssignableFromCachingTypeHierarchyReader(new TypeHierarchyReader());
+        }
+    },
+
+    /**
+     * Both caching readers stacked, which is the configuration most applications are expected to use.
+     */
+    STACKED {
+        @Override
+        public TypeHierarchyReader create() {
+            return new IsAssignableFromCachingTypeHierarchyReader(
+                new ConcurrentMapCachingTypeHierarchyReader(new TypeHierarchyReader()));
+        }
+    };
+
+    public abstract TypeHierarchyReader create();
+}
@@ -0,0 +1,77 @@
+package org.mutabilitydetector.asm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mutabilitydetector.asm.typehierarchy.TypeHierarchyReader;
+import org.objectweb.asm.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link TypeHierarchyReader#hierarchyOf(Type)} and {@link TypeHierarchyReader#isAssignableFrom(Type, Type)}
+ * for each {@link ReaderKind}. See {@link ClassloadingBaselineBenchmark} for the classloading equivalents.
+ * <br>
+ * Each benchmark operation runs over the whole of the relevant {@link Workload} set, so scores are per set, not per
+ * individual query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypeHierarchyReaderBenchmark {
+
+    @Param
+    public ReaderKind readerKind;
+
+    private TypeHierarchyReader reader;
+    private Type[] types;
+    private Type[][] pairs;
+
+    @Setup
+    public void setUp() {
+        reader = readerKind.create();
+        types = Workload.objectTypes(Workload.TYPES);
+        pairs = Workload.descriptorPairs(Workload.ASSIGNABILITY_PAIRS);
+    }
+
+    @Benchmark
+    public void hierarchyOf(Blackhole blackhole) {
+        for (Type type : types) {
+            blackhole.consume(reader.hierarchyOf(type));
+        }
+    }
+
+    /**
+     * Builds a new reader for every operation, to show the cost paid by short-lived processes before caches are warm.
+     */
+    @Benchmark
+    public void hierarchyOfFromColdReader(Blackhole blackhole) {
+        TypeHierarchyReader coldReader = readerKind.create();
+        for (Type type : types) {
+            blackhole.consume(coldReader.hierarchyOf(type));
+        }
+    }
+
+    /**
+     * Asks about the same {@link Type} instances on every operation, as a verifier does, so that with a reader which
+     * caches assignability, each query after warm-up is a cache hit.
+     */
+    @Benchmark
+    public void isAssignableFrom(Blackhole blackhole) {
+        for (Type[] pair : pairs) {
+            blackhole.consume(reader.isAssignableFrom(pair[0], pair[1]));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.mutabilitydetector.asm.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.mutabilitydetector.asm.tree.analysis.NonClassloadingSimpleVerifier;
+import org.mutabilitydetector.asm.typehierarchy.TypeHierarchyReader;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.SimpleVerifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Runs an {@link Analyzer} over every method of the {@link Workload#CLASSES_TO_VERIFY}, using
+ * {@link NonClassloadingSimpleVerifier} for each {@link ReaderKind}. See {@link ClassloadingBaselineBenchmark} for the
+ * classloading equivalent.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VerifierBenchmark {
+
+    @Param
+    public ReaderKind readerKind;
+
+    private TypeHierarchyReader reader;
+    private List<ClassNode> classes;
+
+    @Setup
+    public void setUp() throws IOException {
+        reader = readerKind.create();
+        classes = classesToVerify();
+    }
+
+    @Benchmark
+    public void nonClassloadingSimpleVerifier(Blackhole blackhole) throws AnalyzerException {
+        for (ClassNode classNode : classes) {
+            analyzeAllMethods(classNode, new NonClassloadingSimpleVerifier(
+                Type.getObjectType(classNode.name),
+                superTypeOf(classNode),
+                interfacesOf(classNode),
+                isInterface(classNode),
+                reader), blackhole);
+        }
+    }
+
+    /**
+     * Class files are parsed into {@link ClassNode}s once, during setup, so that only analysis is measured.
+     */
+    static List<ClassNode> classesToVerify() throws IOException {
+        List<ClassNode> classes = new ArrayList<ClassNode>();
+        for (String internalName : Workload.CLASSES_TO_VERIFY) {
+            ClassNode classNode = new ClassNode();
+            new ClassReader(internalName).accept(classNode, ClassReader.SKIP_DEBUG);
+            classes.add(classNode);
+        }
+        return classes;
+    }
+
+    static void analyzeAllMethods(ClassNode classNode, SimpleVerifier verifier, Blackhole blackhole)
+        throws AnalyzerException
+    {
+        for (MethodNode method : classNode.methods) {
+            blackhole.consume(new Analyzer<BasicValue>(verifier).analyze(classNode.name, method));
+        }
+    }
+
+    static Type superTypeOf(ClassNode classNode) {
+        return classNode.superName == null ? null : Type.getObjectType(classNode.superName);
+    }
+
+    static List<Type> interfacesOf(ClassNode classNode) {
+        List<Type> interfaces = new ArrayList<Type>(classNode.interfaces.size());
+        for (String name : classNode.interfaces) {
+            interfaces.add(Type.getObjectType(name));
+        }
+        return interfaces;
+    }
+
+    static boolean isInterface(ClassNode classNode) {
+        return (classNode.access & Opcodes.ACC_INTERFACE) != 0;
+    }
+}
@@ -0,0 +1,90 @@
+package org.mutabilitydetector.asm.benchmarks;
+
+import org.objectweb.asm.Type;
+
+/**
+ * Fixed sets of JDK types used as input for the benchmarks. The types are chosen to have reasonably deep class and
+ * interface hierarchies, so that the cost of walking them is visible in the results.
+ */
+final class Workload {
+
+    private Workload() { }
+
+    static final String[] TYPES = {
+        "java/util/ArrayList",
+        "java/util/LinkedList",
+        "java/util/HashMap",
+        "java/util/LinkedHashMap",
+        "java/util/TreeMap",
+        "java/util/TreeSet",
+        "java/util/concurrent/ConcurrentHashMap",
+        "java/util/concurrent/ConcurrentSkipListMap",
+        "java/util/concurrent/CopyOnWriteArrayList",
+        "java/lang/Integer",
+        "java/lang/String",
+        "java/lang/StringBuilder",
+        "java/lang/NumberFormatException",
+        "java/io/FileNotFoundException",
+        "java/io/ByteArrayInputStream",
+        "java/io/BufferedInputStream",
+    };
+
+    /**
+     * Pairs of (to, from), a mix of assignable and non-assignable, including interfaces and arrays.
+     */
+    static final String[][] ASSIGNABILITY_PAIRS = {
+        { "Ljava/util/Collection;", "Ljava/util/ArrayList;" },
+        { "Ljava/util/List;", "Ljava/util/LinkedList;" },
+        { "Ljava/util/Map;", "Ljava/util/concurrent/ConcurrentSkipListMap;" },
+        { "Ljava/lang/Iterable;", "Ljava/util/TreeSet;" },
+        { "Ljava/lang/Number;", "Ljava/lang/Integer;" },
+        { "Ljava/lang/RuntimeException;", "Ljava/lang/NumberFormatException;" },
+        { "Ljava/io/Serializable;", "Ljava/util/HashMap;" },
+        { "Ljava/lang/CharSequence;", "Ljava/lang/StringBuilder;" },
+        { "Ljava/util/AbstractList;", "Ljava/util/concurrent/CopyOnWriteArrayList;" },
+        { "Ljava/util/RandomAccess;", "Ljava/util/LinkedList;" },
+        { "[Ljava/util/Collection;", "[Ljava/util/ArrayList;" },
+        { "[Ljava/lang/Object;", "[[Ljava/lang/String;" },
+    };
+
+    /**
+     * Pairs of internal names, as passed to ClassWriter.getCommonSuperClass.
+     */
+    static final String[][] COMMON_SUPER_CLASS_PAIRS = {
+        { "java/util/ArrayList", "java/util/LinkedList" },
+        { "java/util/HashMap", "java/util/TreeMap" },
+        { "java/util/LinkedHashMap", "java/util/HashMap" },
+        { "java/lang/Integer", "java/lang/Long" },
+        { "java/lang/NumberFormatException", "java/io/FileNotFoundException" },
+        { "java/io/ByteArrayInputStream", "java/io/BufferedInputStream" },
+        { "java/lang/String", "java/lang/StringBuilder" },
+        { "java/util/List", "java/util/ArrayList" },
+    };
+
+    /**
+     * Classes whose methods are run through an Analyzer in the verification benchmarks.
+     */
+    static final String[] CLASSES_TO_VERIFY = {
+        "java/util/ArrayList",
+        "java/util/HashMap",
+        "java/util/TreeMap",
+        "java/util/concurrent/ConcurrentSkipListMap",
+        "java/lang/StringBuilder",
+    };
+
+    static Type[] objectTypes(String[] internalNames) {
+        Type[] types = new Type[internalNames.length];
+        for (int i = 0; i < internalNames.length; i++) {
+            types[i] = Type.getObjectType(internalNames[i]);
+        }
+        return types;
+    }
+
+    static Type[][] descriptorPairs(String[][] descriptors) {
+        Type[][] pairs = new Type[descriptors.length][];
+        for (int i = 0; i < descriptors.length; i++) {
+            pairs[i] = new Type[] { Type.getType(descriptors[i][0]), Type.getType(descriptors[i][1]) };
+        }
+        return pairs;
+    }
+}
@@ -0,0 +1,413 @@
+package org.mutabilitydetector.asm;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.mutabilitydetector.asm.typehierarchy.ClassPathTypeHierarchyReader;
+import org.mutabilitydetector.asm.typehierarchy.CommonSuperClassFinder;
+import org.mutabilitydetector.asm.typehierarchy.ConcurrentMapCachingTypeHierarchyReader;
+import org.mutabilitydetector.asm.typehierarchy.TypeHierarchy;
+import org.mutabilitydetector.asm.typehierarchy.TypeHierarchyReader;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Rewrites every class in a jar through a {@link NonClassloadingClassWriter} with {@link ClassWriter#COMPUTE_FRAMES},
+ * and writes the result, with every other entry copied unchanged, to a new jar.
+ * <br>
+ * Runs as a pipeline of three stages. One thread reads entries from the input jar, and submits each class to an
+ * {@link ExecutorService}, where frames are computed in parallel with one shared {@link CommonSuperClassFinder}. The
+ * calling thread writes the results to the output jar in their original order. At most a fixed number of entries are
+ * held between the reading and writing stages, so memory use does not grow with the size of the jar.
+ * <br>
+ * Classes which use subroutines, i.e. the JSR and RET instructions which only classes older than Java 7 may contain,
+ * are copied unchanged, since ASM cannot compute frames for them, and the JVM verifies classes that old without
+ * frames. Classes under <code>META-INF/versions/</code>, of a multi-release jar, are also copied unchanged, like every
+ * other entry under <code>META-INF/</code>, since their types would need to be resolved against that version's view
+ * of the jar.
+ * <br>
+ * Since classes are rewritten, any signatures in the input jar would no longer be valid, and would fail verification
+ * when the classes are loaded. So the output jar is left unsigned: signature files are not copied, and digests are
+ * removed from the manifest.
+ * <br>
+ * Can be run from the command line, with the input and output jars followed by any classpath arguments needed to
+ * resolve types outside the input jar, each of which may hold several jars or directories separated by
+ * {@link File#pathSeparator}. Types found in neither are read from the system class path:
+ * <pre>
+ * java org.mutabilitydetector.asm.JarFrameRecomputer legacy.jar legacy-with-frames.jar lib/a.jar:lib/b.jar
+ * </pre>
+ */
+public class JarFrameRecomputer {
+
+    private final CommonSuperClassFinder commonSuperClassFinder;
+    private final ExecutorService executor;
+    private final int maximumEntriesInFlight;
+
+    /**
+     * @param typeHierarchyReader must be safe to share between threads, and is expected to cache
+     * @param maximumEntriesInFlight the number of entries which may be read ahead of the output jar
+     */
+    public JarFrameRecomputer(TypeHierarchyReader typeHierarchyReader, ExecutorService executor, int maximumEntriesInFlight) {
+        if (maximumEntriesInFlight < 1) {
+            throw new IllegalArgumentException("Must allow at least one entry in flight, but was " + maximumEntriesInFlight);
+        }
+        this.commonSuperClassFinder = new CommonSuperClassFinder(typeHierarchyReader);
+        this.executor = executor;
+        this.maximumEntriesInFlight = maximumEntriesInFlight;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: JarFrameRecomputer <input jar> <output jar> [<classpath>...]");
+            System.exit(1);
+        }
+        List<File> classPath = new ArrayList<File>();
+        classPath.add(new File(args[0]));
+        for (int i = 2; i < args.length; i++) {
+            for (String entry : args[i].split(File.pathSeparator)) {
+                if (!entry.isEmpty()) {
+                    classPath.add(new File(entry));
+                }
+            }
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ClassPathTypeHierarchyReader classPathReader = new ClassPathTypeHierarchyReader(classPath);
+        try {
+            TypeHierarchyReader reader = new ConcurrentMapCachingTypeHierarchyReader(
+                new ClassPathThenSystemTypeHierarchyReader(classPathReader));
+            long start = System.nanoTime();
+            int classCount = new JarFrameRecomputer(reader, executor, 4 * threads)
+                .recompute(new File(args[0]), new File(args[1]));
+            System.out.println("Recomputed frames of " + classCount + " classes in "
+                + (System.nanoTime() - start) / 1000000 + "ms");
+        } finally {
+            classPathReader.close();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Writes a copy of the input jar, with the frames of every class recomputed, to the output jar.
+     *
+     * @return the number of classes written, including those copied unchanged because they use subroutines
+     * @throws IOException if either jar could not be read or written, or a class could not be rewritten, in which
+     * case no output jar is left behind
+     */
+    public int recompute(File inputJar, File outputJar) throws IOException, InterruptedException {
+        ZipFile input = new ZipFile(inputJar);
+        BlockingQueue<PendingEntry> pending = new ArrayBlockingQueue<PendingEntry>(maximumEntriesInFlight);
+        EntryReader entryReader = new EntryReader(input, pending);
+        Thread readingThread = new Thread(entryReader, "JarFrameRecomputer reader for " + inputJar.getName());
+        readingThread.setDaemon(true);
+        readingThread.start();
+        boolean written = false;
+        try {
+            int classCount = writeInOrder(pending, outputJar);
+            written = true;
+            return classCount;
+        } finally {
+            readingThread.interrupt();
+            readingThread.join();
+            for (PendingEntry abandoned : pending) {
+                if (abandoned != PendingEntry.END) {
+                    abandoned.content.cancel(true);
+                }
+            }
+            input.close();
+            if (!written) {
+                outputJar.delete();
+            }
+        }
+    }
+
+    private int writeInOrder(BlockingQueue<PendingEntry> pending, File outputJar) throws IOException, InterruptedException {
+        int classCount = 0;
+        ZipOutputStream output = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(outputJar)));
+        try {
+            for (PendingEntry entry = pending.take(); entry != PendingEntry.END; entry = pending.take()) {
+                byte[] content = await(entry.content);
+                ZipEntry written = new ZipEntry(entry.name);
+                written.setTime(entry.time);
+                output.putNextEntry(written);
+                output.write(content);
+                output.closeEntry();
+                if (entry.isClass) {
+                    classCount++;
+                }
+            }
+        } finally {
+            output.close();
+        }
+        return classCount;
+    }
+
+    private static byte[] await(Future<byte[]> content) throws IOException, InterruptedException {
+        try {
+            return content.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Reads a class and writes it again with frames computed from scratch. The {@link ClassReader} is not given to
+     * the {@link ClassWriter}, since the writer would then copy unchanged methods as they are, with their old frames.
+     */
+    protected byte[] recomputeFrames(byte[] classFile) {
+        ClassReader classReader = new ClassReader(classFile);
+        if (SubroutineFinder.usesSubroutines(classReader)) {
+            return classFile;
+        }
+        ClassWriter classWriter = new NonClassloadingClassWriter(null, ClassWriter.COMPUTE_FRAMES, commonSuperClassFinder);
+        classReader.accept(classWriter, ClassReader.SKIP_FRAMES);
+        return classWriter.toByteArray();
+    }
+
+    /**
+     * Class files which contribute a type to the jar, so not those under <code>META-INF/</code>, such as multi-release
+     * versions, nor module descriptors.
+     */
+    private static boolean isClassFile(String entryName) {
+        return entryName.endsWith(".class")
+            && !entryName.startsWith("META-INF/")
+            && !entryName.equals("module-info.class");
+    }
+
+    /**
+     * Signature files, or the signature block files which sit alongside them, directly under <code>META-INF/</code>.
+     */
+    private static boolean isSignatureFile(String entryName) {
+        String upperCaseName = entryName.toUpperCase(Locale.ROOT);
+        return upperCaseName.startsWith("META-INF/")
+            && upperCaseName.indexOf('/', "META-INF/".length()) == -1
+            && (upperCaseName.endsWith(".SF")
+                || upperCaseName.endsWith(".RSA")
+                || upperCaseName.endsWith(".DSA")
+                || upperCaseName.endsWith(".EC")
+                || upperCaseName.startsWith("META-INF/SIG-"));
+    }
+
+    /**
+     * Removes the digests of signed entries from a manifest, along with any section left empty without them.
+     */
+    private static byte[] withoutDigests(byte[] manifestContent) throws IOException {
+        Manifest manifest = new Manifest(new ByteArrayInputStream(manifestContent));
+        Iterator<Attributes> sections = manifest.getEntries().values().iterator();
+        while (sections.hasNext()) {
+            Attributes section = sections.next();
+            Iterator<Object> names = section.keySet().iterator();
+            while (names.hasNext()) {
+                if (names.next().toString().toUpperCase(Locale.ROOT).endsWith("-DIGEST")) {
+                    names.remove();
+                }
+            }
+            if (section.isEmpty()) {
+                sections.remove();
+            }
+        }
+        ByteArrayOutputStream written = new ByteArrayOutputStream(manifestContent.length);
+        manifest.write(written);
+        return written.toByteArray();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Looks for JSR and RET instructions, for which {@link ClassWriter#COMPUTE_FRAMES} fails.
+     */
+    private static final class SubroutineFinder extends ClassVisitor {
+        private boolean found;
+
+        private SubroutineFinder() {
+            super(Opcodes.ASM7);
+        }
+
+        static boolean usesSubroutines(ClassReader classReader) {
+            // the major version, which must be below 51, i.e. Java 7, for a class to contain subroutines
+            if (classReader.readUnsignedShort(6) >= Opcodes.V1_7) {
+                return false;
+            }
+            SubroutineFinder finder = new SubroutineFinder();
+            classReader.accept(finder, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            return finder.found;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                         String[] exceptions) {
+            return found ? null : new MethodVisitor(Opcodes.ASM7) {
+                @Override
+                public void visitJumpInsn(int opcode, Label label) {
+                    found |= opcode == Opcodes.JSR;
+                }
+
+                @Override
+                public void visitVarInsn(int opcode, int var) {
+                    found |= opcode == Opcodes.RET;
+                }
+            };
+        }
+    }
+
+    private static final class PendingEntry {
+        static final PendingEntry END = new PendingEntry(null, 0, false, null);
+
+        final String name;
+        final long time;
+        final boolean isClass;
+        final Future<byte[]> content;
+
+        PendingEntry(String name, long time, boolean isClass, Future<byte[]> content) {
+            this.name = name;
+            this.time = time;
+            this.isClass = isClass;
+            this.content = content;
+        }
+    }
+
+    /**
+     * The first stage. Blocks while the queue to the writing stage is full. Any failure, whether to read the input jar
+     * or to submit a class to the executor, is passed to the writing stage as a failed entry, so that it never waits
+     * for an entry which will not come.
+     */
+    private final class EntryReader implements Runnable {
+        private final ZipFile input;
+        private final BlockingQueue<PendingEntry> pending;
+
+        EntryReader(ZipFile input, BlockingQueue<PendingEntry> pending) {
+            this.input = input;
+            this.pending = pending;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Enumeration<? extends ZipEntry> entries = input.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (entry.isDirectory() || isSignatureFile(entry.getName())) {
+                        continue;
+                    }
+                    final byte[] content = readFully(input.getInputStream(entry));
+                    if (isClassFile(entry.getName())) {
+                        pending.put(new PendingEntry(entry.getName(), entry.getTime(), true,
+                            executor.submit(new Callable<byte[]>() {
+                                @Override
+                                public byte[] call() {
+                                    return recomputeFrames(content);
+                                }
+                            })));
+                    } else if (entry.getName().equalsIgnoreCase(JarFile.MANIFEST_NAME)) {
+                        pending.put(new PendingEntry(entry.getName(), entry.getTime(), false,
+                            completed(withoutDigests(content))));
+                    } else {
+                        pending.put(new PendingEntry(entry.getName(), entry.getTime(), false, completed(content)));
+                    }
+                }
+                pending.put(PendingEntry.END);
+            } catch (InterruptedException e) {
+                // the writing stage has stopped, so there is no one to tell
+            } catch (Throwable e) {
+                try {
+                    pending.put(new PendingEntry(null, 0, false, failed(e)));
+                } catch (InterruptedException stopped) {
+                    // as above
+                }
+            }
+        }
+    }
+
+    private static Future<byte[]> completed(final byte[] content) {
+        FutureTask<byte[]> task = new FutureTask<byte[]>(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return content;
+            }
+        });
+        task.run();
+        return task;
+    }
+
+    private static Future<byte[]> failed(final Throwable failure) {
+        FutureTask<byte[]> task = new FutureTask<byte[]>(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                if (failure instanceof Error) {
+                    throw (Error) failure;
+                } else if (failure instanceof Exception) {
+                    throw (Exception) failure;
+                }
+                throw new Exception(failure);
+            }
+        });
+        task.run();
+        return task;
+    }
+
+    /**
+     * Reads types from the given classpath where they are found there, and from the system class path otherwise.
+     */
+    private static final class ClassPathThenSystemTypeHierarchyReader extends TypeHierarchyReader {
+        private final ClassPathTypeHierarchyReader classPath;
+
+        ClassPathThenSystemTypeHierarchyReader(ClassPathTypeHierarchyReader classPath) {
+            this.classPath = classPath;
+        }
+
+        @Override
+        public TypeHierarchy hierarchyOf(Type t) {
+            return t.getSort() == Type.OBJECT && classPath.contains(t)
+                ? classPath.hierarchyOf(t)
+                : super.hierarchyOf(t);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.mutabilitydetector.asm;
 
+import org.mutabilitydetector.asm.typehierarchy.CommonSuperClassFinder;
+import org.mutabilitydetector.asm.typehierarchy.HierarchyEvents;
 import org.mutabilitydetector.asm.typehierarchy.TypeHierarchyReader;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
@@ -36,12 +38,16 @@ public class NonClassloadingClassWriter extends ClassWriter {
      */
     protected final TypeHierarchyReader typeHierarchyReader;
 
+    /**
+     * Used to find common superclasses, remembering results between calls.
+     */
+    protected final CommonSuperClassFinder commonSuperClassFinder;
+
     /**
      * Constructor which chooses a naive {@link TypeHierarchyReader}.
      */
     public NonClassloadingClassWriter(int flags) {
-        super(flags);
-        this.typeHierarchyReader = new TypeHierarchyReader();
+        this(null, flags);
     }
 
     /**
@@ -56,8 +62,18 @@ public class NonClassloadingClassWriter extends ClassWriter {
      * hierarchy information for given {@link Type}s.
      */
     public NonClassloadingClassWriter(ClassReader classReader, int flags, TypeHierarchyReader typeHierarchyReader) {
+        this(classReader, flags, new CommonSuperClassFinder(typeHierarchyReader));
+    }
+
+    /**
+     * Constructor which uses the given {@link CommonSuperClassFinder}, and its
+     * {@link TypeHierarchyReader}. Sharing one finder between writers shares
+     * the common superclasses each of them has found.
+     */
+    public NonClassloadingClassWriter(ClassReader classReader, int flags, CommonSuperClassFinder commonSuperClassFinder) {
         super(classReader, flags);
-        this.typeHierarchyReader = typeHierarchyReader;
+        this.typeHierarchyReader = commonSuperClassFinder.typeHierarchyReader();
+        this.commonSuperClassFinder = commonSuperClassFinder;
     }
 
     /**
@@ -66,22 +82,11 @@ public class NonClassloadingClassWriter extends ClassWriter {
      */
     @Override
     protected String getCommonSuperClass(String type1, String type2) {
-        Type c = Type.getObjectType(type1);
-        Type d = Type.getObjectType(type2);
-
-        if (typeHierarchyReader.isAssignableFrom(c, d)) {
-            return type1;
-        }
-        if (typeHierarchyReader.isAssignableFrom(d, c)) {
-            return type2;
-        }
-        if (typeHierarchyReader.isInterface(c) || typeHierarchyReader.isInterface(d)) {
-            return "java/lang/Object";
-        } else {
-            do {
-                c = typeHierarchyReader.getSuperClass(c);
-            } while (!typeHierarchyReader.isAssignableFrom(c, d));
-            return c.getInternalName();
+        HierarchyEvents.Scope event = HierarchyEvents.begin(HierarchyEvents.Kind.COMMON_SUPER_CLASS);
+        try {
+            return commonSuperClassFinder.commonSuperClassOf(type1, type2);
+        } finally {
+            event.end(type1, type2);
         }
     }
 }
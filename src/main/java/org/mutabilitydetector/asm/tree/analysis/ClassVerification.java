@@ -0,0 +1,56 @@
+package org.mutabilitydetector.asm.tree.analysis;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+
+/**
+ * The outcome of verifying every method of one class.
+ *
+ * @see JarVerifier
+ */
+public final class ClassVerification {
+
+    private final String className;
+    private final int methodCount;
+    private final Map<String, AnalyzerException> failures;
+
+    ClassVerification(String className, int methodCount, Map<String, AnalyzerException> failures) {
+        this.className = className;
+        this.methodCount = methodCount;
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * The internal name of the verified class.
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * The number of methods verified, including those which failed.
+     */
+    public int getMethodCount() {
+        return methodCount;
+    }
+
+    /**
+     * The methods which failed verification, keyed by name and descriptor, e.g. <code>equals(Ljava/lang/Object;)Z</code>,
+     * in the order they appear in the class file.
+     */
+    public Map<String, AnalyzerException> getFailures() {
+        return failures;
+    }
+
+    public boolean isValid() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [className=%s, methodCount=%d, failures=%s]",
+            getClass().getSimpleName(), className, methodCount, failures.keySet());
+    }
+}
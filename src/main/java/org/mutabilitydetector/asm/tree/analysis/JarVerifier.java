@@ -0,0 +1,204 @@
+package org.mutabilitydetector.asm.tree.analysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.mutabilitydetector.asm.typehierarchy.TypeHierarchyReader;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicValue;
+
+/**
+ * Verifies every method of every class in a jar with a {@link NonClassloadingSimpleVerifier}, spreading classes across
+ * the threads of an {@link ExecutorService}.
+ * <br>
+ * Every class is verified with the same {@link TypeHierarchyReader}, which must therefore be safe to share between
+ * threads, e.g. a {@link org.mutabilitydetector.asm.typehierarchy.ConcurrentMapCachingTypeHierarchyReader}. Results
+ * are passed to a {@link ResultHandler} on the calling thread, in the order the classes appear in the jar. Only a
+ * bounded number of classes are read ahead of the handler, so memory use does not grow with the size of the jar.
+ * <br>
+ * A run stops early when the handler asks it to, when the deadline passes, or when the calling thread is interrupted.
+ * In each case, classes still being verified are cancelled. The executor is not shut down.
+ */
+public class JarVerifier {
+
+    /**
+     * Receives the verification of each class, in the order the classes appear in the jar.
+     */
+    public interface ResultHandler {
+        /**
+         * @return true to continue, false to cancel the rest of the run
+         */
+        boolean handle(ClassVerification result);
+    }
+
+    private final TypeHierarchyReader typeHierarchyReader;
+    private final ExecutorService executor;
+    private final int maximumClassesInFlight;
+
+    public JarVerifier(TypeHierarchyReader typeHierarchyReader, ExecutorService executor) {
+        this(typeHierarchyReader, executor, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param maximumClassesInFlight the number of classes which may be read and verified ahead of the handler
+     */
+    public JarVerifier(TypeHierarchyReader typeHierarchyReader, ExecutorService executor, int maximumClassesInFlight) {
+        if (maximumClassesInFlight < 1) {
+            throw new IllegalArgumentException("Must allow at least one class in flight, but was " + maximumClassesInFlight);
+        }
+        this.typeHierarchyReader = typeHierarchyReader;
+        this.executor = executor;
+        this.maximumClassesInFlight = maximumClassesInFlight;
+    }
+
+    /**
+     * Verifies every class in the jar, without a deadline.
+     *
+     * @return false if the handler cancelled the run, else true
+     */
+    public boolean verify(File jar, ResultHandler handler) throws IOException, InterruptedException {
+        try {
+            return verify(jar, Long.MAX_VALUE, TimeUnit.NANOSECONDS, handler);
+        } catch (TimeoutException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Verifies every class in the jar, stopping if the run has not finished within the given time.
+     *
+     * @return false if the handler cancelled the run, else true
+     * @throws TimeoutException if the deadline passed before every class was verified
+     * @throws IOException if the jar, or a class file within it, could not be read
+     */
+    public boolean verify(File jar, long timeout, TimeUnit unit, ResultHandler handler)
+        throws IOException, InterruptedException, TimeoutException
+    {
+        long timeoutNanos = unit.toNanos(timeout);
+        long deadline = timeoutNanos >= Long.MAX_VALUE / 2 ? Long.MAX_VALUE : System.nanoTime() + timeoutNanos;
+        ZipFile archive = new ZipFile(jar);
+        Deque<Future<ClassVerification>> inFlight = new ArrayDeque<Future<ClassVerification>>();
+        try {
+            Enumeration<? extends ZipEntry> entries = archive.entries();
+            while (true) {
+                while (inFlight.size() < maximumClassesInFlight && entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (!entry.isDirectory() && isClassFile(entry.getName())) {
+                        inFlight.addLast(executor.submit(new VerifyClass(archive, entry)));
+                    }
+                }
+                if (inFlight.isEmpty()) {
+                    return true;
+                }
+                if (!handler.handle(await(inFlight.removeFirst(), deadline))) {
+                    return false;
+                }
+            }
+        } finally {
+            for (Future<ClassVerification> cancelled : inFlight) {
+                cancelled.cancel(true);
+            }
+            archive.close();
+        }
+    }
+
+    private static boolean isClassFile(String entryName) {
+        return entryName.endsWith(".class")
+            && !entryName.startsWith("META-INF/")
+            && !entryName.equals("module-info.class");
+    }
+
+    private static ClassVerification await(Future<ClassVerification> verification, long deadline)
+        throws IOException, InterruptedException, TimeoutException
+    {
+        try {
+            if (deadline == Long.MAX_VALUE) {
+                return verification.get();
+            }
+            return verification.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            verification.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Verifies each method of a class independently, so that one failure does not hide others.
+     */
+    protected ClassVerification verify(ClassNode classNode) {
+        List<Type> interfaces = new ArrayList<Type>(classNode.interfaces.size());
+        for (String interfaceName : classNode.interfaces) {
+            interfaces.add(Type.getObjectType(interfaceName));
+        }
+        NonClassloadingSimpleVerifier verifier = new NonClassloadingSimpleVerifier(
+            Type.getObjectType(classNode.name),
+            classNode.superName == null ? null : Type.getObjectType(classNode.superName),
+            interfaces,
+            (classNode.access & Opcodes.ACC_INTERFACE) != 0,
+            typeHierarchyReader);
+
+        Map<String, AnalyzerException> failures = new LinkedHashMap<String, AnalyzerException>();
+        for (MethodNode method : classNode.methods) {
+            try {
+                new Analyzer<BasicValue>(verifier).analyze(classNode.name, method);
+            } catch (AnalyzerException e) {
+                failures.put(method.name + method.desc, e);
+            }
+        }
+        return new ClassVerification(classNode.name, classNode.methods.size(), failures);
+    }
+
+    private final class VerifyClass implements Callable<ClassVerification> {
+        private final ZipFile archive;
+        private final ZipEntry entry;
+
+        VerifyClass(ZipFile archive, ZipEntry entry) {
+            this.archive = archive;
+            this.entry = entry;
+        }
+
+        @Override
+        public ClassVerification call() throws IOException {
+            ClassNode classNode = new ClassNode();
+            InputStream classFile = archive.getInputStream(entry);
+            try {
+                new ClassReader(classFile).accept(classNode, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            } finally {
+                classFile.close();
+            }
+            return verify(classNode);
+        }
+    }
+}
@@ -30,6 +30,7 @@
 
 package org.mutabilitydetector.asm.tree.analysis;
 
+import org.mutabilitydetector.asm.typehierarchy.HierarchyEvents;
 import org.mutabilitydetector.asm.typehierarchy.TypeHierarchy;
 import org.mutabilitydetector.asm.typehierarchy.TypeHierarchyReader;
 import org.objectweb.asm.ClassReader;
@@ -152,6 +153,15 @@ public class NonClassloadingSimpleVerifier extends SimpleVerifier {
      */
     @Override
     public boolean isAssignableFrom(Type toType, Type fromType) {
+        HierarchyEvents.Scope event = HierarchyEvents.begin(HierarchyEvents.Kind.IS_ASSIGNABLE_FROM);
+        try {
+            return isAssignableFromWithoutEvent(toType, fromType);
+        } finally {
+            event.end(toType, fromType);
+        }
+    }
+
+    private boolean isAssignableFromWithoutEvent(Type toType, Type fromType) {
         if (toType.equals(fromType)) {
             return true;
         }
@@ -0,0 +1,346 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.objectweb.asm.Type;
+
+/**
+ * Caches {@link TypeHierarchy} results up to a maximum number of entries, for long-running processes which see many
+ * unrelated types over their lifetime.
+ * <br>
+ * Uses the W-TinyLFU policy: new entries are admitted to a small LRU window, and an entry leaving the window is only
+ * admitted to the main LRU space if a sketch of recent usage estimates it to be used more often than the entry it
+ * would replace. This protects frequently used types from being flushed out by a scan of types which are each used
+ * only once. The main space is segmented, so entries which are used again after admission are protected from
+ * eviction ahead of those which are not.
+ * <br>
+ * Pinned types, by default the core types in {@link #DEFAULT_PINNED_TYPES} such as java/lang/Object and
+ * java/lang/String, are never evicted once loaded, and do not count towards the maximum size. Primitive types are
+ * never cached, since the underlying reader returns constants for them.
+ * <br>
+ * Lookups which hit the cache do not block, nor touch the lock which guards the policy. Each hit is recorded in one of
+ * several small buffers, chosen by thread, and the buffers are replayed against the policy under the lock when one
+ * fills, or when an entry is added. A hit is dropped if its buffer is full or another thread is writing to the same
+ * slot, which only makes the policy slightly less accurate.
+ */
+public class BoundedCachingTypeHierarchyReader extends TypeHierarchyReader {
+
+    public static final Set<Type> DEFAULT_PINNED_TYPES = Collections.unmodifiableSet(new HashSet<Type>(Arrays.asList(
+        Type.getType(Object.class),
+        Type.getType(String.class),
+        Type.getType(Class.class),
+        Type.getType(Enum.class),
+        Type.getType(Number.class),
+        Type.getType(CharSequence.class),
+        Type.getType(Comparable.class),
+        Type.getType(Cloneable.class),
+        Type.getType(Serializable.class),
+        Type.getType(Iterable.class),
+        Type.getType(Throwable.class),
+        Type.getType(Exception.class),
+        Type.getType(RuntimeException.class),
+        Type.getType(Error.class),
+        Type.getType(Collection.class),
+        Type.getType(List.class),
+        Type.getType(Map.class))));
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int PINNED = 3;
+    private static final int EVICTED = 4;
+
+    private static final int READ_BUFFERS = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+
+    private final TypeHierarchyReader baseReader;
+    private final int maximumSize;
+    private final Set<Type> pinnedTypes;
+    private final ConcurrentMap<Type, Node> data = new ConcurrentHashMap<Type, Node>();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final ReadBuffer[] readBuffers = new ReadBuffer[READ_BUFFERS];
+    private final FrequencySketch sketch;
+    private final AccessOrderQueue window = new AccessOrderQueue();
+    private final AccessOrderQueue probation = new AccessOrderQueue();
+    private final AccessOrderQueue protectedQueue = new AccessOrderQueue();
+    private final int maximumWindowSize;
+    private final int maximumMainSize;
+    private final int maximumProtectedSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BoundedCachingTypeHierarchyReader(TypeHierarchyReader baseReader, int maximumSize) {
+        this(baseReader, maximumSize, DEFAULT_PINNED_TYPES);
+    }
+
+    public BoundedCachingTypeHierarchyReader(TypeHierarchyReader baseReader,
+                                             int maximumSize,
+                                             Collection<Type> pinnedTypes) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be positive, but was " + maximumSize);
+        }
+        this.baseReader = baseReader;
+        this.maximumSize = maximumSize;
+        this.pinnedTypes = new HashSet<Type>(pinnedTypes);
+        this.sketch = new FrequencySketch(maximumSize);
+        this.maximumWindowSize = Math.max(1, maximumSize / 100);
+        this.maximumMainSize = maximumSize - maximumWindowSize;
+        this.maximumProtectedSize = maximumMainSize * 4 / 5;
+        for (int i = 0; i < readBuffers.length; i++) {
+            readBuffers[i] = new ReadBuffer();
+        }
+    }
+
+    @Override
+    public TypeHierarchy hierarchyOf(Type t) {
+        if (t.getSort() < Type.ARRAY) {
+            return baseReader.hierarchyOf(t);
+        }
+
+        Node node = data.get(t);
+        if (node != null) {
+            hits.increment();
+            if (node.queue != PINNED && readBufferOf(Thread.currentThread()).offer(node) && evictionLock.tryLock()) {
+                try {
+                    drainReadBuffers();
+                } finally {
+                    evictionLock.unlock();
+                }
+            }
+            return node.value;
+        }
+
+        misses.increment();
+        TypeHierarchy loaded = baseReader.hierarchyOf(t);
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            Node existing = data.get(t);
+            if (existing != null) {
+                return existing.value;
+            }
+            Node added = new Node(t, loaded);
+            data.put(t, added);
+            if (pinnedTypes.contains(t)) {
+                added.queue = PINNED;
+            } else {
+                sketch.increment(t);
+                added.queue = WINDOW;
+                window.addFirst(added);
+                evictFromWindow();
+            }
+            return loaded;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * The maximum number of entries held, not including pinned types.
+     */
+    public int maximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * The number of entries currently held, including pinned types.
+     */
+    public int size() {
+        return data.size();
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), data.size());
+    }
+
+    private ReadBuffer readBufferOf(Thread thread) {
+        long id = thread.getId() * 0x9E3779B97F4A7C15L;
+        return readBuffers[(int) (id >>> 32) & (READ_BUFFERS - 1)];
+    }
+
+    /**
+     * Must be called while holding the lock.
+     */
+    private void drainReadBuffers() {
+        for (ReadBuffer readBuffer : readBuffers) {
+            for (Node node = readBuffer.poll(); node != null; node = readBuffer.poll()) {
+                onAccess(node);
+            }
+        }
+    }
+
+    private void onAccess(Node node) {
+        sketch.increment(node.key);
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToFirst(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                node.queue = PROTECTED;
+                protectedQueue.addFirst(node);
+                demoteFromProtected();
+                break;
+            case PROTECTED:
+                protectedQueue.moveToFirst(node);
+                break;
+            default:
+                // evicted by another thread since it was read from the map
+                break;
+        }
+    }
+
+    private void demoteFromProtected() {
+        while (protectedQueue.size > maximumProtectedSize) {
+            Node demoted = protectedQueue.removeLast();
+            demoted.queue = PROBATION;
+            probation.addFirst(demoted);
+        }
+    }
+
+    /**
+     * Entries leaving the window compete with the least recently used entry on probation for a place in the main
+     * space, and whichever is estimated to be used less frequently is evicted.
+     */
+    private void evictFromWindow() {
+        while (window.size > maximumWindowSize) {
+            Node candidate = window.removeLast();
+            candidate.queue = PROBATION;
+            probation.addFirst(candidate);
+
+            if (probation.size + protectedQueue.size > maximumMainSize) {
+                Node victim = probation.last();
+                if (victim == candidate || sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                    evict(victim);
+                } else {
+                    evict(candidate);
+                }
+            }
+        }
+    }
+
+    private void evict(Node node) {
+        probation.remove(node);
+        node.queue = EVICTED;
+        data.remove(node.key, node);
+        evictions.increment();
+    }
+
+    private static final class Node {
+        final Type key;
+        final TypeHierarchy value;
+        int queue;
+        Node previous;
+        Node next;
+
+        Node(Type key, TypeHierarchy value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * A lossy ring of recent hits, written by any thread and read only while holding the lock. A writer claims a slot
+     * by advancing the write count, and gives up rather than retry if another writer claims it first.
+     */
+    private static final class ReadBuffer {
+        private static final int SIZE = 16;
+
+        private final AtomicReferenceArray<Node> slots = new AtomicReferenceArray<Node>(SIZE);
+        private final AtomicLong writeCount = new AtomicLong();
+        private volatile long readCount;
+
+        /**
+         * @return true if the buffer is full, and should be drained
+         */
+        boolean offer(Node node) {
+            long read = readCount;
+            long written = writeCount.get();
+            if (written - read >= SIZE) {
+                return true;
+            }
+            if (writeCount.compareAndSet(written, written + 1)) {
+                slots.lazySet((int) written & (SIZE - 1), node);
+                return written + 1 - read >= SIZE;
+            }
+            return false;
+        }
+
+        /**
+         * @return the oldest hit, or null if there is none, or its writer has not yet filled its slot
+         */
+        Node poll() {
+            long read = readCount;
+            if (read == writeCount.get()) {
+                return null;
+            }
+            int slot = (int) read & (SIZE - 1);
+            Node node = slots.get(slot);
+            if (node == null) {
+                return null;
+            }
+            slots.lazySet(slot, null);
+            readCount = read + 1;
+            return node;
+        }
+    }
+
+    /**
+     * An intrusive doubly-linked list of nodes, most recently used first.
+     */
+    private static final class AccessOrderQueue {
+        private final Node sentinel = new Node(null, null);
+        int size;
+
+        AccessOrderQueue() {
+            sentinel.previous = sentinel;
+            sentinel.next = sentinel;
+        }
+
+        void addFirst(Node node) {
+            node.previous = sentinel;
+            node.next = sentinel.next;
+            sentinel.next.previous = node;
+            sentinel.next = node;
+            size++;
+        }
+
+        void remove(Node node) {
+            node.previous.next = node.next;
+            node.next.previous = node.previous;
+            node.previous = null;
+            node.next = null;
+            size--;
+        }
+
+        void moveToFirst(Node node) {
+            remove(node);
+            addFirst(node);
+        }
+
+        Node last() {
+            return sentinel.previous;
+        }
+
+        Node removeLast() {
+            Node last = sentinel.previous;
+            remove(last);
+            return last;
+        }
+    }
+}
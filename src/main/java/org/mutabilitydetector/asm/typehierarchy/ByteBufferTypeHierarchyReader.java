@@ -0,0 +1,112 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.objectweb.asm.Type;
+
+/**
+ * Reads class files from one or more {@link ClassFileBufferSource}s, parsing the header of each directly from the
+ * buffer returned, so that no array is allocated for, and no copy is made of, the class file.
+ * <br>
+ * Sources are searched in order, and the first to hold a type is used, as a class loader would. {@link #reader(Type)}
+ * still works, for subclasses which need a {@link org.objectweb.asm.ClassReader}, but copies the class file to do so.
+ * <br>
+ * This reader performs no caching, and is intended to be decorated with one of the caching readers. Closing it closes
+ * each source.
+ */
+public class ByteBufferTypeHierarchyReader extends TypeHierarchyReader implements Closeable {
+
+    private final List<ClassFileBufferSource> sources;
+
+    public ByteBufferTypeHierarchyReader(ClassFileBufferSource... sources) {
+        this.sources = Arrays.asList(sources.clone());
+    }
+
+    @Override
+    public TypeHierarchy hierarchyOf(Type t) {
+        if (t.getSort() != Type.OBJECT) {
+            return super.hierarchyOf(t);
+        }
+        HierarchyEvents.Scope event = HierarchyEvents.begin(HierarchyEvents.Kind.HIERARCHY_OF);
+        try {
+            return obtainHierarchyOf(readHeaderFromBuffer(t));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            event.end(t);
+        }
+    }
+
+    private ClassFileHeader readHeaderFromBuffer(Type t) throws IOException {
+        HierarchyEvents.Scope event = HierarchyEvents.begin(HierarchyEvents.Kind.CLASS_FILE_READ);
+        try {
+            ByteBuffer classFile = findClassFileBuffer(t);
+            if (classFile == null) {
+                throw new TypeNotFoundException(t, null);
+            }
+            return ClassFileHeader.read(classFile);
+        } finally {
+            event.end(t);
+        }
+    }
+
+    /**
+     * Returns the class file of the given type from the first source which holds it. The buffer is only valid until
+     * the next call on the same thread.
+     *
+     * @throws FileNotFoundException if no source holds the type
+     */
+    protected ByteBuffer openClassFileBuffer(Type t) throws IOException {
+        ByteBuffer classFile = findClassFileBuffer(t);
+        if (classFile == null) {
+            throw new ClassFileNotFoundException();
+        }
+        return classFile;
+    }
+
+    /**
+     * As {@link #openClassFileBuffer(Type)}, but returns null if no source holds the type.
+     */
+    protected ByteBuffer findClassFileBuffer(Type t) throws IOException {
+        String internalName = t.getInternalName();
+        for (ClassFileBufferSource source : sources) {
+            ByteBuffer classFile = source.find(internalName);
+            if (classFile != null) {
+                return classFile;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected InputStream openClassFile(Type t) throws IOException {
+        ByteBuffer buffer = openClassFileBuffer(t);
+        byte[] classFile = new byte[buffer.remaining()];
+        buffer.duplicate().get(classFile);
+        return new ByteArrayInputStream(classFile);
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException firstFailure = null;
+        for (ClassFileBufferSource source : sources) {
+            try {
+                source.close();
+            } catch (IOException e) {
+                if (firstFailure == null) {
+                    firstFailure = e;
+                }
+            }
+        }
+        if (firstFailure != null) {
+            throw firstFailure;
+        }
+    }
+}
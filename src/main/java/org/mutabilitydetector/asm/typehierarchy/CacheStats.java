@@ -0,0 +1,65 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+/**
+ * An immutable snapshot of the counters kept by a caching {@link TypeHierarchyReader}, for sizing the cache.
+ */
+public final class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long size;
+
+    public CacheStats(long hitCount, long missCount, long evictionCount, long size) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+    }
+
+    /**
+     * The number of lookups answered from the cache.
+     */
+    public long hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * The number of lookups which had to be passed to the underlying reader.
+     */
+    public long missCount() {
+        return missCount;
+    }
+
+    /**
+     * The number of entries removed to keep the cache within its maximum size.
+     */
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * The number of entries held when the snapshot was taken.
+     */
+    public long size() {
+        return size;
+    }
+
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * The proportion of lookups answered from the cache, or 1.0 if there have been no lookups.
+     */
+    public double hitRate() {
+        long requestCount = requestCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [hitCount=%d, missCount=%d, evictionCount=%d, size=%d]",
+            getClass().getSimpleName(), hitCount, missCount, evictionCount, size);
+    }
+}
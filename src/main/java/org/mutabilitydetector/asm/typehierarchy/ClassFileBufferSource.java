@@ -0,0 +1,33 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Provides class files as {@link ByteBuffer}s, so that their headers can be parsed where they already are, e.g. in a
+ * memory-mapped jar, rather than copied into a new array for each class.
+ * <br>
+ * A returned buffer may be a view of memory which is reused, so it is only valid until the next call to
+ * {@link #open(String)} or {@link #find(String)} on the same thread, and must not be modified.
+ *
+ * @see ByteBufferTypeHierarchyReader
+ * @see ClassFileHeader#read(ByteBuffer)
+ */
+public interface ClassFileBufferSource extends Closeable {
+
+    /**
+     * Returns the class file of the type with the given internal name, e.g. java/lang/Object, between the position
+     * and limit of the buffer.
+     *
+     * @throws FileNotFoundException if there is no such class file
+     */
+    ByteBuffer open(String internalName) throws IOException;
+
+    /**
+     * As {@link #open(String)}, but returns null if there is no such class file, so that a reader searching several
+     * sources does not create an exception for each source which does not hold the type.
+     */
+    ByteBuffer find(String internalName) throws IOException;
+}
@@ -0,0 +1,341 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * The parts of a class file needed to build a {@link TypeHierarchy}: the access flags, and the names of the class,
+ * its superclass and its interfaces.
+ * <br>
+ * Unlike {@link ClassReader}, which reads the entire class file and indexes the whole constant pool up front, the
+ * class file is streamed only as far as the end of the interfaces table, and only the constant pool entries which
+ * hold the required names are decoded. Fields, methods and attributes are never read. Since the layout of the header
+ * has not changed since the first version of the class file format, no check is made on the class file version.
+ *
+ * @see ClassReader#getAccess()
+ * @see ClassReader#getClassName()
+ * @see ClassReader#getSuperName()
+ * @see ClassReader#getInterfaces()
+ */
+public final class ClassFileHeader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private static final String[] NO_INTERFACES = new String[0];
+
+    private final int access;
+    private final String className;
+    private final String superName;
+    private final String[] interfaces;
+
+    ClassFileHeader(int access, String className, String superName, String[] interfaces) {
+        this.access = access;
+        this.className = className;
+        this.superName = superName;
+        this.interfaces = interfaces;
+    }
+
+    /**
+     * Reads the header of the class file from the given stream. The stream is not closed, and is left positioned
+     * at an unspecified point after the interfaces table.
+     */
+    public static ClassFileHeader read(InputStream classFile) throws IOException {
+        return new StreamParser(classFile).parse();
+    }
+
+    /**
+     * Reads the header of the class file held in the given array.
+     */
+    public static ClassFileHeader read(byte[] classFile) throws IOException {
+        return read(ByteBuffer.wrap(classFile));
+    }
+
+    /**
+     * Reads the header of the class file held in the given buffer, from its position up to its limit, directly, with
+     * no copy. The position of the buffer is not changed, so the buffer may be a slice of a memory-mapped file, or
+     * one which is reused for each class file.
+     */
+    public static ClassFileHeader read(ByteBuffer classFile) throws IOException {
+        return new BufferParser(classFile).parse();
+    }
+
+    /**
+     * @see ClassReader#getAccess()
+     */
+    public int getAccess() {
+        return access;
+    }
+
+    /**
+     * @see ClassReader#getClassName()
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * Returns null for java/lang/Object and module-info.
+     *
+     * @see ClassReader#getSuperName()
+     */
+    public String getSuperName() {
+        return superName;
+    }
+
+    /**
+     * @see ClassReader#getInterfaces()
+     */
+    public String[] getInterfaces() {
+        return interfaces.length == 0 ? interfaces : interfaces.clone();
+    }
+
+    int interfaceCount() {
+        return interfaces.length;
+    }
+
+    String interfaceAt(int index) {
+        return interfaces[index];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [className=%s]", getClass().getSimpleName(), className);
+    }
+
+    /**
+     * Reads the class file only as far as the end of the interfaces table, recording the offset of each constant pool
+     * entry on the way.
+     */
+    private abstract static class Parser {
+
+        int position;
+
+        /**
+         * Ensures that the given number of bytes, from the current position, can be read with {@link #byteAt(int)}.
+         */
+        abstract void require(int length) throws IOException;
+
+        abstract int byteAt(int offset);
+
+        ClassFileHeader parse() throws IOException {
+            if (readInt() != MAGIC) {
+                throw new IOException("Not a class file: missing magic number");
+            }
+            skip(4); // minor_version, major_version
+
+            int constantPoolCount = readUnsignedShort();
+            int[] constantPoolOffsets = new int[constantPoolCount];
+            for (int i = 1; i < constantPoolCount; i++) {
+                constantPoolOffsets[i] = position;
+                int tag = readUnsignedByte();
+                switch (tag) {
+                    case CONSTANT_UTF8:
+                        skip(readUnsignedShort());
+                        break;
+                    case CONSTANT_CLASS:
+                    case CONSTANT_STRING:
+                    case CONSTANT_METHOD_TYPE:
+                    case CONSTANT_MODULE:
+                    case CONSTANT_PACKAGE:
+                        skip(2);
+                        break;
+                    case CONSTANT_METHOD_HANDLE:
+                        skip(3);
+                        break;
+                    case CONSTANT_INTEGER:
+                    case CONSTANT_FLOAT:
+                    case CONSTANT_FIELDREF:
+                    case CONSTANT_METHODREF:
+                    case CONSTANT_INTERFACE_METHODREF:
+                    case CONSTANT_NAME_AND_TYPE:
+                    case CONSTANT_DYNAMIC:
+                    case CONSTANT_INVOKE_DYNAMIC:
+                        skip(4);
+                        break;
+                    case CONSTANT_LONG:
+                    case CONSTANT_DOUBLE:
+                        skip(8);
+                        i++;
+                        break;
+                    default:
+                        throw new IOException("Not a class file: unknown constant pool tag " + tag);
+                }
+            }
+
+            int access = readUnsignedShort();
+            String className = classNameAt(constantPoolOffsets, readUnsignedShort());
+            int superIndex = readUnsignedShort();
+            // only java/lang/Object, and module-info, have no superclass
+            String superName = superIndex == 0 ? null : classNameAt(constantPoolOffsets, superIndex);
+
+            int interfacesCount = readUnsignedShort();
+            String[] interfaces = interfacesCount == 0 ? NO_INTERFACES : new String[interfacesCount];
+            for (int i = 0; i < interfacesCount; i++) {
+                interfaces[i] = classNameAt(constantPoolOffsets, readUnsignedShort());
+            }
+
+            return new ClassFileHeader(access, className, superName, interfaces);
+        }
+
+        private String classNameAt(int[] constantPoolOffsets, int classIndex) throws IOException {
+            int classOffset = constantOffsetAt(constantPoolOffsets, classIndex);
+            if (byteAt(classOffset) != CONSTANT_CLASS) {
+                throw new IOException("Malformed class file: constant " + classIndex + " is not a class");
+            }
+            int utf8Offset = constantOffsetAt(constantPoolOffsets, unsignedShortAt(classOffset + 1));
+            if (byteAt(utf8Offset) != CONSTANT_UTF8) {
+                throw new IOException("Malformed class file: class name at " + classIndex + " is not a UTF8 constant");
+            }
+            return decodeModifiedUtf8(utf8Offset + 3, unsignedShortAt(utf8Offset + 1));
+        }
+
+        /**
+         * Index 0, and the index after a long or double constant, hold no constant, so have no offset.
+         */
+        private int constantOffsetAt(int[] constantPoolOffsets, int index) throws IOException {
+            if (index <= 0 || index >= constantPoolOffsets.length || constantPoolOffsets[index] == 0) {
+                throw new IOException("Malformed class file: no constant at index " + index);
+            }
+            return constantPoolOffsets[index];
+        }
+
+        private String decodeModifiedUtf8(int offset, int length) {
+            char[] chars = new char[length];
+            int charCount = 0;
+            int end = offset + length;
+            while (offset < end) {
+                int b = byteAt(offset++);
+                if ((b & 0x80) == 0) {
+                    chars[charCount++] = (char) (b & 0x7F);
+                } else if ((b & 0xE0) == 0xC0) {
+                    chars[charCount++] = (char) (((b & 0x1F) << 6) + (byteAt(offset++) & 0x3F));
+                } else {
+                    chars[charCount++] = (char) (((b & 0xF) << 12)
+                        + ((byteAt(offset++) & 0x3F) << 6)
+                        + (byteAt(offset++) & 0x3F));
+                }
+            }
+            return new String(chars, 0, charCount);
+        }
+
+        private int unsignedShortAt(int offset) {
+            return (byteAt(offset) << 8) | byteAt(offset + 1);
+        }
+
+        private int readUnsignedByte() throws IOException {
+            require(1);
+            return byteAt(position++);
+        }
+
+        private int readUnsignedShort() throws IOException {
+            require(2);
+            int value = unsignedShortAt(position);
+            position += 2;
+            return value;
+        }
+
+        private int readInt() throws IOException {
+            require(4);
+            int value = (unsignedShortAt(position) << 16) | unsignedShortAt(position + 2);
+            position += 4;
+            return value;
+        }
+
+        private void skip(int length) throws IOException {
+            require(length);
+            position += length;
+        }
+    }
+
+    /**
+     * Reads the class file into a buffer which grows only as far as is needed to reach the end of the interfaces
+     * table.
+     */
+    private static final class StreamParser extends Parser {
+
+        private static final int INITIAL_BUFFER_SIZE = 4096;
+
+        private final InputStream in;
+        private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+        private int limit;
+
+        StreamParser(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        int byteAt(int offset) {
+            return buffer[offset] & 0xFF;
+        }
+
+        @Override
+        void require(int length) throws IOException {
+            int required = position + length;
+            if (required <= limit) {
+                return;
+            }
+            if (required > buffer.length) {
+                byte[] grown = new byte[Math.max(required, buffer.length * 2)];
+                System.arraycopy(buffer, 0, grown, 0, limit);
+                buffer = grown;
+            }
+            while (limit < required) {
+                int read = in.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    throw new IOException("Truncated class file: expected at least " + required + " bytes");
+                }
+                limit += read;
+            }
+        }
+    }
+
+    /**
+     * Reads the class file in place, with absolute reads relative to the position of the buffer.
+     */
+    private static final class BufferParser extends Parser {
+
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int length;
+
+        BufferParser(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.start = buffer.position();
+            this.length = buffer.remaining();
+        }
+
+        @Override
+        int byteAt(int offset) {
+            return buffer.get(start + offset) & 0xFF;
+        }
+
+        @Override
+        void require(int length) throws IOException {
+            int required = position + length;
+            if (required > this.length) {
+                throw new IOException("Truncated class file: expected at least " + required + " bytes");
+            }
+        }
+    }
+}
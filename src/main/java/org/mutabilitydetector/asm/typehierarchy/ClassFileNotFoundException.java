@@ -0,0 +1,23 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.io.FileNotFoundException;
+
+/**
+ * Thrown where a class file is looked for and not found, to be reported as a {@link TypeNotFoundException}.
+ * <br>
+ * A missing type is an expected outcome when reading against a partial classpath, so no stack trace is recorded,
+ * sparing the cost of walking the stack on each miss.
+ */
+final class ClassFileNotFoundException extends FileNotFoundException {
+
+    private static final long serialVersionUID = 1L;
+
+    ClassFileNotFoundException() {
+        super("Class not found");
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
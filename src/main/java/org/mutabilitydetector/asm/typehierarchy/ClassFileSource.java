@@ -0,0 +1,20 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * Provides the bytes of class files from wherever they are stored, e.g. an artifact store or a network filesystem.
+ * Reads may block for as long as the storage takes.
+ *
+ * @see VirtualThreadTypeHierarchyReader
+ */
+public interface ClassFileSource {
+
+    /**
+     * Reads the whole class file of the type with the given internal name, e.g. java/lang/Object.
+     *
+     * @throws FileNotFoundException if there is no such class file
+     */
+    byte[] read(String internalName) throws IOException;
+}
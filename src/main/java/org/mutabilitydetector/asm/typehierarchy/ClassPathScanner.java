@@ -0,0 +1,131 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Visits every class file within the jars and directories of a classpath.
+ * <br>
+ * Entries under META-INF (such as multi-release versions) and module descriptors are skipped, since neither
+ * contributes a type to the hierarchy of the classpath.
+ */
+final class ClassPathScanner {
+
+    private static final String CLASS_FILE_SUFFIX = ".class";
+
+    interface ClassFileVisitor {
+        /**
+         * @param entryName the path of the class file relative to the classpath entry, using '/' as a separator,
+         *                  e.g. java/lang/Object.class
+         */
+        void visitClassFile(String entryName, InputStream classFile) throws IOException;
+    }
+
+    /**
+     * Receives where each class file is, without it being opened, for callers which keep the jar open themselves.
+     */
+    interface ClassFileEntryVisitor {
+        void visitArchiveEntry(ZipFile archive, ZipEntry entry) throws IOException;
+
+        /**
+         * @param entryName as for {@link ClassFileVisitor#visitClassFile(String, InputStream)}
+         */
+        void visitDirectoryEntry(String entryName, Path file) throws IOException;
+    }
+
+    private ClassPathScanner() { }
+
+    static void scan(Iterable<File> classPath, ClassFileVisitor visitor) throws IOException {
+        for (File classPathEntry : classPath) {
+            scan(classPathEntry, visitor);
+        }
+    }
+
+    static void scan(File classPathEntry, final ClassFileVisitor visitor) throws IOException {
+        ClassFileEntryVisitor opener = new ClassFileEntryVisitor() {
+            @Override
+            public void visitArchiveEntry(ZipFile archive, ZipEntry entry) throws IOException {
+                InputStream classFile = archive.getInputStream(entry);
+                try {
+                    visitor.visitClassFile(entry.getName(), classFile);
+                } finally {
+                    classFile.close();
+                }
+            }
+
+            @Override
+            public void visitDirectoryEntry(String entryName, Path file) throws IOException {
+                InputStream classFile = new FileInputStream(file.toFile());
+                try {
+                    visitor.visitClassFile(entryName, classFile);
+                } finally {
+                    classFile.close();
+                }
+            }
+        };
+        if (classPathEntry.isDirectory()) {
+            walkDirectory(classPathEntry.toPath(), opener);
+        } else if (classPathEntry.isFile()) {
+            ZipFile archive = new ZipFile(classPathEntry);
+            try {
+                walkArchive(archive, opener);
+            } finally {
+                archive.close();
+            }
+        }
+    }
+
+    static boolean isClassFile(String entryName) {
+        return entryName.endsWith(CLASS_FILE_SUFFIX)
+            && !entryName.startsWith("META-INF/")
+            && !entryName.equals("module-info.class");
+    }
+
+    static String internalNameOf(String classFileEntryName) {
+        return classFileEntryName.substring(0, classFileEntryName.length() - CLASS_FILE_SUFFIX.length());
+    }
+
+    static String classFileEntryNameOf(String internalName) {
+        return internalName + CLASS_FILE_SUFFIX;
+    }
+
+    /**
+     * Visits every class file entry of a jar which is already open, and leaves it open.
+     */
+    static void walkArchive(ZipFile archive, ClassFileEntryVisitor visitor) throws IOException {
+        Enumeration<? extends ZipEntry> entries = archive.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            if (!entry.isDirectory() && isClassFile(entry.getName())) {
+                visitor.visitArchiveEntry(archive, entry);
+            }
+        }
+    }
+
+    static void walkDirectory(final Path root, final ClassFileEntryVisitor visitor) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                String entryName = entryNameOf(root, file);
+                if (attributes.isRegularFile() && isClassFile(entryName)) {
+                    visitor.visitDirectoryEntry(entryName, file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    static String entryNameOf(Path root, Path file) {
+        return root.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+}
@@ -0,0 +1,294 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.objectweb.asm.Type;
+
+/**
+ * Reads class files from an explicit list of jars and directories, rather than through the system class loader.
+ * <br>
+ * On construction, every jar is opened and every directory is walked, to build a single index from internal name to
+ * the class file which defines it. Jars are kept open for the lifetime of the reader, so finding a class file costs
+ * one lookup in the index and one read of the entry, regardless of how many jars and directories there are. Where a
+ * type is found in more than one classpath entry, the first is used, as a class loader would.
+ * <br>
+ * Only the location of each class file is indexed, not its contents, so this reader performs no caching of
+ * {@link TypeHierarchy} results. Class files which are created or deleted in a directory afterwards are only seen once
+ * {@link #refresh(Type)} is called for their type, or {@link #refresh()} for every type, as
+ * {@link WatchingCachingTypeHierarchyReader} does. It is safe to share between threads, and is intended to be
+ * decorated with one of the caching readers. It should be closed when no longer required, to release the open jars.
+ */
+public class ClassPathTypeHierarchyReader extends TypeHierarchyReader implements Closeable {
+
+    private final List<ZipFile> openArchives;
+    private final List<ClassPathEntry> classPathEntries;
+    private final ConcurrentMap<String, ClassFileLocation> index;
+
+    public ClassPathTypeHierarchyReader(File... classPath) throws IOException {
+        this(Arrays.asList(classPath));
+    }
+
+    public ClassPathTypeHierarchyReader(Iterable<File> classPath) throws IOException {
+        this.openArchives = new ArrayList<ZipFile>();
+        this.classPathEntries = new ArrayList<ClassPathEntry>();
+        this.index = new ConcurrentHashMap<String, ClassFileLocation>();
+        try {
+            for (File classPathEntry : classPath) {
+                if (classPathEntry.isDirectory()) {
+                    indexDirectory(classPathEntry.toPath());
+                } else if (classPathEntry.isFile()) {
+                    indexArchive(classPathEntry);
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void indexArchive(File archive) throws IOException {
+        final ZipFile zipFile = new ZipFile(archive);
+        openArchives.add(zipFile);
+        ClassPathEntry classPathEntry = new ClassPathEntry() {
+            @Override
+            public ClassFileLocation locate(String entryName) {
+                ZipEntry entry = zipFile.getEntry(entryName);
+                return entry == null || entry.isDirectory() ? null : new ArchiveEntry(zipFile, entry);
+            }
+
+            @Override
+            public void walk(ClassPathScanner.ClassFileEntryVisitor visitor) throws IOException {
+                ClassPathScanner.walkArchive(zipFile, visitor);
+            }
+        };
+        classPathEntries.add(classPathEntry);
+        classPathEntry.walk(indexerOf(index));
+    }
+
+    private void indexDirectory(final Path root) throws IOException {
+        ClassPathEntry classPathEntry = new ClassPathEntry() {
+            @Override
+            public ClassFileLocation locate(String entryName) {
+                File classFile = root.resolve(entryName).toFile();
+                return classFile.isFile() ? new DirectoryEntry(classFile) : null;
+            }
+
+            @Override
+            public void walk(ClassPathScanner.ClassFileEntryVisitor visitor) throws IOException {
+                ClassPathScanner.walkDirectory(root, visitor);
+            }
+        };
+        classPathEntries.add(classPathEntry);
+        classPathEntry.walk(indexerOf(index));
+    }
+
+    /**
+     * Adds each class file visited to the given index, unless a class file for its type was visited before.
+     */
+    private static ClassPathScanner.ClassFileEntryVisitor indexerOf(final Map<String, ClassFileLocation> index) {
+        return new ClassPathScanner.ClassFileEntryVisitor() {
+            @Override
+            public void visitArchiveEntry(ZipFile archive, ZipEntry entry) {
+                addTo(index, entry.getName(), new ArchiveEntry(archive, entry));
+            }
+
+            @Override
+            public void visitDirectoryEntry(String entryName, Path file) {
+                addTo(index, entryName, new DirectoryEntry(file.toFile()));
+            }
+        };
+    }
+
+    private static void addTo(Map<String, ClassFileLocation> index, String entryName, ClassFileLocation location) {
+        String internalName = ClassPathScanner.internalNameOf(entryName);
+        if (!index.containsKey(internalName)) {
+            index.put(internalName, location);
+        }
+    }
+
+    /**
+     * Looks for the class file of the given {@link Type} again, in each jar and directory in turn, e.g. because a
+     * class file for it has been created in, or deleted from, one of the directories.
+     */
+    public void refresh(Type t) {
+        String internalName = t.getInternalName();
+        String entryName = ClassPathScanner.classFileEntryNameOf(internalName);
+        for (ClassPathEntry classPathEntry : classPathEntries) {
+            ClassFileLocation location = classPathEntry.locate(entryName);
+            if (location != null) {
+                index.put(internalName, location);
+                return;
+            }
+        }
+        index.remove(internalName);
+    }
+
+    /**
+     * Walks every jar and directory again, to find every class file which has been created in, or deleted from, one of
+     * the directories. Types found both before and after are never missing from the index in between.
+     */
+    public void refresh() throws IOException {
+        Map<String, ClassFileLocation> found = new HashMap<String, ClassFileLocation>();
+        ClassPathScanner.ClassFileEntryVisitor indexer = indexerOf(found);
+        for (ClassPathEntry classPathEntry : classPathEntries) {
+            classPathEntry.walk(indexer);
+        }
+        index.putAll(found);
+        index.keySet().retainAll(found.keySet());
+    }
+
+    @Override
+    protected void classFileChanged(Type t) {
+        refresh(t);
+    }
+
+    @Override
+    protected void allClassFilesChanged() {
+        try {
+            refresh();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns true if a class file for the given {@link Type} was found on the classpath.
+     */
+    public boolean contains(Type t) {
+        return index.containsKey(t.getInternalName());
+    }
+
+    /**
+     * The internal names of every type found on the classpath.
+     */
+    public Iterable<String> internalNames() {
+        return Collections.unmodifiableSet(index.keySet());
+    }
+
+    /**
+     * The jar or class file from which the given {@link Type} is read, or null if it was not found on the classpath.
+     */
+    String originOf(Type t) {
+        ClassFileLocation location = index.get(t.getInternalName());
+        return location == null ? null : location.origin();
+    }
+
+    /**
+     * A value which changes when the class file of the given {@link Type} changes, without reading it: the CRC and
+     * size of a jar entry, or the size and modification time of a file in a directory. Zero if the type was not
+     * found on the classpath.
+     */
+    long fingerprintOf(Type t) {
+        ClassFileLocation location = index.get(t.getInternalName());
+        return location == null ? 0L : location.fingerprint();
+    }
+
+    @Override
+    protected InputStream openClassFile(Type t) throws IOException {
+        ClassFileLocation location = index.get(t.getInternalName());
+        if (location == null) {
+            throw new ClassFileNotFoundException();
+        }
+        return location.open();
+    }
+
+    /**
+     * Closes every jar held open by this reader. Subsequent lookups of types found in a jar will fail.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException firstFailure = null;
+        for (ZipFile archive : openArchives) {
+            try {
+                archive.close();
+            } catch (IOException e) {
+                if (firstFailure == null) {
+                    firstFailure = e;
+                }
+            }
+        }
+        if (firstFailure != null) {
+            throw firstFailure;
+        }
+    }
+
+    private interface ClassPathEntry {
+        /**
+         * The class file with the given name in this jar or directory, or null if there is none.
+         */
+        ClassFileLocation locate(String entryName);
+
+        void walk(ClassPathScanner.ClassFileEntryVisitor visitor) throws IOException;
+    }
+
+    private interface ClassFileLocation {
+        InputStream open() throws IOException;
+
+        String origin();
+
+        long fingerprint();
+    }
+
+    private static final class ArchiveEntry implements ClassFileLocation {
+        private final ZipFile archive;
+        private final ZipEntry entry;
+
+        ArchiveEntry(ZipFile archive, ZipEntry entry) {
+            this.archive = archive;
+            this.entry = entry;
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            return archive.getInputStream(entry);
+        }
+
+        @Override
+        public String origin() {
+            return archive.getName();
+        }
+
+        @Override
+        public long fingerprint() {
+            return (entry.getCrc() << 32) ^ entry.getSize();
+        }
+    }
+
+    private static final class DirectoryEntry implements ClassFileLocation {
+        private final File classFile;
+
+        DirectoryEntry(File classFile) {
+            this.classFile = classFile;
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            return new FileInputStream(classFile);
+        }
+
+        @Override
+        public String origin() {
+            return classFile.getPath();
+        }
+
+        @Override
+        public long fingerprint() {
+            return classFile.lastModified() * 31 + classFile.length();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Type;
+
+/**
+ * Finds the common superclass of two types, with the same results as
+ * {@link ClassWriter#getCommonSuperClass(String, String)}, using a {@link TypeHierarchyReader} rather than loading
+ * classes.
+ * <br>
+ * The superclass chain of each class is read once and kept, ordered from java/lang/Object down to the class itself,
+ * so that the chains of two classes can be aligned by depth and the closest common superclass found in a single walk.
+ * Interfaces and arrays are answered with {@link TypeHierarchyReader#isAssignableFrom(Type, Type)}, as before. The
+ * result for each pair of types is also kept.
+ * <br>
+ * An instance is safe to share between threads, and is intended to be shared between every
+ * {@link org.mutabilitydetector.asm.NonClassloadingClassWriter} which uses the same {@link TypeHierarchyReader}.
+ * Nothing is evicted unless {@link #invalidate(Set)} is called, so an instance should otherwise not outlive the set of
+ * class files it was used for. A result which was being found while types were invalidated is returned, but not kept.
+ */
+public class CommonSuperClassFinder {
+
+    private static final String JAVA_LANG_OBJECT = "java/lang/Object";
+    private static final String[] NO_SUPERCLASSES = new String[0];
+
+    private final TypeHierarchyReader typeHierarchyReader;
+    private final ConcurrentMap<String, String[]> superClassChains = new ConcurrentHashMap<String, String[]>();
+    private final ConcurrentMap<String, ConcurrentMap<String, String>> commonSuperClasses =
+        new ConcurrentHashMap<String, ConcurrentMap<String, String>>();
+    private final Object invalidationLock = new Object();
+    private volatile long generation;
+
+    public CommonSuperClassFinder(TypeHierarchyReader typeHierarchyReader) {
+        this.typeHierarchyReader = typeHierarchyReader;
+    }
+
+    public TypeHierarchyReader typeHierarchyReader() {
+        return typeHierarchyReader;
+    }
+
+    /**
+     * Returns the internal name of the closest common superclass of the two types given by internal name.
+     *
+     * @see ClassWriter#getCommonSuperClass(String, String)
+     */
+    public String commonSuperClassOf(String type1, String type2) {
+        ConcurrentMap<String, String> commonSuperClassesOfType1 = commonSuperClasses.get(type1);
+        if (commonSuperClassesOfType1 == null) {
+            commonSuperClassesOfType1 = new ConcurrentHashMap<String, String>();
+            ConcurrentMap<String, String> raced = commonSuperClasses.putIfAbsent(type1, commonSuperClassesOfType1);
+            if (raced != null) {
+                commonSuperClassesOfType1 = raced;
+            }
+        }
+
+        String commonSuperClass = commonSuperClassesOfType1.get(type2);
+        if (commonSuperClass == null) {
+            long generationBefore = generation;
+            commonSuperClass = calculateCommonSuperClass(type1, type2);
+            synchronized (invalidationLock) {
+                if (generation == generationBefore) {
+                    commonSuperClassesOfType1.put(type2, commonSuperClass);
+                }
+            }
+        }
+        return commonSuperClass;
+    }
+
+    /**
+     * Forgets every superclass chain and result which involves one of the given types, e.g. because their class files
+     * have changed. The given set should hold each subtype of a changed type, as well as the type itself.
+     *
+     * @see WatchingCachingTypeHierarchyReader.InvalidationListener
+     */
+    public void invalidate(Set<Type> types) {
+        synchronized (invalidationLock) {
+            generation++;
+            evict(types);
+        }
+    }
+
+    private void evict(Set<Type> types) {
+        for (Iterator<String> chains = superClassChains.keySet().iterator(); chains.hasNext(); ) {
+            if (involvesAny(chains.next(), types)) {
+                chains.remove();
+            }
+        }
+        Iterator<Map.Entry<String, ConcurrentMap<String, String>>> results = commonSuperClasses.entrySet().iterator();
+        while (results.hasNext()) {
+            Map.Entry<String, ConcurrentMap<String, String>> resultsOfType1 = results.next();
+            if (involvesAny(resultsOfType1.getKey(), types)) {
+                results.remove();
+                continue;
+            }
+            for (Iterator<String> type2s = resultsOfType1.getValue().keySet().iterator(); type2s.hasNext(); ) {
+                if (involvesAny(type2s.next(), types)) {
+                    type2s.remove();
+                }
+            }
+        }
+    }
+
+    private static boolean involvesAny(String internalName, Set<Type> types) {
+        Type t = Type.getObjectType(internalName);
+        return types.contains(t.getSort() == Type.ARRAY ? t.getElementType() : t);
+    }
+
+    private String calculateCommonSuperClass(String type1, String type2) {
+        if (type1.equals(type2)) {
+            return type1;
+        }
+
+        Type c = Type.getObjectType(type1);
+        Type d = Type.getObjectType(type2);
+        if (c.getSort() == Type.ARRAY || d.getSort() == Type.ARRAY
+                || typeHierarchyReader.isInterface(c) || typeHierarchyReader.isInterface(d)) {
+            return commonSuperClassByAssignability(c, d);
+        }
+
+        String[] chain1 = superClassChainOf(type1);
+        String[] chain2 = superClassChainOf(type2);
+        for (int depth = Math.min(chain1.length, chain2.length) - 1; depth >= 0; depth--) {
+            if (chain1[depth].equals(chain2[depth])) {
+                return chain1[depth];
+            }
+        }
+        return JAVA_LANG_OBJECT;
+    }
+
+    private String commonSuperClassByAssignability(Type c, Type d) {
+        if (typeHierarchyReader.isAssignableFrom(c, d)) {
+            return c.getInternalName();
+        }
+        if (typeHierarchyReader.isAssignableFrom(d, c)) {
+            return d.getInternalName();
+        }
+        if (typeHierarchyReader.isInterface(c) || typeHierarchyReader.isInterface(d)) {
+            return JAVA_LANG_OBJECT;
+        } else {
+            do {
+                c = typeHierarchyReader.getSuperClass(c);
+            } while (!typeHierarchyReader.isAssignableFrom(c, d));
+            return c.getInternalName();
+        }
+    }
+
+    /**
+     * The chain of a class is built on the chain of its superclass, so each element of the array, at index i, is the
+     * superclass of the class at i + 1, and the class itself is last.
+     */
+    private String[] superClassChainOf(String internalName) {
+        String[] chain = superClassChains.get(internalName);
+        if (chain != null) {
+            return chain;
+        }
+
+        long generationBefore = generation;
+        Type superClass = typeHierarchyReader.getSuperClass(Type.getObjectType(internalName));
+        String[] superClassChain = superClass == null
+            ? NO_SUPERCLASSES
+            : superClassChainOf(superClass.getInternalName());
+        chain = Arrays.copyOf(superClassChain, superClassChain.length + 1);
+        chain[superClassChain.length] = internalName;
+
+        synchronized (invalidationLock) {
+            if (generation != generationBefore) {
+                return chain;
+            }
+            String[] raced = superClassChains.putIfAbsent(internalName, chain);
+            return raced == null ? chain : raced;
+        }
+    }
+}
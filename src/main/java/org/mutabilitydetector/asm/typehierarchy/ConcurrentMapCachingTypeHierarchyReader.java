@@ -1,30 +1,297 @@
 package org.mutabilitydetector.asm.typehierarchy;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.objectweb.asm.Type;
 
-
+/**
+ * Caches every {@link TypeHierarchy} obtained from the underlying reader in a {@link ConcurrentMap}.
+ * <br>
+ * Loading is coalesced: when several threads miss on the same type at once, only one of them asks the underlying
+ * reader, and the others wait for its result. If the underlying reader looks up the same type again on the loading
+ * thread, that lookup is passed straight through rather than waiting on itself.
+ * <br>
+ * The cache can also be filled up front, in parallel, from the class files of a classpath, with
+ * {@link #warmUp(Iterable)}, or as it goes, by loading the supertypes of each type read in the background, with a
+ * {@link PrefetchPolicy}. Background loads go through the same coalesced path as any other, so a type is never read
+ * twice because it was both prefetched and asked for.
+ */
 public class ConcurrentMapCachingTypeHierarchyReader extends TypeHierarchyReader {
 
     private final TypeHierarchyReader baseReader;
     private final ConcurrentMap<Type, TypeHierarchy> typeHierarchyCache;
+    private final ConcurrentMap<Type, Load> inFlight = new ConcurrentHashMap<Type, Load>();
+    private final PrefetchPolicy prefetchPolicy;
+    private final Semaphore prefetchPermits;
+    private final LongAdder droppedPrefetches = new LongAdder();
 
     public ConcurrentMapCachingTypeHierarchyReader(TypeHierarchyReader baseReader, ConcurrentMap<Type, TypeHierarchy> initiallyEmptyCache) {
-        this.baseReader = baseReader;
-        this.typeHierarchyCache = initiallyEmptyCache;
+        this(baseReader, initiallyEmptyCache, null);
     }
 
     public ConcurrentMapCachingTypeHierarchyReader(TypeHierarchyReader baseReader) {
     	this(baseReader, new ConcurrentHashMap<Type, TypeHierarchy>());
     }
-    
+
+    /**
+     * Constructor which prefetches the supertypes of each type read, as configured by the given policy.
+     */
+    public ConcurrentMapCachingTypeHierarchyReader(TypeHierarchyReader baseReader, PrefetchPolicy prefetchPolicy) {
+        this(baseReader, new ConcurrentHashMap<Type, TypeHierarchy>(), prefetchPolicy);
+    }
+
+    private ConcurrentMapCachingTypeHierarchyReader(TypeHierarchyReader baseReader,
+                                                    ConcurrentMap<Type, TypeHierarchy> initiallyEmptyCache,
+                                                    PrefetchPolicy prefetchPolicy) {
+        this.baseReader = baseReader;
+        this.typeHierarchyCache = initiallyEmptyCache;
+        this.prefetchPolicy = prefetchPolicy;
+        this.prefetchPermits = prefetchPolicy == null ? null : new Semaphore(prefetchPolicy.maximumConcurrentLoads());
+    }
+
     @Override
     public TypeHierarchy hierarchyOf(final Type t) {
-        if (!typeHierarchyCache.containsKey(t)) {
-            typeHierarchyCache.put(t, baseReader.hierarchyOf(t));
+        return load(t, 0);
+    }
+
+    /**
+     * @param depth how far above a type which was asked for t is, or 0 if t was asked for
+     */
+    private TypeHierarchy load(Type t, int depth) {
+        TypeHierarchy cached = typeHierarchyCache.get(t);
+        if (cached != null) {
+            return cached;
+        }
+
+        Load load = new Load(t, depth);
+        Load existing = inFlight.putIfAbsent(t, load);
+        if (existing == null) {
+            return load.runAndPublish();
+        } else if (existing.owner == Thread.currentThread()) {
+            return baseReader.hierarchyOf(t);
+        } else {
+            return existing.await();
+        }
+    }
+
+    Collection<TypeHierarchy> cachedHierarchies() {
+        return typeHierarchyCache.values();
+    }
+
+    /**
+     * Adds the given hierarchy to the cache, unless the type is already cached.
+     *
+     * @return true if the hierarchy was added
+     */
+    boolean putIfAbsent(TypeHierarchy hierarchy) {
+        return typeHierarchyCache.putIfAbsent(hierarchy.type(), hierarchy) == null;
+    }
+
+    private void prefetchSupertypesOf(TypeHierarchy loaded, int depth) {
+        if (prefetchPolicy == null || depth >= prefetchPolicy.depth()) {
+            return;
+        }
+        if (loaded.getSuperClass() != null) {
+            prefetch(loaded.getSuperClass(), depth + 1);
+        }
+        for (Type implemented : loaded.getInterfaces()) {
+            prefetch(implemented, depth + 1);
+        }
+    }
+
+    /**
+     * Failures are counted, and otherwise left to be reported, and retried, when the type is asked for.
+     */
+    private void prefetch(final Type t, final int depth) {
+        if (typeHierarchyCache.containsKey(t) || inFlight.containsKey(t) || !prefetchPermits.tryAcquire()) {
+            return;
+        }
+        try {
+            prefetchPolicy.executor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        load(t, depth);
+                    } catch (RuntimeException e) {
+                        droppedPrefetches.increment();
+                    } finally {
+                        prefetchPermits.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            droppedPrefetches.increment();
+            prefetchPermits.release();
+        }
+    }
+
+    /**
+     * How many background loads have failed, or been rejected by the executor of the {@link PrefetchPolicy}. Loads
+     * which were never started because too many were already running are not counted.
+     */
+    public long droppedPrefetches() {
+        return droppedPrefetches.sum();
+    }
+
+    /**
+     * Reads the header of every class file in the given jars and directories, in parallel on the common
+     * {@link ForkJoinPool}, and adds the hierarchy of each to the cache. Where a type is found in more than one
+     * classpath entry, the first is used. Types already in the cache are left as they are.
+     *
+     * @see #warmUp(Iterable, ForkJoinPool)
+     */
+    public WarmUpResult warmUp(Iterable<File> classPath) throws IOException {
+        return warmUp(classPath, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads the header of every class file in the given jars and directories, in parallel on the given
+     * {@link ForkJoinPool}, and adds the hierarchy of each to the cache. Blocks until the cache has been filled.
+     * Class files which cannot be read are counted, and skipped.
+     */
+    public WarmUpResult warmUp(Iterable<File> classPath, ForkJoinPool pool) throws IOException {
+        long start = System.nanoTime();
+        ClassPathTypeHierarchyReader classFiles = new ClassPathTypeHierarchyReader(classPath);
+        try {
+            List<String> internalNames = new ArrayList<String>();
+            for (String internalName : classFiles.internalNames()) {
+                internalNames.add(internalName);
+            }
+            WarmUp warmUp = new WarmUp(classFiles, internalNames, 0, internalNames.size());
+            pool.invoke(warmUp);
+            return new WarmUpResult(warmUp.loaded.get(), warmUp.failed.get(), System.nanoTime() - start);
+        } finally {
+            classFiles.close();
+        }
+    }
+
+    /**
+     * Splits the names to load in half until there are few enough to load in one task.
+     */
+    private final class WarmUp extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int TYPES_PER_TASK = 128;
+
+        private final TypeHierarchyReader classFiles;
+        private final List<String> internalNames;
+        private final int from;
+        private final int to;
+        private final AtomicInteger loaded;
+        private final AtomicInteger failed;
+
+        WarmUp(TypeHierarchyReader classFiles, List<String> internalNames, int from, int to) {
+            this(classFiles, internalNames, from, to, new AtomicInteger(), new AtomicInteger());
+        }
+
+        private WarmUp(TypeHierarchyReader classFiles, List<String> internalNames, int from, int to,
+                       AtomicInteger loaded, AtomicInteger failed) {
+            this.classFiles = classFiles;
+            this.internalNames = internalNames;
+            this.from = from;
+            this.to = to;
+            this.loaded = loaded;
+            this.failed = failed;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > TYPES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new WarmUp(classFiles, internalNames, from, middle, loaded, failed),
+                          new WarmUp(classFiles, internalNames, middle, to, loaded, failed));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                Type t = Type.getObjectType(internalNames.get(i));
+                try {
+                    if (typeHierarchyCache.putIfAbsent(t, classFiles.hierarchyOf(t)) == null) {
+                        loaded.incrementAndGet();
+                    }
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private final class Load {
+        private final Type type;
+        private final FutureTask<TypeHierarchy> task;
+        private volatile Thread owner;
+
+        Load(final Type type, final int depth) {
+            this.type = type;
+            this.task = new FutureTask<TypeHierarchy>(new Callable<TypeHierarchy>() {
+                @Override
+                public TypeHierarchy call() {
+                    TypeHierarchy cached = typeHierarchyCache.get(type);
+                    if (cached != null) {
+                        return cached;
+                    }
+                    TypeHierarchy loaded = baseReader.hierarchyOf(type);
+                    TypeHierarchy raced = typeHierarchyCache.putIfAbsent(type, loaded);
+                    if (raced != null) {
+                        return raced;
+                    }
+                    prefetchSupertypesOf(loaded, depth);
+                    return loaded;
+                }
+            });
+        }
+
+        /**
+         * The result is added to the cache before the load is removed from the in-flight map, so that a thread
+         * which misses both has missed a load which had not started yet, and rechecks the cache.
+         */
+        TypeHierarchy runAndPublish() {
+            owner = Thread.currentThread();
+            try {
+                task.run();
+            } finally {
+                inFlight.remove(type, this);
+                owner = null;
+            }
+            return await();
+        }
+
+        TypeHierarchy await() {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        return task.get();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof RuntimeException) {
+                            throw (RuntimeException) cause;
+                        } else if (cause instanceof Error) {
+                            throw (Error) cause;
+                        }
+                        throw new RuntimeException(cause);
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
         }
-        return typeHierarchyCache.get(t);
     }
 }
@@ -0,0 +1,71 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Provides the class files in a directory, each read into a buffer which is reused by the reading thread.
+ * <br>
+ * Class files are small, so mapping each one would cost more in system calls and page table changes than the copy
+ * it saves. Reading with a {@link FileChannel} into a reused heap buffer instead costs one copy, and no allocation.
+ */
+public class DirectoryClassFileBufferSource implements ClassFileBufferSource {
+
+    private final File directory;
+
+    public DirectoryClassFileBufferSource(File directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public ByteBuffer open(String internalName) throws IOException {
+        ByteBuffer classFile = find(internalName);
+        if (classFile == null) {
+            throw new ClassFileNotFoundException();
+        }
+        return classFile;
+    }
+
+    @Override
+    public ByteBuffer find(String internalName) throws IOException {
+        File classFile = new File(directory, ClassPathScanner.classFileEntryNameOf(internalName));
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(classFile.toPath(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Class file too large: " + classFile);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(ReusableBuffers.classFileBuffer((int) size), 0, (int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                continue;
+            }
+            // called through Buffer, as the covariant override in ByteBuffer only exists from Java 9
+            ((Buffer) buffer).flip();
+            return buffer;
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Holds nothing open, so does nothing.
+     */
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [directory=%s]", getClass().getSimpleName(), directory);
+    }
+}
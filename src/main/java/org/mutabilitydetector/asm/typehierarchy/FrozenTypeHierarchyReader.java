@@ -0,0 +1,197 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.objectweb.asm.Type;
+
+/**
+ * Answers from an immutable table of hierarchies, frozen once a cache has warmed up, in front of an underlying
+ * reader which answers for every type the table does not hold.
+ * <br>
+ * The frozen table is a pair of arrays, probed linearly by the hash of each type, and is never changed after it is
+ * built. A lookup which finds its type there takes no lock, and reads no volatile field, so lookups from many threads
+ * do not contend with each other at all. Types which are not in the table are loaded from the underlying reader and
+ * kept in a small overflow map, e.g.
+ * <pre>
+ * ConcurrentMapCachingTypeHierarchyReader cache = new ConcurrentMapCachingTypeHierarchyReader(new TypeHierarchyReader());
+ * cache.warmUp(classPath);
+ * FrozenTypeHierarchyReader frozen = FrozenTypeHierarchyReader.freeze(cache);
+ * </pre>
+ * The overflow is merged into a new frozen table, or generation, by {@link #refreeze()}, which is intended to be
+ * called now and then, e.g. from a {@link java.util.concurrent.ScheduledExecutorService}, rather than on every miss.
+ * A thread may go on using an older generation for a while after a new one is built; it then finds the types which
+ * were merged by way of the slower path, which always sees the newest generation.
+ */
+public class FrozenTypeHierarchyReader extends TypeHierarchyReader {
+
+    private final TypeHierarchyReader baseReader;
+    private final ConcurrentMap<Type, TypeHierarchy> overflow = new ConcurrentHashMap<Type, TypeHierarchy>();
+
+    /**
+     * Read on every lookup. Deliberately not volatile: a {@link Generation} has only final fields, so any thread
+     * which sees one sees all of it.
+     */
+    private Generation frozen;
+
+    /**
+     * Read only when a type is missing from {@link #frozen}, and written before the merged types are removed from
+     * the overflow, so that a thread which misses the overflow finds them here.
+     */
+    private volatile Generation latest;
+
+    public FrozenTypeHierarchyReader(TypeHierarchyReader baseReader, Collection<TypeHierarchy> hierarchies) {
+        this.baseReader = baseReader;
+        this.latest = this.frozen = new Generation(hierarchies, 0);
+    }
+
+    /**
+     * Freezes every hierarchy held by the given caching reader. Types it does not hold are asked of it in turn, so
+     * they are cached there as well as in the overflow.
+     */
+    public static FrozenTypeHierarchyReader freeze(ConcurrentMapCachingTypeHierarchyReader cachingReader) {
+        return new FrozenTypeHierarchyReader(cachingReader, cachingReader.cachedHierarchies());
+    }
+
+    @Override
+    public TypeHierarchy hierarchyOf(Type t) {
+        TypeHierarchy hierarchy = frozen.get(t);
+        if (hierarchy != null) {
+            return hierarchy;
+        }
+        hierarchy = overflow.get(t);
+        if (hierarchy != null) {
+            return hierarchy;
+        }
+        hierarchy = latest.get(t);
+        if (hierarchy != null) {
+            return hierarchy;
+        }
+        TypeHierarchy loaded = baseReader.hierarchyOf(t);
+        TypeHierarchy raced = overflow.putIfAbsent(t, loaded);
+        return raced == null ? loaded : raced;
+    }
+
+    /**
+     * Builds a new generation from the current one and every type in the overflow, and removes those types from the
+     * overflow. Types loaded while the new generation is being built stay in the overflow until the next call.
+     *
+     * @return how many types were moved out of the overflow
+     */
+    public synchronized int refreeze() {
+        Generation current = latest;
+        List<TypeHierarchy> merged = new ArrayList<TypeHierarchy>(current.size() + overflow.size());
+        current.addTo(merged);
+        int moved = 0;
+        List<TypeHierarchy> overflowed = new ArrayList<TypeHierarchy>(overflow.values());
+        for (TypeHierarchy hierarchy : overflowed) {
+            if (current.get(hierarchy.type()) == null) {
+                merged.add(hierarchy);
+                moved++;
+            }
+        }
+        if (moved == 0) {
+            return 0;
+        }
+
+        Generation next = new Generation(merged, current.number + 1);
+        latest = next;
+        frozen = next;
+        for (TypeHierarchy hierarchy : overflowed) {
+            overflow.remove(hierarchy.type(), hierarchy);
+        }
+        return moved;
+    }
+
+    /**
+     * How many times the overflow has been merged into a new generation.
+     */
+    public int generation() {
+        return latest.number;
+    }
+
+    public int frozenSize() {
+        return latest.size();
+    }
+
+    public int overflowSize() {
+        return overflow.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [generation=%d, frozen=%d, overflow=%d]",
+                             getClass().getSimpleName(), generation(), frozenSize(), overflowSize());
+    }
+
+    /**
+     * An open addressed hash table, at most half full, so that every probe ends at an empty slot.
+     */
+    private static final class Generation {
+        private final Type[] types;
+        private final TypeHierarchy[] hierarchies;
+        private final int mask;
+        private final int size;
+        private final int number;
+
+        Generation(Collection<TypeHierarchy> toFreeze, int number) {
+            int capacity = Integer.highestOneBit(Math.max(toFreeze.size(), 1) * 2 - 1) << 1;
+            this.types = new Type[capacity];
+            this.hierarchies = new TypeHierarchy[capacity];
+            this.mask = capacity - 1;
+            this.number = number;
+            int added = 0;
+            for (TypeHierarchy hierarchy : toFreeze) {
+                int i = slotOf(hierarchy.type());
+                if (types[i] == null) {
+                    types[i] = hierarchy.type();
+                    hierarchies[i] = hierarchy;
+                    added++;
+                }
+            }
+            this.size = added;
+        }
+
+        TypeHierarchy get(Type t) {
+            int i = indexOf(t);
+            for (Type candidate = types[i]; candidate != null; candidate = types[i]) {
+                if (candidate.equals(t)) {
+                    return hierarchies[i];
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        /**
+         * The slot holding the given type, or the empty slot where it belongs.
+         */
+        private int slotOf(Type t) {
+            int i = indexOf(t);
+            while (types[i] != null && !types[i].equals(t)) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private int indexOf(Type t) {
+            int h = t.hashCode() * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        void addTo(Collection<TypeHierarchy> merged) {
+            for (TypeHierarchy hierarchy : hierarchies) {
+                if (hierarchy != null) {
+                    merged.add(hierarchy);
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import org.objectweb.asm.Type;
+
+/**
+ * Emits Java Flight Recorder events for the lookups made while reading type hierarchies, so that recordings show
+ * which types, and which call sites, are expensive.
+ * <br>
+ * Each event carries the names of the types involved, the depth at which it is nested in other events of this kind
+ * on the same thread, and its duration. The events are disabled by default, and are enabled with a recording
+ * setting on their name, e.g. <code>org.mutabilitydetector.asm.HierarchyOf#enabled=true</code>. While disabled,
+ * {@link #begin(Kind)} allocates nothing and returns a scope which does nothing, and the names of the types are
+ * never built, since they are passed to the scope as {@link Type}s.
+ * <br>
+ * On a JVM without the <code>jdk.jfr</code> API, no events are emitted. Nor are they when built with a JDK without
+ * that API, i.e. before 11, other than 8u262 and later, since the events are then left out of the build.
+ */
+public final class HierarchyEvents {
+
+    public enum Kind {
+        /**
+         * {@link TypeHierarchyReader#hierarchyOf(org.objectweb.asm.Type)} of a class or interface.
+         */
+        HIERARCHY_OF,
+        /**
+         * Reading a class file, or its header, to obtain a hierarchy.
+         */
+        CLASS_FILE_READ,
+        /**
+         * Finding the common superclass of two types for a class writer.
+         */
+        COMMON_SUPER_CLASS,
+        /**
+         * Checking assignability of two types for a verifier.
+         */
+        IS_ASSIGNABLE_FROM
+    }
+
+    /**
+     * An event which has begun. Must be ended once, on the thread which began it.
+     */
+    public abstract static class Scope {
+        public abstract void end(String firstType, String secondType);
+
+        public abstract void end(Type firstType, Type secondType);
+
+        public void end(Type type) {
+            end(type, null);
+        }
+    }
+
+    /**
+     * Creates events, when the <code>jdk.jfr</code> API is present.
+     */
+    abstract static class Recorder {
+        abstract Scope begin(Kind kind);
+    }
+
+    static final Scope DISABLED = new Scope() {
+        @Override
+        public void end(String firstType, String secondType) {
+        }
+
+        @Override
+        public void end(Type firstType, Type secondType) {
+        }
+    };
+
+    private static final Recorder RECORDER = recorder();
+
+    private HierarchyEvents() {
+    }
+
+    public static Scope begin(Kind kind) {
+        return RECORDER == null ? DISABLED : RECORDER.begin(kind);
+    }
+
+    private static Recorder recorder() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (Recorder) Class.forName("org.mutabilitydetector.asm.typehierarchy.JfrRecorder")
+                .getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            throw new Error(e);
+        }
+    }
+}
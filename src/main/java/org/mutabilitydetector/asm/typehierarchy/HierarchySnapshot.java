@@ -0,0 +1,260 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.objectweb.asm.Type;
+
+/**
+ * Writes the contents of a {@link ConcurrentMapCachingTypeHierarchyReader}, and optionally of an
+ * {@link IsAssignableFromCachingTypeHierarchyReader}, to a compact binary file, and restores them in a later JVM.
+ * <br>
+ * When a {@link ClassPathTypeHierarchyReader} is given, the snapshot records the jar or class file each type was
+ * read from, and a fingerprint of it which is cheap to recompute. On restore, types whose origin or fingerprint no
+ * longer match the given classpath are stale, and are left to be read again. Since an assignability result may depend
+ * on any type in the hierarchy, no assignability results are restored if any type is stale.
+ * <br>
+ * Only the hierarchies of classes and interfaces are written; those of primitives and arrays are cheaper to create
+ * than to restore.
+ * <br>
+ * The snapshot is written to a temporary file alongside the snapshot file, which then replaces it, so that a JVM
+ * which stops while writing never leaves a partly written snapshot to be restored.
+ *
+ * <h3>Format</h3>
+ * All values are big-endian. Every string is written once to the symbol table, and referred to by its index.
+ * <pre>
+ * header:  int magic, int version, int symbolCount, int typeCount, int resultCount
+ * symbols: symbolCount strings, as written by DataOutput.writeUTF
+ * types:   int name, int superName (or -1), byte flags, u2 interfaceCount, int[interfaceCount] interfaceNames,
+ *          int origin (or -1), long fingerprint
+ * results: int toDescriptor, int fromDescriptor, byte isAssignableFrom
+ * </pre>
+ */
+public final class HierarchySnapshot {
+
+    static final int MAGIC = 0x5448534E; // "THSN"
+    static final int VERSION = 1;
+    static final int NO_SYMBOL = -1;
+    static final int FLAG_INTERFACE = 1;
+
+    private HierarchySnapshot() { }
+
+    /**
+     * Writes every hierarchy cached by the given reader, without recording where each type came from.
+     *
+     * @return the number of types written
+     */
+    public static int write(ConcurrentMapCachingTypeHierarchyReader hierarchies, File snapshotFile) throws IOException {
+        return write(hierarchies, null, null, snapshotFile);
+    }
+
+    /**
+     * Writes every hierarchy cached by the given reader, and every result cached by the given assignability cache.
+     *
+     * @param assignability may be null, to write no assignability results
+     * @param origins may be null, to record no origins
+     * @return the number of types written
+     */
+    public static int write(ConcurrentMapCachingTypeHierarchyReader hierarchies,
+                            IsAssignableFromCachingTypeHierarchyReader assignability,
+                            ClassPathTypeHierarchyReader origins,
+                            File snapshotFile) throws IOException {
+        final SymbolTable symbols = new SymbolTable();
+        List<int[]> types = new ArrayList<int[]>();
+        List<Long> fingerprints = new ArrayList<Long>();
+        for (TypeHierarchy hierarchy : hierarchies.cachedHierarchies()) {
+            Type t = hierarchy.type();
+            if (t.getSort() != Type.OBJECT) {
+                continue;
+            }
+            List<Type> interfaces = hierarchy.getInterfaces();
+            int[] record = new int[4 + interfaces.size()];
+            record[0] = symbols.add(t.getInternalName());
+            record[1] = hierarchy.getSuperClass() == null
+                ? NO_SYMBOL
+                : symbols.add(hierarchy.getSuperClass().getInternalName());
+            record[2] = hierarchy.isInterface() ? FLAG_INTERFACE : 0;
+            String origin = origins == null ? null : origins.originOf(t);
+            record[3] = origin == null ? NO_SYMBOL : symbols.add(origin);
+            for (int i = 0; i < interfaces.size(); i++) {
+                record[4 + i] = symbols.add(interfaces.get(i).getInternalName());
+            }
+            types.add(record);
+            fingerprints.add(origin == null ? 0L : origins.fingerprintOf(t));
+        }
+
+        final List<int[]> results = new ArrayList<int[]>();
+        if (assignability != null) {
+            assignability.forEachResult(new IsAssignableFromCachingTypeHierarchyReader.ResultVisitor() {
+                @Override
+                public void visitResult(Type to, Type from, boolean isAssignableFrom) {
+                    results.add(new int[] {
+                        symbols.add(to.getDescriptor()), symbols.add(from.getDescriptor()), isAssignableFrom ? 1 : 0
+                    });
+                }
+            });
+        }
+
+        File directory = snapshotFile.getAbsoluteFile().getParentFile();
+        File temporaryFile = File.createTempFile("." + snapshotFile.getName() + "-", ".tmp", directory);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(symbols.size());
+                out.writeInt(types.size());
+                out.writeInt(results.size());
+                for (String symbol : symbols.inOrder) {
+                    out.writeUTF(symbol);
+                }
+                for (int t = 0; t < types.size(); t++) {
+                    int[] record = types.get(t);
+                    out.writeInt(record[0]);
+                    out.writeInt(record[1]);
+                    out.writeByte(record[2]);
+                    out.writeShort(record.length - 4);
+                    for (int i = 4; i < record.length; i++) {
+                        out.writeInt(record[i]);
+                    }
+                    out.writeInt(record[3]);
+                    out.writeLong(fingerprints.get(t));
+                }
+                for (int[] result : results) {
+                    out.writeInt(result[0]);
+                    out.writeInt(result[1]);
+                    out.writeByte(result[2]);
+                }
+            } finally {
+                out.close();
+            }
+            TypeHierarchyIndexWriter.replace(temporaryFile, snapshotFile);
+        } finally {
+            temporaryFile.delete();
+        }
+        return types.size();
+    }
+
+    /**
+     * Restores every hierarchy in the snapshot, without checking whether any is stale.
+     */
+    public static SnapshotRestoreResult restore(File snapshotFile, ConcurrentMapCachingTypeHierarchyReader hierarchies)
+        throws IOException
+    {
+        return restore(snapshotFile, hierarchies, null, null);
+    }
+
+    /**
+     * Restores the hierarchies in the snapshot which are not stale, and, if none are stale, its assignability results.
+     * Types already in the cache are left as they are.
+     *
+     * @param assignability may be null, to restore no assignability results
+     * @param origins may be null, to restore every type without checking whether it is stale
+     */
+    public static SnapshotRestoreResult restore(File snapshotFile,
+                                                ConcurrentMapCachingTypeHierarchyReader hierarchies,
+                                                IsAssignableFromCachingTypeHierarchyReader assignability,
+                                                ClassPathTypeHierarchyReader origins) throws IOException {
+        long start = System.nanoTime();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a type hierarchy snapshot: " + snapshotFile);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported type hierarchy snapshot version " + version + ": " + snapshotFile);
+            }
+            String[] symbols = new String[in.readInt()];
+            int typeCount = in.readInt();
+            int resultCount = in.readInt();
+            for (int i = 0; i < symbols.length; i++) {
+                symbols[i] = in.readUTF();
+            }
+
+            int restoredTypes = 0;
+            int staleTypes = 0;
+            for (int t = 0; t < typeCount; t++) {
+                Type type = Type.getObjectType(symbols[in.readInt()]);
+                int superName = in.readInt();
+                boolean isInterface = (in.readByte() & FLAG_INTERFACE) != 0;
+                Type[] interfaces = new Type[in.readUnsignedShort()];
+                for (int i = 0; i < interfaces.length; i++) {
+                    interfaces[i] = Type.getObjectType(symbols[in.readInt()]);
+                }
+                int origin = in.readInt();
+                long fingerprint = in.readLong();
+
+                if (origins != null && isStale(type, origin == NO_SYMBOL ? null : symbols[origin], fingerprint, origins)) {
+                    staleTypes++;
+                } else if (hierarchies.putIfAbsent(new TypeHierarchy(type,
+                        superName == NO_SYMBOL ? null : Type.getObjectType(symbols[superName]),
+                        Arrays.asList(interfaces),
+                        isInterface))) {
+                    restoredTypes++;
+                }
+            }
+
+            int restoredResults = 0;
+            if (assignability != null && staleTypes == 0) {
+                Map<String, Type> typesByDescriptor = new HashMap<String, Type>();
+                for (int r = 0; r < resultCount; r++) {
+                    Type to = typeOf(symbols[in.readInt()], typesByDescriptor);
+                    Type from = typeOf(symbols[in.readInt()], typesByDescriptor);
+                    assignability.putResult(to, from, in.readByte() != 0);
+                    restoredResults++;
+                }
+            }
+            return new SnapshotRestoreResult(restoredTypes, staleTypes, restoredResults, System.nanoTime() - start);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static boolean isStale(Type t, String origin, long fingerprint, ClassPathTypeHierarchyReader origins) {
+        String currentOrigin = origins.originOf(t);
+        if (currentOrigin == null) {
+            return origin != null;
+        }
+        return !currentOrigin.equals(origin) || origins.fingerprintOf(t) != fingerprint;
+    }
+
+    private static Type typeOf(String descriptor, Map<String, Type> typesByDescriptor) {
+        Type t = typesByDescriptor.get(descriptor);
+        if (t == null) {
+            t = Type.getType(descriptor);
+            typesByDescriptor.put(descriptor, t);
+        }
+        return t;
+    }
+
+    private static final class SymbolTable {
+        private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+        private final List<String> inOrder = new ArrayList<String>();
+
+        int add(String symbol) {
+            Integer index = indexes.get(symbol);
+            if (index == null) {
+                index = inOrder.size();
+                indexes.put(symbol, index);
+                inOrder.add(symbol);
+            }
+            return index;
+        }
+
+        int size() {
+            return inOrder.size();
+        }
+    }
+}
@@ -2,17 +2,39 @@ package org.mutabilitydetector.asm.typehierarchy;
 
 import org.objectweb.asm.Type;
 
+import java.io.IOException;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+/**
+ * Caches the results of {@link #isAssignableFrom(Type, Type)}.
+ * <br>
+ * Each {@link Type} seen is given a small int id once, and a pair of ids is packed into a long which indexes an
+ * open-addressed table of primitive longs, so that answering from the cache allocates nothing. When the table is
+ * grown, results recorded concurrently with the copy may be dropped, and are calculated again on the next call.
+ * <br>
+ * The id of each recently seen {@link Type} instance is also kept by identity, since callers such as a verifier ask
+ * about the same instances over and over. Finding the id of such an instance costs an identity hash and one array
+ * read, rather than hashing and comparing the descriptor in a map.
+ */
 public class IsAssignableFromCachingTypeHierarchyReader extends TypeHierarchyReader {
 
-    private final ConcurrentMap<TypeAssignability, Boolean> isAssignableFromCache;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final long EMPTY = 0L;
+    private static final int RECENT_TYPE_IDS = 1 << 10;
+
     private final TypeHierarchyReader baseReader;
+    private final ConcurrentMap<Type, Integer> typeIds = new ConcurrentHashMap<Type, Integer>();
+    private final AtomicInteger nextTypeId = new AtomicInteger(1);
+    private final TypeId[] recentTypeIds = new TypeId[RECENT_TYPE_IDS];
+    private final AtomicInteger entryCount = new AtomicInteger();
+    private volatile AtomicLongArray isAssignableFromCache = new AtomicLongArray(INITIAL_CAPACITY);
 
     public IsAssignableFromCachingTypeHierarchyReader(TypeHierarchyReader baseReader) {
         this.baseReader = baseReader;
-        this.isAssignableFromCache =  new ConcurrentHashMap<TypeAssignability, Boolean>();
     }
     
     @Override
@@ -32,48 +54,150 @@ public class IsAssignableFromCachingTypeHierarchyReader extends TypeHierarchyRea
     
     @Override
     public boolean isAssignableFrom(final Type t, final Type u) {
-        TypeAssignability assignability = new TypeAssignability(t, u);
-        if (!isAssignableFromCache.containsKey(assignability)) {
-            isAssignableFromCache.put(assignability, baseReader.isAssignableFrom(t, u));
+        long key = ((long) idOf(t) << 32) | idOf(u);
+
+        AtomicLongArray table = isAssignableFromCache;
+        int mask = table.length() - 1;
+        for (int i = indexOf(key, mask); ; i = (i + 1) & mask) {
+            long entry = table.get(i);
+            if (entry == EMPTY) {
+                break;
+            } else if (keyOf(entry) == key) {
+                return (entry & 1L) != 0;
+            }
         }
-        return isAssignableFromCache.get(assignability);
+
+        boolean isAssignableFrom = baseReader.isAssignableFrom(t, u);
+        record(key, isAssignableFrom);
+        return isAssignableFrom;
     }
-    
-    private static class TypeAssignability {
-        private final Type toType, fromType;
-        private final int hashCode;
-        
-        TypeAssignability(Type toType, Type fromType) {
-            this.toType = toType;
-            this.fromType = fromType;
-            this.hashCode = calculateHashCode();
+
+    interface ResultVisitor {
+        void visitResult(Type to, Type from, boolean isAssignableFrom) throws IOException;
+    }
+
+    /**
+     * Visits each cached result. Results recorded while visiting may or may not be visited.
+     */
+    void forEachResult(ResultVisitor visitor) throws IOException {
+        Type[] typesById = new Type[nextTypeId.get()];
+        for (Map.Entry<Type, Integer> typeId : typeIds.entrySet()) {
+            if (typeId.getValue() < typesById.length) {
+                typesById[typeId.getValue()] = typeId.getKey();
+            }
+        }
+        AtomicLongArray table = isAssignableFromCache;
+        for (int i = 0; i < table.length(); i++) {
+            long entry = table.get(i);
+            if (entry == EMPTY) {
+                continue;
+            }
+            long key = keyOf(entry);
+            int toId = (int) (key >>> 32);
+            int fromId = (int) key;
+            if (toId < typesById.length && fromId < typesById.length
+                    && typesById[toId] != null && typesById[fromId] != null) {
+                visitor.visitResult(typesById[toId], typesById[fromId], (entry & 1L) != 0);
+            }
+        }
+    }
+
+    /**
+     * Adds a result to the cache, as if it had been calculated.
+     */
+    void putResult(Type t, Type u, boolean isAssignableFrom) {
+        record(((long) idOf(t) << 32) | idOf(u), isAssignableFrom);
+    }
+
+    /**
+     * Ids start from 1 and are at most {@link Integer#MAX_VALUE}, so a packed pair never equals {@link #EMPTY}, and
+     * its top bit is always clear, leaving room to shift the result into the lowest bit of a table entry.
+     */
+    private int idOf(Type t) {
+        int slot = System.identityHashCode(t) & (RECENT_TYPE_IDS - 1);
+        TypeId recent = recentTypeIds[slot];
+        if (recent != null && recent.type == t) {
+            return recent.id;
+        }
+        int id = internedIdOf(t);
+        recentTypeIds[slot] = new TypeId(t, id);
+        return id;
+    }
+
+    private int internedIdOf(Type t) {
+        Integer id = typeIds.get(t);
+        if (id == null) {
+            Integer newId = nextTypeId.getAndIncrement();
+            if (newId < 0) {
+                throw new IllegalStateException("Too many distinct types to cache");
+            }
+            id = typeIds.putIfAbsent(t, newId);
+            if (id == null) {
+                id = newId;
+            }
         }
+        return id;
+    }
 
-        private int calculateHashCode() {
-            int result = toType.hashCode();
-            result = 31 * result + fromType.hashCode();
-            return result;
+    /**
+     * Immutable, so that a slot of {@link #recentTypeIds} may be read and overwritten from any thread without
+     * synchronization. At worst, a thread misses an id which another has just recorded, and interns it again.
+     */
+    private static final class TypeId {
+        final Type type;
+        final int id;
+
+        TypeId(Type type, int id) {
+            this.type = type;
+            this.id = id;
         }
+    }
 
-        @Override
-        public int hashCode() {
-            return hashCode;
+    private void record(long key, boolean isAssignableFrom) {
+        long entry = (key << 1) | (isAssignableFrom ? 1L : 0L);
+        AtomicLongArray table = isAssignableFromCache;
+        if (insert(table, entry) && entryCount.incrementAndGet() > table.length() * 3 / 4) {
+            grow(table);
         }
+    }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj) {
+    private static boolean insert(AtomicLongArray table, long entry) {
+        long key = keyOf(entry);
+        int mask = table.length() - 1;
+        for (int i = indexOf(key, mask); ; i = (i + 1) & mask) {
+            if (table.compareAndSet(i, EMPTY, entry)) {
                 return true;
-            } else if (obj == null) {
-                return false;
-            } else if (getClass() != obj.getClass()) {
+            } else if (keyOf(table.get(i)) == key) {
                 return false;
             }
-            
-            TypeAssignability other = (TypeAssignability) obj;
-            return toType.equals(other.toType) && fromType.equals(other.fromType);
         }
-        
+    }
+
+    private synchronized void grow(AtomicLongArray table) {
+        if (table != isAssignableFromCache) {
+            return;
+        }
+        AtomicLongArray grown = new AtomicLongArray(table.length() * 2);
+        int count = 0;
+        for (int i = 0; i < table.length(); i++) {
+            long entry = table.get(i);
+            if (entry != EMPTY && insert(grown, entry)) {
+                count++;
+            }
+        }
+        entryCount.set(count);
+        isAssignableFromCache = grown;
+    }
+
+    private static long keyOf(long entry) {
+        return entry >>> 1;
+    }
+
+    private static int indexOf(long key, int mask) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key & mask;
     }
     
 }
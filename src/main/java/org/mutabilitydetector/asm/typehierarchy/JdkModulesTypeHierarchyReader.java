@@ -0,0 +1,303 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.ProviderNotFoundException;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.objectweb.asm.Type;
+
+/**
+ * Reads the class files of JDK 9+ platform classes directly from a runtime image, through the <code>jrt:/</code>
+ * file system, or from a directory of <code>.jmod</code> files, rather than through the system class loader.
+ * <br>
+ * On construction, an index from each package to the module which contains it is built, so a lookup such as
+ * <code>java/lang/Object</code> goes straight to the class file within the <code>java.base</code> module. For a
+ * runtime image, the index is read from the image's own <code>/packages</code> directory, without visiting any
+ * class files.
+ * <br>
+ * This reader performs no caching of {@link TypeHierarchy} results. It is safe to share between threads, and is
+ * intended to be decorated with one of the caching readers. It should be closed when no longer required.
+ */
+public class JdkModulesTypeHierarchyReader extends TypeHierarchyReader implements Closeable {
+
+    private static final URI JRT = URI.create("jrt:/");
+    private static final String JMOD_CLASSES = "classes/";
+
+    private final Map<String, Module> modulesByPackage;
+    private final List<Closeable> resources;
+
+    private JdkModulesTypeHierarchyReader(Map<String, Module> modulesByPackage, List<Closeable> resources) {
+        this.modulesByPackage = modulesByPackage;
+        this.resources = resources;
+    }
+
+    /**
+     * Reads platform classes from the runtime image of the running JVM.
+     *
+     * @throws IOException if the running JVM has no <code>jrt:/</code> file system, i.e. is older than JDK 9
+     */
+    public static JdkModulesTypeHierarchyReader fromRuntimeImage() throws IOException {
+        FileSystem jrt;
+        try {
+            jrt = FileSystems.getFileSystem(JRT);
+        } catch (ProviderNotFoundException e) {
+            throw new IOException("jrt:/ file system is not available, it requires JDK 9 or later", e);
+        }
+        return fromJrtFileSystem(jrt, Collections.<Closeable>emptyList());
+    }
+
+    /**
+     * Reads platform classes from the runtime image of the JDK installed at the given location, which need not be
+     * the version of the running JVM. The running JVM must itself be JDK 9 or later.
+     */
+    public static JdkModulesTypeHierarchyReader fromRuntimeImage(File javaHome) throws IOException {
+        FileSystem jrt;
+        try {
+            jrt = FileSystems.newFileSystem(JRT, Collections.singletonMap("java.home", javaHome.getAbsolutePath()));
+        } catch (ProviderNotFoundException e) {
+            throw new IOException("jrt:/ file system is not available, it requires JDK 9 or later", e);
+        }
+        return fromJrtFileSystem(jrt, Collections.<Closeable>singletonList(jrt));
+    }
+
+    private static JdkModulesTypeHierarchyReader fromJrtFileSystem(FileSystem jrt, List<Closeable> resources)
+        throws IOException
+    {
+        Map<String, Module> modules = new HashMap<String, Module>();
+        Map<String, Module> modulesByPackage = new HashMap<String, Module>();
+        DirectoryStream<Path> packages = Files.newDirectoryStream(jrt.getPath("/packages"));
+        try {
+            for (Path packageDirectory : packages) {
+                String packageName = fileNameOf(packageDirectory).replace('.', '/');
+                DirectoryStream<Path> modulesOfPackage = Files.newDirectoryStream(packageDirectory);
+                try {
+                    for (Path moduleLink : modulesOfPackage) {
+                        String moduleName = fileNameOf(moduleLink);
+                        Module module = modules.get(moduleName);
+                        if (module == null) {
+                            module = new JrtModule(moduleName, jrt.getPath("/modules", moduleName));
+                            modules.put(moduleName, module);
+                        }
+                        if (!modulesByPackage.containsKey(packageName)) {
+                            modulesByPackage.put(packageName, module);
+                        }
+                    }
+                } finally {
+                    modulesOfPackage.close();
+                }
+            }
+        } finally {
+            packages.close();
+        }
+        return new JdkModulesTypeHierarchyReader(modulesByPackage, resources);
+    }
+
+    /**
+     * Reads platform classes from the <code>.jmod</code> files in the given directory, usually the
+     * <code>jmods</code> directory of a JDK installation. Does not require the running JVM to be JDK 9 or later.
+     */
+    public static JdkModulesTypeHierarchyReader fromJmods(File jmodsDirectory) throws IOException {
+        File[] jmods = jmodsDirectory.listFiles();
+        if (jmods == null) {
+            throw new IOException("Not a directory: " + jmodsDirectory);
+        }
+        Map<String, Module> modulesByPackage = new HashMap<String, Module>();
+        List<Closeable> resources = new ArrayList<Closeable>();
+        try {
+            for (File jmod : jmods) {
+                if (jmod.isFile() && jmod.getName().endsWith(".jmod")) {
+                    ZipFile archive = new ZipFile(jmod);
+                    resources.add(archive);
+                    indexJmod(archive, jmod.getName().substring(0, jmod.getName().length() - ".jmod".length()),
+                        modulesByPackage);
+                }
+            }
+        } catch (IOException e) {
+            closeAll(resources);
+            throw e;
+        }
+        return new JdkModulesTypeHierarchyReader(modulesByPackage, resources);
+    }
+
+    private static void indexJmod(ZipFile archive, String moduleName, Map<String, Module> modulesByPackage) {
+        Module module = new JmodModule(moduleName, archive);
+        Enumeration<? extends ZipEntry> entries = archive.entries();
+        while (entries.hasMoreElements()) {
+            String classFileName = classFileNameOf(entries.nextElement());
+            if (classFileName != null) {
+                String packageName = packageOf(classFileName);
+                if (!modulesByPackage.containsKey(packageName)) {
+                    modulesByPackage.put(packageName, module);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the module which contains the package of the given {@link Type}, or null if no module
+     * contains it.
+     */
+    public String moduleOf(Type t) {
+        Module module = modulesByPackage.get(packageOf(t.getInternalName()));
+        return module == null ? null : module.name;
+    }
+
+    /**
+     * The internal names of every class in every module. Since only packages are indexed, this visits the whole
+     * image, and is intended for bulk operations rather than lookups.
+     */
+    public List<String> internalNames() throws IOException {
+        List<String> internalNames = new ArrayList<String>();
+        for (Module module : new LinkedHashSet<Module>(modulesByPackage.values())) {
+            module.addInternalNamesTo(internalNames);
+        }
+        return internalNames;
+    }
+
+    @Override
+    protected InputStream openClassFile(Type t) throws IOException {
+        Module module = modulesByPackage.get(packageOf(t.getInternalName()));
+        if (module == null) {
+            throw new ClassFileNotFoundException();
+        }
+        return module.open(t.getInternalName());
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeAll(resources);
+    }
+
+    private static void closeAll(List<Closeable> resources) throws IOException {
+        IOException firstFailure = null;
+        for (Closeable resource : resources) {
+            try {
+                resource.close();
+            } catch (IOException e) {
+                if (firstFailure == null) {
+                    firstFailure = e;
+                }
+            }
+        }
+        if (firstFailure != null) {
+            throw firstFailure;
+        }
+    }
+
+    /**
+     * Returns the name of the class file relative to the classes section of a jmod, or null if the entry is not a
+     * class file. Jmods also hold native libraries, configuration and legal notices.
+     */
+    private static String classFileNameOf(ZipEntry jmodEntry) {
+        String entryName = jmodEntry.getName();
+        if (!jmodEntry.isDirectory() && entryName.startsWith(JMOD_CLASSES)) {
+            String classFileName = entryName.substring(JMOD_CLASSES.length());
+            return ClassPathScanner.isClassFile(classFileName) ? classFileName : null;
+        }
+        return null;
+    }
+
+    private static String packageOf(String internalNameOrEntryName) {
+        int lastSlash = internalNameOrEntryName.lastIndexOf('/');
+        return lastSlash == -1 ? "" : internalNameOrEntryName.substring(0, lastSlash);
+    }
+
+    private static String fileNameOf(Path path) {
+        String fileName = path.getFileName().toString();
+        return fileName.endsWith("/") ? fileName.substring(0, fileName.length() - 1) : fileName;
+    }
+
+    private abstract static class Module {
+        final String name;
+
+        Module(String name) {
+            this.name = name;
+        }
+
+        abstract InputStream open(String internalName) throws IOException;
+
+        abstract void addInternalNamesTo(List<String> internalNames) throws IOException;
+    }
+
+    private static final class JrtModule extends Module {
+        private final Path root;
+
+        JrtModule(String name, Path root) {
+            super(name);
+            this.root = root;
+        }
+
+        @Override
+        InputStream open(String internalName) throws IOException {
+            try {
+                return Files.newInputStream(root.resolve(ClassPathScanner.classFileEntryNameOf(internalName)));
+            } catch (NoSuchFileException e) {
+                throw new ClassFileNotFoundException();
+            }
+        }
+
+        @Override
+        void addInternalNamesTo(final List<String> internalNames) throws IOException {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    String entryName = ClassPathScanner.entryNameOf(root, file);
+                    if (ClassPathScanner.isClassFile(entryName)) {
+                        internalNames.add(ClassPathScanner.internalNameOf(entryName));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    private static final class JmodModule extends Module {
+        private final ZipFile archive;
+
+        JmodModule(String name, ZipFile archive) {
+            super(name);
+            this.archive = archive;
+        }
+
+        @Override
+        InputStream open(String internalName) throws IOException {
+            ZipEntry entry = archive.getEntry(JMOD_CLASSES + ClassPathScanner.classFileEntryNameOf(internalName));
+            if (entry == null) {
+                throw new ClassFileNotFoundException();
+            }
+            return archive.getInputStream(entry);
+        }
+
+        @Override
+        void addInternalNamesTo(List<String> internalNames) {
+            Enumeration<? extends ZipEntry> entries = archive.entries();
+            while (entries.hasMoreElements()) {
+                String classFileName = classFileNameOf(entries.nextElement());
+                if (classFileName != null) {
+                    internalNames.add(ClassPathScanner.internalNameOf(classFileName));
+                }
+            }
+        }
+    }
+}
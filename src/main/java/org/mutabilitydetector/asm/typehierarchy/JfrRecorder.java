@@ -0,0 +1,148 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import org.objectweb.asm.Type;
+
+/**
+ * Only loaded by {@link HierarchyEvents} once it has found the <code>jdk.jfr</code> API, so that nothing else refers
+ * to it.
+ * <br>
+ * Whether a kind of event is enabled is asked of one event per kind, made up front and never begun, so that no event
+ * is created while recording is off.
+ */
+final class JfrRecorder extends HierarchyEvents.Recorder {
+
+    private static final ThreadLocal<int[]> DEPTH = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    private final HierarchyEvent[] prototypes;
+
+    JfrRecorder() {
+        HierarchyEvents.Kind[] kinds = HierarchyEvents.Kind.values();
+        prototypes = new HierarchyEvent[kinds.length];
+        for (HierarchyEvents.Kind kind : kinds) {
+            prototypes[kind.ordinal()] = newEvent(kind);
+        }
+    }
+
+    @Override
+    HierarchyEvents.Scope begin(HierarchyEvents.Kind kind) {
+        if (!prototypes[kind.ordinal()].isEnabled()) {
+            return HierarchyEvents.DISABLED;
+        }
+        HierarchyEvent event = newEvent(kind);
+        int[] depth = DEPTH.get();
+        event.depth = depth[0]++;
+        event.begin();
+        return new JfrScope(event, depth);
+    }
+
+    private static HierarchyEvent newEvent(HierarchyEvents.Kind kind) {
+        switch (kind) {
+            case HIERARCHY_OF:
+                return new HierarchyOfEvent();
+            case CLASS_FILE_READ:
+                return new ClassFileReadEvent();
+            case COMMON_SUPER_CLASS:
+                return new CommonSuperClassEvent();
+            case IS_ASSIGNABLE_FROM:
+                return new IsAssignableFromEvent();
+            default:
+                throw new Error("Programmer error: received an event kind which wasn't matched.");
+        }
+    }
+
+    private static final class JfrScope extends HierarchyEvents.Scope {
+        private final HierarchyEvent event;
+        private final int[] depth;
+
+        JfrScope(HierarchyEvent event, int[] depth) {
+            this.event = event;
+            this.depth = depth;
+        }
+
+        @Override
+        public void end(String firstType, String secondType) {
+            if (endAndShouldCommit()) {
+                commit(firstType, secondType);
+            }
+        }
+
+        @Override
+        public void end(Type firstType, Type secondType) {
+            if (endAndShouldCommit()) {
+                commit(nameOf(firstType), nameOf(secondType));
+            }
+        }
+
+        private boolean endAndShouldCommit() {
+            depth[0]--;
+            event.end();
+            return event.shouldCommit();
+        }
+
+        private void commit(String firstType, String secondType) {
+            event.firstType = firstType;
+            event.secondType = secondType;
+            event.commit();
+        }
+
+        /**
+         * The internal name of a class or interface, or the descriptor of any other type.
+         */
+        private static String nameOf(Type t) {
+            if (t == null) {
+                return null;
+            }
+            return t.getSort() == Type.OBJECT ? t.getInternalName() : t.getDescriptor();
+        }
+    }
+
+    @Category({ "ASM", "Type Hierarchy" })
+    @Enabled(false)
+    @StackTrace(false)
+    abstract static class HierarchyEvent extends Event {
+        @Label("First Type")
+        String firstType;
+
+        @Label("Second Type")
+        String secondType;
+
+        @Label("Depth")
+        @Description("Number of enclosing type hierarchy events on the same thread")
+        int depth;
+    }
+
+    @Name("org.mutabilitydetector.asm.HierarchyOf")
+    @Label("Hierarchy Of")
+    static final class HierarchyOfEvent extends HierarchyEvent {
+    }
+
+    @Name("org.mutabilitydetector.asm.ClassFileRead")
+    @Label("Class File Read")
+    static final class ClassFileReadEvent extends HierarchyEvent {
+    }
+
+    @Name("org.mutabilitydetector.asm.CommonSuperClass")
+    @Label("Common Super Class")
+    @StackTrace(true)
+    static final class CommonSuperClassEvent extends HierarchyEvent {
+    }
+
+    @Name("org.mutabilitydetector.asm.IsAssignableFrom")
+    @Label("Is Assignable From")
+    @StackTrace(true)
+    static final class IsAssignableFromEvent extends HierarchyEvent {
+    }
+}
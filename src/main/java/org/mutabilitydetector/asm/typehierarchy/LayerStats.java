@@ -0,0 +1,128 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+/**
+ * An immutable snapshot of the counts kept for one layer of decorated readers by {@link TypeHierarchyMetrics}, split
+ * by {@link QueryKind}.
+ * <br>
+ * A lookup is a hit if the layer answered it without calling the layer beneath, and a miss if it did. At a layer
+ * which reads class files, a miss is a lookup which read a class file.
+ */
+public final class LayerStats {
+
+    /**
+     * The number of buckets in each latency histogram. Bucket i counts latencies of at least 2<sup>i</sup> and less
+     * than 2<sup>i+1</sup> nanoseconds, except bucket 0, which also counts latencies of zero.
+     */
+    public static final int LATENCY_BUCKETS = 64;
+
+    private final String layer;
+    private final long[] calls;
+    private final long[] hits;
+    private final long[] misses;
+    private final long[] classFileReads;
+    private final long[] bytesRead;
+    private final long[][] parseLatencyHistograms;
+
+    LayerStats(String layer, long[] calls, long[] hits, long[] misses, long[] classFileReads, long[] bytesRead,
+               long[][] parseLatencyHistograms) {
+        this.layer = layer;
+        this.calls = calls;
+        this.hits = hits;
+        this.misses = misses;
+        this.classFileReads = classFileReads;
+        this.bytesRead = bytesRead;
+        this.parseLatencyHistograms = parseLatencyHistograms;
+    }
+
+    public String layer() {
+        return layer;
+    }
+
+    public long calls(QueryKind kind) {
+        return calls[kind.ordinal()];
+    }
+
+    public long hits(QueryKind kind) {
+        return hits[kind.ordinal()];
+    }
+
+    public long misses(QueryKind kind) {
+        return misses[kind.ordinal()];
+    }
+
+    public long classFileReads(QueryKind kind) {
+        return classFileReads[kind.ordinal()];
+    }
+
+    public long bytesRead(QueryKind kind) {
+        return bytesRead[kind.ordinal()];
+    }
+
+    /**
+     * The time taken to read and parse each class file header, in log<sub>2</sub> nanosecond buckets.
+     *
+     * @see #LATENCY_BUCKETS
+     */
+    public long[] parseLatencyHistogram(QueryKind kind) {
+        return parseLatencyHistograms[kind.ordinal()].clone();
+    }
+
+    public long calls() {
+        return sum(calls);
+    }
+
+    public long hits() {
+        return sum(hits);
+    }
+
+    public long misses() {
+        return sum(misses);
+    }
+
+    public long classFileReads() {
+        return sum(classFileReads);
+    }
+
+    public long bytesRead() {
+        return sum(bytesRead);
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder(layer).append('\n');
+        for (QueryKind kind : QueryKind.values()) {
+            int k = kind.ordinal();
+            if (calls[k] == 0) {
+                continue;
+            }
+            report.append(String.format("  %-18s calls=%d hits=%d misses=%d classFileReads=%d bytesRead=%d%n",
+                kind, calls[k], hits[k], misses[k], classFileReads[k], bytesRead[k]));
+            if (classFileReads[k] > 0) {
+                report.append("  ").append(String.format("%-18s", "")).append(" parseLatencyNanos=")
+                    .append(histogramToString(parseLatencyHistograms[k])).append('\n');
+            }
+        }
+        return report.toString();
+    }
+
+    private static String histogramToString(long[] histogram) {
+        StringBuilder buckets = new StringBuilder("{");
+        for (int i = 0; i < histogram.length; i++) {
+            if (histogram[i] > 0) {
+                if (buckets.length() > 1) {
+                    buckets.append(", ");
+                }
+                buckets.append(i == 0 ? 0 : 1L << i).append("+=").append(histogram[i]);
+            }
+        }
+        return buckets.append('}').toString();
+    }
+}
@@ -0,0 +1,198 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import static org.mutabilitydetector.asm.typehierarchy.TypeHierarchyIndexWriter.EMPTY_SLOT;
+import static org.mutabilitydetector.asm.typehierarchy.TypeHierarchyIndexWriter.FLAG_INTERFACE;
+import static org.mutabilitydetector.asm.typehierarchy.TypeHierarchyIndexWriter.HEADER_SIZE;
+import static org.mutabilitydetector.asm.typehierarchy.TypeHierarchyIndexWriter.MAGIC;
+import static org.mutabilitydetector.asm.typehierarchy.TypeHierarchyIndexWriter.NO_STRING;
+import static org.mutabilitydetector.asm.typehierarchy.TypeHierarchyIndexWriter.RECORD_SIZE;
+import static org.mutabilitydetector.asm.typehierarchy.TypeHierarchyIndexWriter.VERSION;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.objectweb.asm.Type;
+
+/**
+ * Answers {@link #hierarchyOf(Type)} from a memory-mapped index written by {@link TypeHierarchyIndexWriter}, without
+ * reading any class files.
+ * <br>
+ * The index is mapped read-only, so its pages are shared, through the operating system's page cache, between every
+ * process which maps the same file. Since nothing is parsed up front, constructing this reader costs the same
+ * regardless of the size of the index. Types which are not in the index are obtained from a fallback reader.
+ * <br>
+ * Lookups use only absolute reads of the mapped buffer, so a single instance is safe to share between threads. The
+ * index file must not be modified while it is mapped.
+ * <br>
+ * The header of the index is checked when it is opened, and every offset is checked against the section it should
+ * point into before it is read, so a corrupt or truncated index is reported, rather than read out of bounds.
+ *
+ * @see TypeHierarchyIndexWriter
+ */
+public class MappedIndexTypeHierarchyReader extends TypeHierarchyReader {
+
+    private final File indexFile;
+    private final ByteBuffer index;
+    private final TypeHierarchyReader fallbackReader;
+    private final int typeCount;
+    private final int mask;
+    private final int recordsOffset;
+    private final int stringsOffset;
+
+    /**
+     * Constructor which falls back to a naive {@link TypeHierarchyReader} for types not in the index.
+     */
+    public MappedIndexTypeHierarchyReader(File indexFile) throws IOException {
+        this(indexFile, new TypeHierarchyReader());
+    }
+
+    public MappedIndexTypeHierarchyReader(File indexFile, TypeHierarchyReader fallbackReader) throws IOException {
+        this.indexFile = indexFile;
+        this.index = map(indexFile);
+        this.fallbackReader = fallbackReader;
+
+        if (index.limit() < HEADER_SIZE || index.getInt(0) != MAGIC) {
+            throw new IOException("Not a type hierarchy index: " + indexFile);
+        } else if (index.getInt(4) != VERSION) {
+            throw new IOException("Unsupported type hierarchy index version " + index.getInt(4) + ": " + indexFile);
+        }
+        this.typeCount = index.getInt(8);
+        int tableSize = index.getInt(12);
+        this.mask = tableSize - 1;
+        this.recordsOffset = index.getInt(16);
+        this.stringsOffset = index.getInt(20);
+
+        if (tableSize <= 0 || (tableSize & mask) != 0 || typeCount < 0 || typeCount >= tableSize) {
+            throw malformed("table of " + tableSize + " slots for " + typeCount + " types");
+        } else if (recordsOffset != HEADER_SIZE + (long) tableSize * 4
+                || stringsOffset < recordsOffset + (long) typeCount * RECORD_SIZE
+                || stringsOffset > index.limit()) {
+            throw malformed("records at " + recordsOffset + " and strings at " + stringsOffset
+                + " in " + index.limit() + " bytes");
+        }
+    }
+
+    private IOException malformed(String detail) {
+        return new IOException("Malformed type hierarchy index, " + detail + ": " + indexFile);
+    }
+
+    private static ByteBuffer map(File indexFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * The number of types held in the index.
+     */
+    public int size() {
+        return typeCount;
+    }
+
+    @Override
+    public TypeHierarchy hierarchyOf(Type t) {
+        if (t.getSort() != Type.OBJECT) {
+            return super.hierarchyOf(t);
+        }
+        try {
+            int record = recordOffsetOf(t.getInternalName());
+            return record == EMPTY_SLOT ? fallbackReader.hierarchyOf(t) : hierarchyAt(t, record);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Probes at most every slot of the table once, so that even a corrupt table with no empty slot ends.
+     */
+    private int recordOffsetOf(String internalName) throws IOException {
+        int hash = internalName.hashCode();
+        int slot = hash & mask;
+        for (int probes = 0; probes <= mask; probes++, slot = (slot + 1) & mask) {
+            int record = index.getInt(HEADER_SIZE + slot * 4);
+            if (record == EMPTY_SLOT) {
+                return EMPTY_SLOT;
+            }
+            checkRecord(record, 0);
+            if (index.getInt(record) == hash && stringAt(record + 4).equals(internalName)) {
+                return record;
+            }
+        }
+        return EMPTY_SLOT;
+    }
+
+    private void checkRecord(int record, int interfaceCount) throws IOException {
+        if (record < recordsOffset || record > stringsOffset - RECORD_SIZE - interfaceCount * 4) {
+            throw malformed("record of " + interfaceCount + " interfaces at " + record);
+        }
+    }
+
+    private TypeHierarchy hierarchyAt(Type t, int record) throws IOException {
+        int superName = index.getInt(record + 8);
+        boolean isInterface = (index.get(record + 12) & FLAG_INTERFACE) != 0;
+        int interfaceCount = index.getShort(record + 13) & 0xFFFF;
+        checkRecord(record, interfaceCount);
+
+        List<Type> interfaces;
+        if (interfaceCount == 0) {
+            interfaces = Collections.emptyList();
+        } else {
+            Type[] interfaceTypes = new Type[interfaceCount];
+            for (int i = 0; i < interfaceCount; i++) {
+                interfaceTypes[i] = Type.getObjectType(stringAt(record + 15 + i * 4));
+            }
+            interfaces = Arrays.asList(interfaceTypes);
+        }
+
+        return new TypeHierarchy(t,
+            superName == NO_STRING || isInterface ? null : Type.getObjectType(decodeString(superName)),
+            interfaces,
+            isInterface);
+    }
+
+    private String stringAt(int offsetOfStringOffset) throws IOException {
+        return decodeString(index.getInt(offsetOfStringOffset));
+    }
+
+    /**
+     * Decodes a string written by {@link java.io.DataOutput#writeUTF(String)}.
+     */
+    private String decodeString(int offset) throws IOException {
+        if (offset < stringsOffset || offset > index.limit() - 2) {
+            throw malformed("string at " + offset);
+        }
+        int length = index.getShort(offset) & 0xFFFF;
+        char[] chars = new char[length];
+        int charCount = 0;
+        int position = offset + 2;
+        int end = position + length;
+        if (end > index.limit()) {
+            throw malformed("string of " + length + " bytes at " + offset);
+        }
+        while (position < end) {
+            int b = index.get(position++);
+            if ((b & 0x80) == 0) {
+                chars[charCount++] = (char) (b & 0x7F);
+            } else if (position + ((b & 0xE0) == 0xC0 ? 1 : 2) > end) {
+                throw malformed("string of " + length + " bytes at " + offset);
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[charCount++] = (char) (((b & 0x1F) << 6) + (index.get(position++) & 0x3F));
+            } else {
+                chars[charCount++] = (char) (((b & 0xF) << 12)
+                    + ((index.get(position++) & 0x3F) << 6)
+                    + (index.get(position++) & 0x3F));
+            }
+        }
+        return new String(chars, 0, charCount);
+    }
+}
@@ -0,0 +1,231 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Provides the class files in a jar, from a single read-only mapping of the whole jar.
+ * <br>
+ * On construction, the central directory of the jar is read to index the location of each class file entry. An entry
+ * which is stored uncompressed is returned as a slice of the mapping, with no copy at all. A compressed entry is
+ * inflated into a buffer which is reused by the reading thread, which costs the decompression, but no allocation.
+ * <br>
+ * Jars over 2GB, which cannot be mapped as a single buffer, and Zip64 jars, i.e. those with more than 65535 entries,
+ * are not supported. The jar must not be modified while it is mapped.
+ */
+public class MappedJarClassFileBufferSource implements ClassFileBufferSource {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int MAXIMUM_COMMENT_LENGTH = 0xFFFF;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private static final ThreadLocal<Inflater> INFLATERS = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+    };
+
+    private final File jar;
+    private final ByteBuffer mapping;
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    public MappedJarClassFileBufferSource(File jar) throws IOException {
+        this.jar = jar;
+        RandomAccessFile file = new RandomAccessFile(jar, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Jars over 2GB are not supported: " + jar);
+            }
+            this.mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        } finally {
+            file.close();
+        }
+        readCentralDirectory();
+    }
+
+    private void readCentralDirectory() throws IOException {
+        int end = findEndOfCentralDirectory();
+        int entryCount = mapping.getShort(end + 10) & 0xFFFF;
+        long centralDirectoryOffset = mapping.getInt(end + 16) & 0xFFFFFFFFL;
+        if (entryCount == 0xFFFF || centralDirectoryOffset == 0xFFFFFFFFL) {
+            throw new IOException("Zip64 jars are not supported: " + jar);
+        }
+        checkBounds(centralDirectoryOffset, 0, "central directory");
+        int offset = (int) centralDirectoryOffset;
+        for (int i = 0; i < entryCount; i++) {
+            checkBounds(offset, 46, "central directory entry " + i);
+            if (mapping.getInt(offset) != CENTRAL_HEADER_SIGNATURE) {
+                throw new IOException("Malformed jar: bad central directory entry " + i + ": " + jar);
+            }
+            int method = mapping.getShort(offset + 10) & 0xFFFF;
+            int compressedSize = mapping.getInt(offset + 20);
+            int size = mapping.getInt(offset + 24);
+            int nameLength = mapping.getShort(offset + 28) & 0xFFFF;
+            int extraLength = mapping.getShort(offset + 30) & 0xFFFF;
+            int commentLength = mapping.getShort(offset + 32) & 0xFFFF;
+            int localHeaderOffset = mapping.getInt(offset + 42);
+            checkBounds(offset + 46L, nameLength, "name of central directory entry " + i);
+            String name = utf8(offset + 46, nameLength);
+            if (ClassPathScanner.isClassFile(name)) {
+                String internalName = ClassPathScanner.internalNameOf(name);
+                if (compressedSize < 0 || size < 0) {
+                    throw new IOException("Malformed jar: bad size of " + name + ": " + jar);
+                }
+                checkBounds(localHeaderOffset & 0xFFFFFFFFL, 30L + compressedSize, "local header of " + name);
+                if (!entries.containsKey(internalName)) {
+                    entries.put(internalName, new Entry(method, localHeaderOffset, compressedSize, size));
+                }
+            }
+            offset += 46 + nameLength + extraLength + commentLength;
+        }
+    }
+
+    /**
+     * Offsets and sizes are read from the jar itself, so are checked before use, to report a malformed jar rather
+     * than fail with an {@link IndexOutOfBoundsException} or an {@link IllegalArgumentException}.
+     */
+    private void checkBounds(long offset, long length, String what) throws IOException {
+        if (offset < 0 || length < 0 || offset + length > mapping.limit()) {
+            throw new IOException("Malformed jar: " + what + " is outside the jar: " + jar);
+        }
+    }
+
+    private int findEndOfCentralDirectory() throws IOException {
+        int lowest = Math.max(0, mapping.limit() - END_OF_CENTRAL_DIRECTORY_SIZE - MAXIMUM_COMMENT_LENGTH);
+        for (int offset = mapping.limit() - END_OF_CENTRAL_DIRECTORY_SIZE; offset >= lowest; offset--) {
+            if (mapping.getInt(offset) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                return offset;
+            }
+        }
+        throw new IOException("Not a jar: no end of central directory: " + jar);
+    }
+
+    private String utf8(int offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = mapping.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The number of class files in the jar.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public ByteBuffer open(String internalName) throws IOException {
+        ByteBuffer classFile = find(internalName);
+        if (classFile == null) {
+            throw new ClassFileNotFoundException();
+        }
+        return classFile;
+    }
+
+    @Override
+    public ByteBuffer find(String internalName) throws IOException {
+        Entry entry = entries.get(internalName);
+        if (entry == null) {
+            return null;
+        }
+        int localHeader = entry.localHeaderOffset;
+        if (mapping.getInt(localHeader) != LOCAL_HEADER_SIGNATURE) {
+            throw new IOException("Malformed jar: bad local header for " + internalName + ": " + jar);
+        }
+        int dataOffset = localHeader + 30
+            + (mapping.getShort(localHeader + 26) & 0xFFFF)
+            + (mapping.getShort(localHeader + 28) & 0xFFFF);
+        checkBounds(dataOffset, entry.compressedSize, "data of " + internalName);
+
+        ByteBuffer data = mapping.duplicate();
+        // called through Buffer, as the covariant overrides in ByteBuffer only exist from Java 9
+        ((Buffer) data).position(dataOffset).limit(dataOffset + entry.compressedSize);
+        switch (entry.method) {
+            case STORED:
+                return data.slice();
+            case DEFLATED:
+                return inflate(data, entry.size, internalName);
+            default:
+                throw new IOException("Unsupported compression method " + entry.method + " for " + internalName);
+        }
+    }
+
+    /**
+     * {@link Inflater} only accepts arrays before Java 11, so the compressed bytes are copied into a reused array
+     * first.
+     */
+    private ByteBuffer inflate(ByteBuffer compressed, int size, String internalName) throws IOException {
+        int compressedSize = compressed.remaining();
+        byte[] input = ReusableBuffers.inputBuffer(compressedSize + 1);
+        compressed.get(input, 0, compressedSize);
+        byte[] output = ReusableBuffers.classFileBuffer(size);
+        Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        // a raw inflater may need one byte past the end of the data
+        input[compressedSize] = 0;
+        inflater.setInput(input, 0, compressedSize + 1);
+        try {
+            int inflated = 0;
+            while (inflated < size && !inflater.finished()) {
+                int n = inflater.inflate(output, inflated, size - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+            }
+            if (inflated != size) {
+                throw new IOException("Malformed jar: " + internalName + " inflated to " + inflated
+                    + " bytes rather than " + size);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Malformed jar: cannot inflate " + internalName, e);
+        }
+        return ByteBuffer.wrap(output, 0, size);
+    }
+
+    /**
+     * The mapping is released when it is garbage collected, since Java 8 offers no way to unmap it explicitly.
+     */
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [jar=%s, size=%d]", getClass().getSimpleName(), jar, entries.size());
+    }
+
+    private static final class Entry {
+        final int method;
+        final int localHeaderOffset;
+        final int compressedSize;
+        final int size;
+
+        Entry(int method, int localHeaderOffset, int compressedSize, int size) {
+            this.method = method;
+            this.localHeaderOffset = localHeaderOffset;
+            this.compressedSize = compressedSize;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.objectweb.asm.Type;
+
+/**
+ * Counts the lookups made through the underlying reader, under a named layer of a shared
+ * {@link TypeHierarchyMetrics}. Decorating each layer of a stack, e.g. both a cache and the reader beneath it, counts
+ * each lookup as a hit in the layer which answered it, and as a miss in each layer above.
+ * <br>
+ * Class files read by {@link TypeHierarchyReader#readHeader(Type)} or {@link TypeHierarchyReader#reader(Type)}, on
+ * behalf of a lookup, are also counted, along with the bytes read from them, and the time taken to parse each, in the
+ * innermost layer whose lookup is in progress on the thread. At that layer, a miss is a lookup which read a class
+ * file.
+ * <br>
+ * Each count is split by the {@link QueryKind} on whose behalf the lookup was made, as seen by the outermost
+ * decorator on the thread. The lookups in progress on each thread are kept in an object which is reused, so a lookup
+ * allocates nothing.
+ */
+public class MetricsTypeHierarchyReader extends TypeHierarchyReader {
+
+    private static final ThreadLocal<Lookups> CURRENT_LOOKUPS = new ThreadLocal<Lookups>() {
+        @Override
+        protected Lookups initialValue() {
+            return new Lookups();
+        }
+    };
+
+    /**
+     * Set once any instance is created, so that class files read by a program which counts nothing are not wrapped.
+     */
+    private static volatile boolean counting;
+
+    private final TypeHierarchyReader baseReader;
+    private final TypeHierarchyMetrics.Layer layer;
+
+    public MetricsTypeHierarchyReader(String layer, TypeHierarchyReader baseReader, TypeHierarchyMetrics metrics) {
+        this.baseReader = baseReader;
+        this.layer = metrics.layer(layer);
+        counting = true;
+    }
+
+    @Override
+    public boolean isInterface(Type t) {
+        Lookups lookups = enter(QueryKind.IS_INTERFACE);
+        try {
+            return baseReader.isInterface(t);
+        } finally {
+            lookups.exit();
+        }
+    }
+
+    @Override
+    public Type getSuperClass(Type t) {
+        Lookups lookups = enter(QueryKind.GET_SUPER_CLASS);
+        try {
+            return baseReader.getSuperClass(t);
+        } finally {
+            lookups.exit();
+        }
+    }
+
+    @Override
+    public boolean isAssignableFrom(Type to, Type from) {
+        Lookups lookups = enter(QueryKind.IS_ASSIGNABLE_FROM);
+        try {
+            return baseReader.isAssignableFrom(to, from);
+        } finally {
+            lookups.exit();
+        }
+    }
+
+    @Override
+    public TypeHierarchy hierarchyOf(Type t) {
+        Lookups lookups = enter(QueryKind.HIERARCHY_OF);
+        try {
+            return baseReader.hierarchyOf(t);
+        } finally {
+            lookups.exit();
+        }
+    }
+
+    @Override
+    protected void classFileChanged(Type t) {
+        baseReader.classFileChanged(t);
+    }
+
+    @Override
+    protected void allClassFilesChanged() {
+        baseReader.allClassFilesChanged();
+    }
+
+    /**
+     * Starts a lookup in this layer. The first lookup in a layer beneath, made while this one is in progress, makes
+     * this one a miss.
+     */
+    private Lookups enter(QueryKind kind) {
+        Lookups lookups = CURRENT_LOOKUPS.get();
+        lookups.enter(layer, kind);
+        return lookups;
+    }
+
+    /**
+     * Called by {@link TypeHierarchyReader} with each class file it opens, before reading it.
+     *
+     * @return a stream which counts the bytes read, if a lookup is in progress, or else the given stream
+     */
+    static InputStream countingReadsOf(InputStream classFile) {
+        if (!counting) {
+            return classFile;
+        }
+        Lookups lookups = CURRENT_LOOKUPS.get();
+        return lookups.depth == 0 ? classFile : new CountingInputStream(classFile, lookups);
+    }
+
+    /**
+     * Called by {@link TypeHierarchyReader} with the stream returned by {@link #countingReadsOf(InputStream)}, once
+     * the class file has been parsed.
+     */
+    static void classFileRead(InputStream classFile) {
+        if (classFile instanceof CountingInputStream) {
+            ((CountingInputStream) classFile).parsed();
+        }
+    }
+
+    /**
+     * A stack of the lookups in progress on one thread, outermost first.
+     */
+    private static final class Lookups {
+        private TypeHierarchyMetrics.Layer[] layers = new TypeHierarchyMetrics.Layer[4];
+        private boolean[] missed = new boolean[4];
+        private QueryKind kind;
+        int depth;
+
+        void enter(TypeHierarchyMetrics.Layer layer, QueryKind queryKind) {
+            if (depth == 0) {
+                kind = queryKind;
+            } else if (layers[depth - 1] != layer) {
+                missed(depth - 1);
+            }
+            if (depth == layers.length) {
+                layers = Arrays.copyOf(layers, depth * 2);
+                missed = Arrays.copyOf(missed, depth * 2);
+            }
+            layers[depth] = layer;
+            missed[depth] = false;
+            depth++;
+            layer.called(kind);
+        }
+
+        void exit() {
+            depth--;
+            if (!missed[depth]) {
+                layers[depth].hit(kind);
+            }
+            layers[depth] = null;
+        }
+
+        void missed(int index) {
+            if (!missed[index]) {
+                missed[index] = true;
+                layers[index].missed(kind);
+            }
+        }
+
+        void classFileRead(long bytes, long parseNanos) {
+            missed(depth - 1);
+            layers[depth - 1].classFileRead(kind, bytes, parseNanos);
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private final Lookups lookups;
+        private final long start = System.nanoTime();
+        private long count;
+
+        CountingInputStream(InputStream in, Lookups lookups) {
+            super(in);
+            this.lookups = lookups;
+        }
+
+        void parsed() {
+            lookups.classFileRead(count, System.nanoTime() - start);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read != -1) {
+                count++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.objectweb.asm.Type;
+
+/**
+ * Remembers which types the underlying reader could not find, and answers for them according to a
+ * {@link MissingTypePolicy}, without asking the underlying reader again.
+ * <br>
+ * Neither of the other caching readers caches failures, so without this reader, each request for a missing type
+ * searches for its class file again. Intended to sit between a caching reader and the reader which reads class
+ * files, e.g.
+ * <pre>
+ * new ConcurrentMapCachingTypeHierarchyReader(
+ *     new MissingTypeCachingTypeHierarchyReader(new TypeHierarchyReader(), MissingTypePolicy.TREAT_AS_OBJECT_SUBCLASS))
+ * </pre>
+ * Only {@link TypeNotFoundException} is remembered; any other failure to read a class file is passed on, and retried
+ * on the next request.
+ */
+public class MissingTypeCachingTypeHierarchyReader extends TypeHierarchyReader {
+
+    private final TypeHierarchyReader baseReader;
+    private final MissingTypePolicy policy;
+    private final ConcurrentMap<Type, MissingType> missingTypes = new ConcurrentHashMap<Type, MissingType>();
+
+    public MissingTypeCachingTypeHierarchyReader(TypeHierarchyReader baseReader, MissingTypePolicy policy) {
+        this.baseReader = baseReader;
+        this.policy = policy;
+    }
+
+    @Override
+    public TypeHierarchy hierarchyOf(Type t) {
+        MissingType missing = missingTypes.get(t);
+        if (missing == null) {
+            try {
+                return baseReader.hierarchyOf(t);
+            } catch (TypeNotFoundException e) {
+                MissingType added = new MissingType(e);
+                missing = missingTypes.putIfAbsent(t, added);
+                if (missing == null) {
+                    missing = added;
+                }
+            }
+        }
+        return missing.hierarchy(policy);
+    }
+
+    /**
+     * A type whose class file has been created may no longer be missing.
+     */
+    @Override
+    protected void classFileChanged(Type t) {
+        missingTypes.remove(t);
+        baseReader.classFileChanged(t);
+    }
+
+    @Override
+    protected void allClassFilesChanged() {
+        missingTypes.clear();
+        baseReader.allClassFilesChanged();
+    }
+
+    /**
+     * The types which the underlying reader has failed to find so far.
+     */
+    public Set<Type> missingTypes() {
+        return Collections.unmodifiableSet(missingTypes.keySet());
+    }
+
+    /**
+     * Keeps the hierarchy the policy answers with, if any, so that it is created once per missing type rather than on
+     * every request.
+     */
+    private static final class MissingType {
+        private final TypeNotFoundException notFound;
+
+        /**
+         * Not volatile: a {@link TypeHierarchy} has only final fields, and two threads which race to set it set equal
+         * hierarchies.
+         */
+        private TypeHierarchy hierarchy;
+
+        MissingType(TypeNotFoundException notFound) {
+            this.notFound = notFound;
+        }
+
+        TypeHierarchy hierarchy(MissingTypePolicy policy) {
+            TypeHierarchy answer = hierarchy;
+            if (answer == null) {
+                answer = policy.hierarchyOfMissingType(notFound);
+                hierarchy = answer;
+            }
+            return answer;
+        }
+    }
+}
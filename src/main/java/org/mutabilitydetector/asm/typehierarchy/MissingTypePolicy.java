@@ -0,0 +1,35 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.util.Collections;
+
+import org.objectweb.asm.Type;
+
+/**
+ * How a {@link MissingTypeCachingTypeHierarchyReader} answers for a type whose class file cannot be found.
+ */
+public enum MissingTypePolicy {
+
+    /**
+     * Throws the {@link TypeNotFoundException} raised when the type was first looked up, every time it is requested.
+     */
+    THROW {
+        @Override
+        TypeHierarchy hierarchyOfMissingType(TypeNotFoundException notFound) {
+            throw notFound;
+        }
+    },
+
+    /**
+     * Treats the type as a class which extends java/lang/Object directly and implements no interfaces. This is the
+     * assumption a verifier would make for a type it cannot see, e.g. an optional dependency which is not shipped.
+     */
+    TREAT_AS_OBJECT_SUBCLASS {
+        @Override
+        TypeHierarchy hierarchyOfMissingType(TypeNotFoundException notFound) {
+            return new TypeHierarchy(notFound.getType(), TypeHierarchy.JAVA_LANG_OBJECT.type(),
+                Collections.<Type>emptyList(), false);
+        }
+    };
+
+    abstract TypeHierarchy hierarchyOfMissingType(TypeNotFoundException notFound);
+}
@@ -0,0 +1,89 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * Answers for classes held in memory, which have no class file yet, in front of an underlying reader which answers
+ * for every other type.
+ * <br>
+ * When generating or rewriting a batch of classes which refer to each other, register each class before writing or
+ * verifying any of them, then use this reader for every {@link org.mutabilitydetector.asm.NonClassloadingClassWriter}
+ * and {@link org.mutabilitydetector.asm.tree.analysis.NonClassloadingSimpleVerifier} in the batch. A registered class
+ * hides any class file of the same name known to the underlying reader.
+ * <br>
+ * The {@link TypeHierarchy} of a class is built once, when it is registered, so lookups neither copy nor parse
+ * anything. Classes may be registered and removed from any thread. Since a caching reader would keep answering with
+ * the class file on disk, this reader should decorate the caching reader, rather than be decorated by it.
+ */
+public class OverlayTypeHierarchyReader extends TypeHierarchyReader {
+
+    private final TypeHierarchyReader baseReader;
+    private final ConcurrentMap<String, TypeHierarchy> overlay = new ConcurrentHashMap<String, TypeHierarchy>();
+
+    public OverlayTypeHierarchyReader(TypeHierarchyReader baseReader) {
+        this.baseReader = baseReader;
+    }
+
+    /**
+     * Registers the class held by the given {@link ClassNode}. Only its access flags and the names of the class, its
+     * superclass and its interfaces are kept, so later changes to the node are not seen.
+     */
+    public Type register(ClassNode classNode) {
+        return register(new ClassFileHeader(classNode.access, classNode.name, classNode.superName,
+            classNode.interfaces.toArray(new String[classNode.interfaces.size()])));
+    }
+
+    /**
+     * Registers the class read by the given {@link ClassReader}.
+     */
+    public Type register(ClassReader classReader) {
+        return register(new ClassFileHeader(classReader.getAccess(), classReader.getClassName(),
+            classReader.getSuperName(), classReader.getInterfaces()));
+    }
+
+    /**
+     * Registers the class held in the given class file. Only the header is parsed.
+     */
+    public Type register(byte[] classFile) throws IOException {
+        return register(ClassFileHeader.read(classFile));
+    }
+
+    /**
+     * Registers the class described by the given {@link ClassFileHeader}.
+     *
+     * @return the {@link Type} of the registered class
+     */
+    public Type register(ClassFileHeader header) {
+        TypeHierarchy hierarchy = obtainHierarchyOf(header);
+        overlay.put(header.getClassName(), hierarchy);
+        return hierarchy.type();
+    }
+
+    /**
+     * Removes the given class, so that it is answered for by the underlying reader again.
+     */
+    public void unregister(Type t) {
+        overlay.remove(t.getInternalName());
+    }
+
+    public boolean isRegistered(Type t) {
+        return t.getSort() == Type.OBJECT && overlay.containsKey(t.getInternalName());
+    }
+
+    @Override
+    public TypeHierarchy hierarchyOf(Type t) {
+        if (t.getSort() == Type.OBJECT) {
+            TypeHierarchy registered = overlay.get(t.getInternalName());
+            if (registered != null) {
+                return registered;
+            }
+        }
+        return baseReader.hierarchyOf(t);
+    }
+}
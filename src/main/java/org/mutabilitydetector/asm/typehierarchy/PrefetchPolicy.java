@@ -0,0 +1,51 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Configures a caching reader to load the supertypes of each type it reads in the background, ahead of them being
+ * asked for, as they usually are by {@link TypeHierarchy#isAssignableFrom(org.objectweb.asm.Type, TypeHierarchyReader)}.
+ *
+ * @see ConcurrentMapCachingTypeHierarchyReader#ConcurrentMapCachingTypeHierarchyReader(TypeHierarchyReader,
+ *      PrefetchPolicy)
+ */
+public final class PrefetchPolicy {
+
+    private final Executor executor;
+    private final int depth;
+    private final int maximumConcurrentLoads;
+
+    /**
+     * @param executor runs the background loads
+     * @param depth how many levels of supertypes to load above the type which was asked for, e.g. 1 for only its
+     *              superclass and interfaces
+     * @param maximumConcurrentLoads the most background loads to have queued or running at once; beyond this,
+     *                               supertypes are left to be loaded when asked for
+     */
+    public PrefetchPolicy(Executor executor, int depth, int maximumConcurrentLoads) {
+        if (depth < 0 || maximumConcurrentLoads < 0) {
+            throw new IllegalArgumentException("depth and maximumConcurrentLoads must not be negative");
+        }
+        this.executor = executor;
+        this.depth = depth;
+        this.maximumConcurrentLoads = maximumConcurrentLoads;
+    }
+
+    public Executor executor() {
+        return executor;
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    public int maximumConcurrentLoads() {
+        return maximumConcurrentLoads;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [depth=%d, maximumConcurrentLoads=%d]",
+            getClass().getSimpleName(), depth, maximumConcurrentLoads);
+    }
+}
@@ -0,0 +1,25 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+/**
+ * The public query of a {@link TypeHierarchyReader} on whose behalf a type's hierarchy is obtained, used to split
+ * the counts kept by {@link MetricsTypeHierarchyReader}.
+ */
+public enum QueryKind {
+    /**
+     * {@link TypeHierarchyReader#hierarchyOf(org.objectweb.asm.Type)}, called directly.
+     */
+    HIERARCHY_OF,
+    /**
+     * {@link TypeHierarchyReader#isInterface(org.objectweb.asm.Type)}
+     */
+    IS_INTERFACE,
+    /**
+     * {@link TypeHierarchyReader#getSuperClass(org.objectweb.asm.Type)}
+     */
+    GET_SUPER_CLASS,
+    /**
+     * {@link TypeHierarchyReader#isAssignableFrom(org.objectweb.asm.Type, org.objectweb.asm.Type)}, including every
+     * lookup made while walking the hierarchy.
+     */
+    IS_ASSIGNABLE_FROM
+}
@@ -0,0 +1,41 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+/**
+ * Per-thread arrays which grow to the largest size asked for and are then reused, so that reading class files whose
+ * bytes must be copied allocates nothing once a thread has warmed up.
+ */
+final class ReusableBuffers {
+
+    private static final int INITIAL_SIZE = 16 * 1024;
+
+    private static final ThreadLocal<byte[][]> BUFFERS = new ThreadLocal<byte[][]>() {
+        @Override
+        protected byte[][] initialValue() {
+            return new byte[][] { new byte[INITIAL_SIZE], new byte[INITIAL_SIZE] };
+        }
+    };
+
+    private ReusableBuffers() { }
+
+    /**
+     * The thread's buffer for class file bytes, at least the given size.
+     */
+    static byte[] classFileBuffer(int size) {
+        return buffer(0, size);
+    }
+
+    /**
+     * A second buffer, for data which a class file is decoded from, e.g. compressed bytes.
+     */
+    static byte[] inputBuffer(int size) {
+        return buffer(1, size);
+    }
+
+    private static byte[] buffer(int index, int size) {
+        byte[][] buffers = BUFFERS.get();
+        if (buffers[index].length < size) {
+            buffers[index] = new byte[Math.max(size, buffers[index].length * 2)];
+        }
+        return buffers[index];
+    }
+}
@@ -0,0 +1,58 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports what a restore of a {@link HierarchySnapshot} did.
+ *
+ * @see HierarchySnapshot#restore(java.io.File, ConcurrentMapCachingTypeHierarchyReader,
+ *      IsAssignableFromCachingTypeHierarchyReader, ClassPathTypeHierarchyReader)
+ */
+public final class SnapshotRestoreResult {
+
+    private final int typeCount;
+    private final int staleTypeCount;
+    private final int resultCount;
+    private final long durationNanos;
+
+    public SnapshotRestoreResult(int typeCount, int staleTypeCount, int resultCount, long durationNanos) {
+        this.typeCount = typeCount;
+        this.staleTypeCount = staleTypeCount;
+        this.resultCount = resultCount;
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * The number of types whose hierarchy was restored into the cache.
+     */
+    public int typeCount() {
+        return typeCount;
+    }
+
+    /**
+     * The number of types not restored because their class file has changed, moved or gone since the snapshot.
+     */
+    public int staleTypeCount() {
+        return staleTypeCount;
+    }
+
+    /**
+     * The number of assignability results restored.
+     */
+    public int resultCount() {
+        return resultCount;
+    }
+
+    /**
+     * The time taken to read the snapshot and fill the caches.
+     */
+    public long duration(TimeUnit unit) {
+        return unit.convert(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [typeCount=%d, staleTypeCount=%d, resultCount=%d, durationMillis=%d]",
+            getClass().getSimpleName(), typeCount, staleTypeCount, resultCount, duration(TimeUnit.MILLISECONDS));
+    }
+}
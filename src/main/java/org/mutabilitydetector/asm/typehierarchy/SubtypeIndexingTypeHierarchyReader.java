@@ -0,0 +1,197 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import static org.objectweb.asm.Opcodes.ACC_INTERFACE;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.objectweb.asm.Type;
+
+/**
+ * Keeps a reverse index from each type to its known direct subtypes, i.e. the classes which extend it and the classes
+ * and interfaces which implement or extend it, so that the subtypes of a type can be enumerated without scanning
+ * every type.
+ * <br>
+ * A type becomes known when its hierarchy is obtained through this reader, or when it is found by
+ * {@link #indexClassPath(Iterable)}. Subtypes are only ever those which are known: a type which has not been read is
+ * not reported. Hierarchies are obtained from the underlying reader, which is expected to cache them.
+ * <br>
+ * The direct subtypes of each type are held in an array which is replaced, rather than changed, as subtypes are added,
+ * so enumerating them takes no lock, and never sees a subtype half added. Enumerating allocates little: a stack and a
+ * set of visited types for {@link #forEachSubtype(Type, SubtypeVisitor)}, and the returned set for the other methods.
+ * An instance is safe to share between threads.
+ */
+public class SubtypeIndexingTypeHierarchyReader extends TypeHierarchyReader {
+
+    /**
+     * Visits each subtype found by {@link #forEachSubtype(Type, SubtypeVisitor)}.
+     */
+    public interface SubtypeVisitor {
+        /**
+         * @return false to stop visiting
+         */
+        boolean visitSubtype(Type subtype);
+    }
+
+    private final TypeHierarchyReader baseReader;
+    private final ConcurrentMap<Type, Type[]> directSubtypes = new ConcurrentHashMap<Type, Type[]>();
+    private final Set<Type> indexedTypes = Collections.newSetFromMap(new ConcurrentHashMap<Type, Boolean>());
+
+    public SubtypeIndexingTypeHierarchyReader(TypeHierarchyReader baseReader) {
+        this.baseReader = baseReader;
+    }
+
+    @Override
+    public TypeHierarchy hierarchyOf(Type t) {
+        TypeHierarchy hierarchy = baseReader.hierarchyOf(t);
+        if (t.getSort() == Type.OBJECT && !indexedTypes.contains(t)) {
+            index(t, hierarchy.getSuperClass(), hierarchy.getInterfaces());
+        }
+        return hierarchy;
+    }
+
+    /**
+     * Reads the header of every class file in the given jars and directories, and adds each type to the index,
+     * without reading it into the underlying reader. Where a type is found in more than one classpath entry, the
+     * first is used.
+     *
+     * @return the number of types added to the index
+     */
+    public int indexClassPath(Iterable<File> classPath) throws IOException {
+        final int[] added = new int[1];
+        ClassPathScanner.scan(classPath, new ClassPathScanner.ClassFileVisitor() {
+            @Override
+            public void visitClassFile(String entryName, InputStream classFile) throws IOException {
+                ClassFileHeader header = ClassFileHeader.read(classFile);
+                Type t = Type.getObjectType(header.getClassName());
+                if (indexedTypes.contains(t)) {
+                    return;
+                }
+                Type[] interfaces = new Type[header.interfaceCount()];
+                for (int i = 0; i < interfaces.length; i++) {
+                    interfaces[i] = Type.getObjectType(header.interfaceAt(i));
+                }
+                boolean isInterface = (header.getAccess() & ACC_INTERFACE) != 0;
+                Type superClass = header.getSuperName() == null || isInterface
+                    ? null
+                    : Type.getObjectType(header.getSuperName());
+                if (index(t, superClass, Arrays.asList(interfaces))) {
+                    added[0]++;
+                }
+            }
+        });
+        return added[0];
+    }
+
+    private boolean index(Type t, Type superClass, Iterable<Type> interfaces) {
+        if (!indexedTypes.add(t)) {
+            return false;
+        }
+        if (superClass != null) {
+            addDirectSubtype(superClass, t);
+        }
+        for (Type implemented : interfaces) {
+            addDirectSubtype(implemented, t);
+        }
+        return true;
+    }
+
+    private void addDirectSubtype(Type supertype, Type subtype) {
+        while (true) {
+            Type[] subtypes = directSubtypes.get(supertype);
+            if (subtypes == null) {
+                if (directSubtypes.putIfAbsent(supertype, new Type[] { subtype }) == null) {
+                    return;
+                }
+            } else {
+                Type[] added = Arrays.copyOf(subtypes, subtypes.length + 1);
+                added[subtypes.length] = subtype;
+                if (directSubtypes.replace(supertype, subtypes, added)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if the given type has been added to the index.
+     */
+    public boolean isIndexed(Type t) {
+        return indexedTypes.contains(t);
+    }
+
+    /**
+     * The known types which directly extend or implement the given type.
+     */
+    public Set<Type> directSubtypesOf(Type t) {
+        Type[] subtypes = directSubtypes.get(t);
+        return subtypes == null
+            ? Collections.<Type>emptySet()
+            : Collections.unmodifiableSet(new LinkedHashSet<Type>(Arrays.asList(subtypes)));
+    }
+
+    /**
+     * Every known type which extends or implements the given type, directly or indirectly, not including the type
+     * itself.
+     */
+    public Set<Type> subtypesOf(Type t) {
+        final Set<Type> subtypes = new LinkedHashSet<Type>();
+        forEachSubtype(t, new SubtypeVisitor() {
+            @Override
+            public boolean visitSubtype(Type subtype) {
+                subtypes.add(subtype);
+                return true;
+            }
+        });
+        return Collections.unmodifiableSet(subtypes);
+    }
+
+    /**
+     * Visits every known type which extends or implements the given type, directly or indirectly, depth first. Each
+     * type is visited once, even where it is reached through more than one interface, and a cycle, which only a
+     * malformed classpath could contain, does not loop.
+     */
+    public void forEachSubtype(Type t, SubtypeVisitor visitor) {
+        Type[] stack = directSubtypes.get(t);
+        if (stack == null) {
+            return;
+        }
+        stack = stack.clone();
+        int size = stack.length;
+        Set<Type> visited = new HashSet<Type>();
+        visited.add(t);
+        while (size > 0) {
+            Type subtype = stack[--size];
+            stack[size] = null;
+            if (!visited.add(subtype)) {
+                continue;
+            }
+            if (!visitor.visitSubtype(subtype)) {
+                return;
+            }
+            Type[] subtypesOfSubtype = directSubtypes.get(subtype);
+            if (subtypesOfSubtype != null) {
+                if (size + subtypesOfSubtype.length > stack.length) {
+                    stack = Arrays.copyOf(stack, Math.max(stack.length * 2, size + subtypesOfSubtype.length));
+                }
+                System.arraycopy(subtypesOfSubtype, 0, stack, size, subtypesOfSubtype.length);
+                size += subtypesOfSubtype.length;
+            }
+        }
+    }
+
+    /**
+     * The number of types added to the index.
+     */
+    public int size() {
+        return indexedTypes.size();
+    }
+}
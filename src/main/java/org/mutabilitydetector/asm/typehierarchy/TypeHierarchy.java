@@ -4,7 +4,9 @@ import org.objectweb.asm.Type;
 
 import java.io.Serializable;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.unmodifiableList;
@@ -43,8 +45,28 @@ public class TypeHierarchy {
     public static final TypeHierarchy DOUBLE_HIERARCHY = typeHierarchyForPrimitiveType(Type.DOUBLE_TYPE);
     public static final TypeHierarchy VOID_HIERARCHY = typeHierarchyForPrimitiveType(Type.VOID_TYPE);
 
+    private static final Map<Type, TypeHierarchy> COMMON_ARRAY_HIERARCHIES = commonArrayHierarchies(
+        "[Z", "[B", "[C", "[S", "[I", "[J", "[F", "[D", "[Ljava/lang/Object;", "[Ljava/lang/String;");
+
+    /**
+     * Returns the hierarchy of the given array type. The hierarchies of one-dimensional arrays of primitives, Object
+     * and String are shared rather than created on each call.
+     */
     public static TypeHierarchy hierarchyForArrayOfType(Type t) {
-        return new TypeHierarchy(t, JAVA_LANG_OBJECT.type(), IMPLICIT_ARRAY_INTERFACES, false);
+        TypeHierarchy common = COMMON_ARRAY_HIERARCHIES.get(t);
+        return common != null
+            ? common
+            : new TypeHierarchy(t, JAVA_LANG_OBJECT.type(), IMPLICIT_ARRAY_INTERFACES, false);
+    }
+
+    private static Map<Type, TypeHierarchy> commonArrayHierarchies(String... descriptors) {
+        Map<Type, TypeHierarchy> hierarchies = new HashMap<Type, TypeHierarchy>();
+        for (String descriptor : descriptors) {
+            Type arrayType = Type.getType(descriptor);
+            hierarchies.put(arrayType,
+                new TypeHierarchy(arrayType, JAVA_LANG_OBJECT.type(), IMPLICIT_ARRAY_INTERFACES, false));
+        }
+        return Collections.unmodifiableMap(hierarchies);
     }
 
     /**
@@ -68,6 +90,8 @@ public class TypeHierarchy {
     private final Type superClass;
     private final List<Type> interfaces;
     private final boolean isInterface;
+    private final Type elementType;
+    private final int dimensions;
 
     public TypeHierarchy(
         Type thisType,
@@ -79,6 +103,13 @@ public class TypeHierarchy {
         this.superClass = superClass;
         this.interfaces = interfaces;
         this.isInterface = isInterface;
+        if (thisType.getSort() == Type.ARRAY) {
+            this.elementType = thisType.getElementType();
+            this.dimensions = thisType.getDimensions();
+        } else {
+            this.elementType = null;
+            this.dimensions = 0;
+        }
     }
 
     public Type type() {
@@ -104,7 +135,26 @@ public class TypeHierarchy {
      * @see Class#isArray()
      */
     public boolean isArray() {
-        return thisType.getSort() == Type.ARRAY;
+        return elementType != null;
+    }
+
+    /**
+     * For an array type, the type of its elements once every dimension is removed, e.g. int for int[][]. Null for
+     * any other type.
+     *
+     * @see Type#getElementType()
+     */
+    public Type elementType() {
+        return elementType;
+    }
+
+    /**
+     * For an array type, its number of dimensions, e.g. 2 for int[][]. Zero for any other type.
+     *
+     * @see Type#getDimensions()
+     */
+    public int dimensions() {
+        return dimensions;
     }
 
 
@@ -165,7 +215,7 @@ public class TypeHierarchy {
         } else if (this.isInterfaceImplementedBy(u)) {
             return true;
         } else if (bothAreArrayTypes(u) && haveSameDimensionality(u)) {
-            return (JAVA_LANG_OBJECT.representsType(typeOfArray()) && u.isReferenceArrayType())
+            return (JAVA_LANG_OBJECT.representsType(elementType) && u.isReferenceArrayType())
                 || arrayTypeIsAssignableFrom(u, typeHierarchyReader);
         } else if (bothAreArrayTypes(u)
                 && isObjectArrayWithSmallerDimensionalityThan(u))
@@ -206,39 +256,32 @@ public class TypeHierarchy {
     }
 
     private boolean haveSameDimensionality(TypeHierarchy u) {
-        return arrayDimensionality() == u.arrayDimensionality();
+        return dimensions == u.dimensions;
     }
 
     private boolean isObjectArrayWithSmallerDimensionalityThan(TypeHierarchy u) {
-        return JAVA_LANG_OBJECT.representsType(typeOfArray())
-                && arrayDimensionality() <= u.arrayDimensionality();
+        return JAVA_LANG_OBJECT.representsType(elementType)
+                && dimensions <= u.dimensions;
     }
 
     private boolean arrayTypeIsAssignableFrom(
         TypeHierarchy u,
         TypeHierarchyReader reader)
     {
-
-        TypeHierarchy thisArrayType = reader.hierarchyOf(typeOfArray());
-        return typeOfArray().getSort() == u.typeOfArray().getSort()
-            && thisArrayType.isAssignableFrom(reader.hierarchyOf(u.typeOfArray()), reader);
+        if (elementType.getSort() != u.elementType.getSort()) {
+            return false;
+        } else if (elementType.getSort() != Type.OBJECT) {
+            return true;
+        }
+        return reader.hierarchyOf(elementType).isAssignableFrom(reader.hierarchyOf(u.elementType), reader);
     }
 
     private boolean bothAreArrayTypes(TypeHierarchy u) {
         return this.isArray() && u.isArray();
     }
 
-    private Type typeOfArray() {
-        return Type.getType(thisType.getInternalName()
-                .substring(thisType.getDimensions()));
-    }
-
-    private int arrayDimensionality() {
-        return thisType.getDimensions();
-    }
-
     public boolean isReferenceArrayType() {
-        return isArray() && typeOfArray().getSort() == Type.OBJECT;
+        return isArray() && elementType.getSort() == Type.OBJECT;
     }
 
     public boolean isInterfaceImplementedBy(TypeHierarchy u) {
@@ -0,0 +1,200 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import static org.objectweb.asm.Opcodes.ACC_INTERFACE;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scans a classpath once, and writes a compact binary index of the hierarchy of every type found, to be read by
+ * {@link MappedIndexTypeHierarchyReader}.
+ * <br>
+ * Where a type is found in more than one classpath entry, the first is indexed, as a class loader would.
+ * <br>
+ * The index is written to a temporary file alongside the index file, which then replaces it, so that a reader never
+ * maps a partly written index.
+ * <br>
+ * Can be run from the command line, with the index file to write followed by one or more classpath arguments, each
+ * of which may hold several jars or directories separated by {@link File#pathSeparator}:
+ * <pre>
+ * java org.mutabilitydetector.asm.typehierarchy.TypeHierarchyIndexWriter hierarchy.idx lib/a.jar:lib/b.jar classes
+ * </pre>
+ *
+ * <h3>Format</h3>
+ * All values are big-endian, and all offsets are from the start of the file.
+ * <pre>
+ * header:  int magic, int version, int typeCount, int tableSize, int recordsOffset, int stringsOffset
+ * table:   int[tableSize] record offsets, or -1 for an empty slot, open-addressed by the name's String.hashCode()
+ * records: int nameHash, int nameOffset, int superNameOffset (or -1), byte flags, u2 interfaceCount,
+ *          int[interfaceCount] interfaceNameOffsets
+ * strings: each distinct internal name once, as written by DataOutput.writeUTF
+ * </pre>
+ *
+ * @see MappedIndexTypeHierarchyReader
+ */
+public final class TypeHierarchyIndexWriter {
+
+    static final int MAGIC = 0x54484958; // "THIX"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 6 * 4;
+    static final int NO_STRING = -1;
+    static final int EMPTY_SLOT = -1;
+    static final int FLAG_INTERFACE = 1;
+    static final int RECORD_SIZE = 4 + 4 + 4 + 1 + 2;
+
+    private TypeHierarchyIndexWriter() { }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TypeHierarchyIndexWriter <index file> <classpath>...");
+            System.exit(1);
+        }
+        List<File> classPath = new ArrayList<File>();
+        for (int i = 1; i < args.length; i++) {
+            for (String entry : args[i].split(File.pathSeparator)) {
+                if (!entry.isEmpty()) {
+                    classPath.add(new File(entry));
+                }
+            }
+        }
+        int typeCount = write(classPath, new File(args[0]));
+        System.out.println("Indexed " + typeCount + " types to " + args[0]);
+    }
+
+    /**
+     * Writes an index of every class file in the given jars and directories.
+     *
+     * @return the number of types indexed
+     */
+    public static int write(Iterable<File> classPath, File indexFile) throws IOException {
+        final Map<String, ClassFileHeader> headers = new LinkedHashMap<String, ClassFileHeader>();
+        ClassPathScanner.scan(classPath, new ClassPathScanner.ClassFileVisitor() {
+            @Override
+            public void visitClassFile(String entryName, InputStream classFile) throws IOException {
+                ClassFileHeader header = ClassFileHeader.read(classFile);
+                if (!headers.containsKey(header.getClassName())) {
+                    headers.put(header.getClassName(), header);
+                }
+            }
+        });
+        write(headers.values(), indexFile);
+        return headers.size();
+    }
+
+    static void write(Collection<ClassFileHeader> headers, File indexFile) throws IOException {
+        ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+        DataOutputStream strings = new DataOutputStream(stringBytes);
+        Map<String, Integer> stringOffsets = new HashMap<String, Integer>();
+
+        int recordsSize = 0;
+        for (ClassFileHeader header : headers) {
+            addString(header.getClassName(), stringOffsets, strings);
+            if (header.getSuperName() != null) {
+                addString(header.getSuperName(), stringOffsets, strings);
+            }
+            for (int i = 0; i < header.interfaceCount(); i++) {
+                addString(header.interfaceAt(i), stringOffsets, strings);
+            }
+            recordsSize += RECORD_SIZE + 4 * header.interfaceCount();
+        }
+
+        int typeCount = headers.size();
+        int tableSize = tableSizeFor(typeCount);
+        int recordsOffset = HEADER_SIZE + tableSize * 4;
+        int stringsOffset = recordsOffset + recordsSize;
+
+        int[] table = new int[tableSize];
+        Arrays.fill(table, EMPTY_SLOT);
+        int mask = tableSize - 1;
+        int recordOffset = recordsOffset;
+        for (ClassFileHeader header : headers) {
+            int slot = header.getClassName().hashCode() & mask;
+            while (table[slot] != EMPTY_SLOT) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = recordOffset;
+            recordOffset += RECORD_SIZE + 4 * header.interfaceCount();
+        }
+
+        File directory = indexFile.getAbsoluteFile().getParentFile();
+        File temporaryFile = File.createTempFile("." + indexFile.getName() + "-", ".tmp", directory);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(typeCount);
+                out.writeInt(tableSize);
+                out.writeInt(recordsOffset);
+                out.writeInt(stringsOffset);
+                for (int slot : table) {
+                    out.writeInt(slot);
+                }
+                for (ClassFileHeader header : headers) {
+                    out.writeInt(header.getClassName().hashCode());
+                    out.writeInt(stringsOffset + stringOffsets.get(header.getClassName()));
+                    out.writeInt(header.getSuperName() == null
+                        ? NO_STRING
+                        : stringsOffset + stringOffsets.get(header.getSuperName()));
+                    out.writeByte((header.getAccess() & ACC_INTERFACE) != 0 ? FLAG_INTERFACE : 0);
+                    out.writeShort(header.interfaceCount());
+                    for (int i = 0; i < header.interfaceCount(); i++) {
+                        out.writeInt(stringsOffset + stringOffsets.get(header.interfaceAt(i)));
+                    }
+                }
+                stringBytes.writeTo(out);
+            } finally {
+                out.close();
+            }
+            replace(temporaryFile, indexFile);
+        } finally {
+            temporaryFile.delete();
+        }
+    }
+
+    /**
+     * Renames the written file over the target, atomically where the file system allows.
+     */
+    static void replace(File written, File target) throws IOException {
+        try {
+            Files.move(written.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(written.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void addString(String s, Map<String, Integer> stringOffsets, DataOutputStream strings)
+        throws IOException
+    {
+        if (!stringOffsets.containsKey(s)) {
+            stringOffsets.put(s, strings.size());
+            strings.writeUTF(s);
+        }
+    }
+
+    /**
+     * A power of two, at least twice the number of types, to keep probe sequences short.
+     */
+    static int tableSizeFor(int typeCount) {
+        int tableSize = 2;
+        while (tableSize < typeCount * 2) {
+            tableSize <<= 1;
+        }
+        return tableSize;
+    }
+}
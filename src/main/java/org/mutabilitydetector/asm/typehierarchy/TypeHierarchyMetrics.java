@@ -0,0 +1,185 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts kept by one or more {@link MetricsTypeHierarchyReader}s, one set per named layer. Sharing an instance
+ * between the decorators at each layer of a stack of readers shows where lookups are answered, e.g. how many reach
+ * the class files beneath a cache.
+ * <br>
+ * Counters are {@link LongAdder}s, so recording is cheap under contention, and a {@link #snapshot()} taken while
+ * lookups are in progress is not atomic across counters.
+ */
+public final class TypeHierarchyMetrics implements TypeHierarchyMetricsMBean {
+
+    private final ConcurrentMap<String, Layer> layers = new ConcurrentHashMap<String, Layer>();
+    private final Map<String, Layer> layersInOrder = new LinkedHashMap<String, Layer>();
+
+    Layer layer(String name) {
+        Layer layer = layers.get(name);
+        if (layer != null) {
+            return layer;
+        }
+        synchronized (layersInOrder) {
+            layer = layers.get(name);
+            if (layer == null) {
+                layer = new Layer(name);
+                layersInOrder.put(name, layer);
+                layers.put(name, layer);
+            }
+            return layer;
+        }
+    }
+
+    /**
+     * The counts of every layer, in the order the layers were first used.
+     */
+    public Map<String, LayerStats> snapshot() {
+        Map<String, LayerStats> snapshot = new LinkedHashMap<String, LayerStats>();
+        synchronized (layersInOrder) {
+            for (Layer layer : layersInOrder.values()) {
+                snapshot.put(layer.name, layer.snapshot());
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Registers these metrics with the platform {@link MBeanServer} under the given name.
+     *
+     * @see ManagementFactory#getPlatformMBeanServer()
+     */
+    public ObjectName registerMBean(String objectName) throws JMException {
+        ObjectName name = new ObjectName(objectName);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        return name;
+    }
+
+    @Override
+    public String[] getLayers() {
+        return snapshot().keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public long getCalls(String layer) {
+        return statsOf(layer).calls();
+    }
+
+    @Override
+    public long getHits(String layer) {
+        return statsOf(layer).hits();
+    }
+
+    @Override
+    public long getMisses(String layer) {
+        return statsOf(layer).misses();
+    }
+
+    @Override
+    public long getClassFileReads(String layer) {
+        return statsOf(layer).classFileReads();
+    }
+
+    @Override
+    public long getBytesRead(String layer) {
+        return statsOf(layer).bytesRead();
+    }
+
+    @Override
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (LayerStats stats : snapshot().values()) {
+            report.append(stats);
+        }
+        return report.toString();
+    }
+
+    private LayerStats statsOf(String name) {
+        Layer layer = layers.get(name);
+        if (layer == null) {
+            throw new IllegalArgumentException("No such layer: " + name);
+        }
+        return layer.snapshot();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [layers=%s]", getClass().getSimpleName(), layers.keySet());
+    }
+
+    static final class Layer {
+        private static final int KINDS = QueryKind.values().length;
+
+        final String name;
+        private final LongAdder[] calls = adders(KINDS);
+        private final LongAdder[] hits = adders(KINDS);
+        private final LongAdder[] misses = adders(KINDS);
+        private final LongAdder[] classFileReads = adders(KINDS);
+        private final LongAdder[] bytesRead = adders(KINDS);
+        private final LongAdder[][] parseLatencyHistograms = new LongAdder[KINDS][];
+
+        Layer(String name) {
+            this.name = name;
+            for (int k = 0; k < KINDS; k++) {
+                parseLatencyHistograms[k] = adders(LayerStats.LATENCY_BUCKETS);
+            }
+        }
+
+        void called(QueryKind kind) {
+            calls[kind.ordinal()].increment();
+        }
+
+        void hit(QueryKind kind) {
+            hits[kind.ordinal()].increment();
+        }
+
+        void missed(QueryKind kind) {
+            misses[kind.ordinal()].increment();
+        }
+
+        void classFileRead(QueryKind kind, long bytes, long parseNanos) {
+            int k = kind.ordinal();
+            classFileReads[k].increment();
+            bytesRead[k].add(bytes);
+            parseLatencyHistograms[k][bucketOf(parseNanos)].increment();
+        }
+
+        private static int bucketOf(long nanos) {
+            return nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+        }
+
+        LayerStats snapshot() {
+            long[][] histograms = new long[KINDS][];
+            for (int k = 0; k < KINDS; k++) {
+                histograms[k] = sums(parseLatencyHistograms[k]);
+            }
+            return new LayerStats(name, sums(calls), sums(hits), sums(misses), sums(classFileReads), sums(bytesRead),
+                histograms);
+        }
+
+        private static LongAdder[] adders(int count) {
+            LongAdder[] adders = new LongAdder[count];
+            for (int i = 0; i < count; i++) {
+                adders[i] = new LongAdder();
+            }
+            return adders;
+        }
+
+        private static long[] sums(LongAdder[] adders) {
+            long[] sums = new long[adders.length];
+            for (int i = 0; i < adders.length; i++) {
+                sums[i] = adders[i].sum();
+            }
+            return sums;
+        }
+    }
+}
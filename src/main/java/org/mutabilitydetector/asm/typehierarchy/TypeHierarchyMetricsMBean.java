@@ -0,0 +1,22 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+/**
+ * The management interface of {@link TypeHierarchyMetrics}. Counts are totals across every {@link QueryKind}; the
+ * report breaks them down by kind, and includes the parse latency histograms.
+ */
+public interface TypeHierarchyMetricsMBean {
+
+    String[] getLayers();
+
+    long getCalls(String layer);
+
+    long getHits(String layer);
+
+    long getMisses(String layer);
+
+    long getClassFileReads(String layer);
+
+    long getBytesRead(String layer);
+
+    String report();
+}
@@ -42,10 +42,22 @@ import static org.mutabilitydetector.asm.typehierarchy.TypeHierarchy.LONG_HIERAR
 import static org.mutabilitydetector.asm.typehierarchy.TypeHierarchy.SHORT_HIERARCHY;
 import static org.mutabilitydetector.asm.typehierarchy.TypeHierarchy.VOID_HIERARCHY;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Type;
@@ -117,10 +129,134 @@ public class TypeHierarchyReader {
         return hierarchyOf(to).isAssignableFrom(hierarchyOf(from), this);
     }
 
+    /**
+     * Obtains the {@link TypeHierarchy} for the given {@link Type} t, with
+     * {@link #hierarchyOf(Type)} run on the given {@link Executor}.
+     */
+    public CompletableFuture<TypeHierarchy> hierarchyOfAsync(final Type t, Executor executor) {
+        return CompletableFuture.supplyAsync(new Supplier<TypeHierarchy>() {
+            @Override
+            public TypeHierarchy get() {
+                return hierarchyOf(t);
+            }
+        }, executor);
+    }
+
+    /**
+     * Equivalent to {@link #isAssignableFrom(Type, Type)}, with each
+     * hierarchy obtained by {@link #hierarchyOfAsync(Type, Executor)}.
+     * <br>
+     * Where {@link TypeHierarchy#isAssignableFrom(TypeHierarchy, TypeHierarchyReader)}
+     * walks the supertypes of <code>from</code> depth first, one lookup at a
+     * time, this obtains the superclass and every interface of each type
+     * at once, so that the latency of reading class files is only exposed
+     * once per level of the hierarchy. The result is complete as soon as
+     * any supertype is found to be assignable. Each supertype is only
+     * looked up once, however many paths reach it.
+     */
+    public CompletableFuture<Boolean> isAssignableFromAsync(final Type to, final Type from, final Executor executor) {
+        return hierarchyOfAsync(to, executor).thenCompose(new Function<TypeHierarchy, CompletableFuture<Boolean>>() {
+            @Override
+            public CompletableFuture<Boolean> apply(TypeHierarchy toHierarchy) {
+                return isAssignableFromAsync(toHierarchy, from, executor,
+                    Collections.newSetFromMap(new ConcurrentHashMap<Type, Boolean>()));
+            }
+        });
+    }
+
+    private CompletableFuture<Boolean> isAssignableFromAsync(final TypeHierarchy to, Type from,
+                                                             final Executor executor, final Set<Type> visited) {
+        return hierarchyOfAsync(from, executor).thenCompose(new Function<TypeHierarchy, CompletableFuture<Boolean>>() {
+            @Override
+            public CompletableFuture<Boolean> apply(TypeHierarchy u) {
+                return isAssignableFromAsync(to, u, executor, visited);
+            }
+        });
+    }
+
+    /**
+     * Follows {@link TypeHierarchy#isAssignableFrom(TypeHierarchy, TypeHierarchyReader)}
+     * case by case, except that the supertypes of u are checked concurrently.
+     */
+    private CompletableFuture<Boolean> isAssignableFromAsync(final TypeHierarchy to, TypeHierarchy u,
+                                                             final Executor executor, Set<Type> visited) {
+        if (TypeHierarchy.JAVA_LANG_OBJECT.representsType(to.type())
+                || to.isSameType(u) || to.isSuperTypeOf(u) || to.isInterfaceImplementedBy(u)) {
+            return CompletableFuture.completedFuture(true);
+        }
+        if (to.isArray() && u.isArray()) {
+            if (to.dimensions() == u.dimensions()) {
+                if (TypeHierarchy.JAVA_LANG_OBJECT.representsType(to.elementType()) && u.isReferenceArrayType()) {
+                    return CompletableFuture.completedFuture(true);
+                } else if (to.elementType().getSort() != u.elementType().getSort()) {
+                    return CompletableFuture.completedFuture(false);
+                } else if (to.elementType().getSort() != Type.OBJECT) {
+                    return CompletableFuture.completedFuture(true);
+                }
+                return isAssignableFromAsync(to.elementType(), u.elementType(), executor);
+            } else if (TypeHierarchy.JAVA_LANG_OBJECT.representsType(to.elementType())
+                    && to.dimensions() <= u.dimensions()) {
+                return CompletableFuture.completedFuture(true);
+            }
+        }
+        if (u.extendsObject() && !u.implementsAnyInterfaces()) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        List<CompletableFuture<Boolean>> supertypes = new ArrayList<CompletableFuture<Boolean>>();
+        if (u.hasSuperClass() && visited.add(u.getSuperClass())) {
+            supertypes.add(isAssignableFromAsync(to, u.getSuperClass(), executor, visited));
+        }
+        for (Type implemented : u.getInterfaces()) {
+            if (visited.add(implemented)) {
+                supertypes.add(isAssignableFromAsync(to, implemented, executor, visited));
+            }
+        }
+        return anyTrue(supertypes);
+    }
+
+    /**
+     * True as soon as any of the futures is true. A failure is only reported once every future has completed and
+     * none was true, so the result does not depend on which branch happens to complete first.
+     */
+    private static CompletableFuture<Boolean> anyTrue(List<CompletableFuture<Boolean>> futures) {
+        if (futures.isEmpty()) {
+            return CompletableFuture.completedFuture(false);
+        }
+        final CompletableFuture<Boolean> anyTrue = new CompletableFuture<Boolean>();
+        final AtomicInteger remaining = new AtomicInteger(futures.size());
+        final AtomicReference<Throwable> firstFailure = new AtomicReference<Throwable>();
+        for (CompletableFuture<Boolean> future : futures) {
+            future.whenComplete(new BiConsumer<Boolean, Throwable>() {
+                @Override
+                public void accept(Boolean isAssignableFrom, Throwable failure) {
+                    if (failure == null && isAssignableFrom) {
+                        anyTrue.complete(true);
+                        return;
+                    }
+                    if (failure != null) {
+                        firstFailure.compareAndSet(null, failure);
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        Throwable anyFailure = firstFailure.get();
+                        if (anyFailure == null) {
+                            anyTrue.complete(false);
+                        } else {
+                            anyTrue.completeExceptionally(anyFailure);
+                        }
+                    }
+                }
+            });
+        }
+        return anyTrue;
+    }
+
     /**
      * Obtains the {@link TypeHierarchy} for the given {@link Type} t.
      * <br>
      * This method represents a suitable point for caching {@link TypeHierarchy} results.
+     * 
+     * @throws TypeNotFoundException if no class file can be found for t
      */
     public TypeHierarchy hierarchyOf(Type t) {
         try {
@@ -146,10 +282,19 @@ public class TypeHierarchyReader {
                 case Type.ARRAY:
                     return TypeHierarchy.hierarchyForArrayOfType(t);
                 case Type.OBJECT:
-                    return obtainHierarchyOf(reader(t));
+                    HierarchyEvents.Scope event = HierarchyEvents.begin(HierarchyEvents.Kind.HIERARCHY_OF);
+                    try {
+                        return readsWholeClassFile()
+                            ? obtainHierarchyOf(reader(t))
+                            : obtainHierarchyOf(readHeader(t));
+                    } finally {
+                        event.end(t);
+                    }
                 default:
                     throw new Error("Programmer error: received a type whose getSort() wasn't matched.");
             }
+        } catch (FileNotFoundException e) {
+            throw new TypeNotFoundException(t, e);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -158,17 +303,84 @@ public class TypeHierarchyReader {
     /**
      * Returns a {@link ClassReader} instance which has read the class file
      * represented by the {@link Type} t. <br> The default implementation
-     * returns a {@link ClassReader} which will attempt to read the class file
-     * as specified by {@link ClassReader#ClassReader(String)} This method
-     * represents a suitable point for subclasses to provide their own
-     * configured {@link ClassReader}. For example, a {@link ClassReader} which
-     * has been constructed with an alternate {@link InputStream}.
+     * returns a {@link ClassReader} which has read the stream returned by
+     * {@link #openClassFile(Type)}. This method represents a suitable point
+     * for subclasses to provide their own configured {@link ClassReader}. For
+     * example, a {@link ClassReader} which has been constructed with an
+     * alternate {@link InputStream}.
+     * <br>
+     * Since a {@link ClassReader} reads the entire class file, subclasses
+     * which only need to change where class files are found should prefer to
+     * override {@link #openClassFile(Type)}. This method, like
+     * {@link #obtainHierarchyOf(ClassReader)}, is only used in place of the
+     * cheaper {@link ClassFileHeader} when {@link #readsWholeClassFile()}
+     * returns true.
+     * <br>
+     * Overrides must report a missing class file with a
+     * {@link FileNotFoundException}, as {@link #openClassFile(Type)} does, for
+     * it to be reported as a {@link TypeNotFoundException}. Note that
+     * {@link ClassReader#ClassReader(String)} reports one with a plain
+     * {@link IOException}.
      * 
+     * @throws FileNotFoundException if the class file cannot be found
      * @see ClassReader#ClassReader(String)
      * @see ClassReader#ClassReader(InputStream)
      */
     protected ClassReader reader(Type t) throws IOException {
-        return new ClassReader(t.getInternalName());
+        HierarchyEvents.Scope event = HierarchyEvents.begin(HierarchyEvents.Kind.CLASS_FILE_READ);
+        try {
+            InputStream classFile = MetricsTypeHierarchyReader.countingReadsOf(openClassFile(t));
+            try {
+                ClassReader reader = new ClassReader(classFile);
+                MetricsTypeHierarchyReader.classFileRead(classFile);
+                return reader;
+            } finally {
+                classFile.close();
+            }
+        } finally {
+            event.end(t);
+        }
+    }
+
+    /**
+     * Opens a stream of the class file represented by the {@link Type} t. The
+     * default implementation finds the class file using
+     * {@link ClassLoader#getSystemResourceAsStream(String)}, as
+     * {@link ClassReader#ClassReader(String)} does. This method represents a
+     * suitable point for subclasses to read class files from elsewhere. The
+     * caller is responsible for closing the stream.
+     * 
+     * @throws FileNotFoundException if the class file cannot be found, which
+     *         {@link #hierarchyOf(Type)} reports as a {@link TypeNotFoundException}
+     * @throws IOException if the class file cannot be opened
+     */
+    protected InputStream openClassFile(Type t) throws IOException {
+        InputStream classFile = ClassLoader.getSystemResourceAsStream(t.getInternalName() + ".class");
+        if (classFile == null) {
+            throw new ClassFileNotFoundException();
+        }
+        return classFile;
+    }
+
+    /**
+     * Reads only the {@link ClassFileHeader} of the class file represented by
+     * the {@link Type} t, from the stream returned by
+     * {@link #openClassFile(Type)}.
+     */
+    protected ClassFileHeader readHeader(Type t) throws IOException {
+        HierarchyEvents.Scope event = HierarchyEvents.begin(HierarchyEvents.Kind.CLASS_FILE_READ);
+        try {
+            InputStream classFile = MetricsTypeHierarchyReader.countingReadsOf(openClassFile(t));
+            try {
+                ClassFileHeader header = ClassFileHeader.read(classFile);
+                MetricsTypeHierarchyReader.classFileRead(classFile);
+                return header;
+            } finally {
+                classFile.close();
+            }
+        } finally {
+            event.end(t);
+        }
     }
 
     protected TypeHierarchy obtainHierarchyOf(ClassReader reader) {
@@ -181,6 +393,20 @@ public class TypeHierarchyReader {
             isInterface);
     }
 
+    protected TypeHierarchy obtainHierarchyOf(ClassFileHeader header) {
+        boolean isInterface = (header.getAccess() & ACC_INTERFACE) != 0;
+        Type[] interfaceTypes = new Type[header.interfaceCount()];
+        for (int i = 0; i < interfaceTypes.length; i++) {
+            interfaceTypes[i] = Type.getObjectType(header.interfaceAt(i));
+        }
+        return new TypeHierarchy(Type.getObjectType(header.getClassName()),
+            header.getSuperName() == null || isInterface
+                ? null
+                : Type.getObjectType(header.getSuperName()),
+            Arrays.asList(interfaceTypes),
+            isInterface);
+    }
+
     private List<Type> interfacesTypesFrom(String[] interfaces) {
         Type[] interfaceTypes = new Type[interfaces.length];
 
@@ -190,4 +416,31 @@ public class TypeHierarchyReader {
         return Arrays.asList(interfaceTypes);
     }
 
+    /**
+     * Told by {@link WatchingCachingTypeHierarchyReader} that the class file of the given type has been created,
+     * modified or deleted. Readers which index or remember class files override this to look again, and readers which
+     * decorate another override it to pass it on, as {@link MissingTypeCachingTypeHierarchyReader} does.
+     */
+    protected void classFileChanged(Type t) {
+    }
+
+    /**
+     * As {@link #classFileChanged(Type)}, but for every class file, e.g. because changes to them were missed.
+     */
+    protected void allClassFilesChanged() {
+    }
+
+    /**
+     * Whether {@link #hierarchyOf(Type)} reads each class file whole, with
+     * {@link #reader(Type)} and {@link #obtainHierarchyOf(ClassReader)},
+     * rather than only its {@link ClassFileHeader}, with
+     * {@link #readHeader(Type)}. Subclasses written before
+     * {@link ClassFileHeader} existed, which customise either
+     * {@link ClassReader} method, override this to return true, so that
+     * their customisation is still used.
+     */
+    protected boolean readsWholeClassFile() {
+        return false;
+    }
+
 }
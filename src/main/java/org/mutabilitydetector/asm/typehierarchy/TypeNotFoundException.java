@@ -0,0 +1,27 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import org.objectweb.asm.Type;
+
+/**
+ * Thrown by a {@link TypeHierarchyReader} when no class file can be found for a {@link Type}.
+ * <br>
+ * No stack trace is recorded, since a missing type is an expected outcome when reading against a partial classpath,
+ * and the same instance may be rethrown each time the type is requested.
+ *
+ * @see MissingTypeCachingTypeHierarchyReader
+ */
+public class TypeNotFoundException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Type type;
+
+    public TypeNotFoundException(Type type, Throwable cause) {
+        super("Class not found: " + type.getInternalName(), cause, false, false);
+        this.type = type;
+    }
+
+    public Type getType() {
+        return type;
+    }
+}
@@ -0,0 +1,131 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.objectweb.asm.Type;
+
+/**
+ * Reads class files from a {@link ClassFileSource} whose reads block for a long time, such as one backed by a network
+ * filesystem, where the latency of each read rather than CPU limits how many can be read per second.
+ * <br>
+ * {@link #hierarchyOfAsync(Type)} and {@link #isAssignableFromAsync(Type, Type)} run each read on a thread of their
+ * own. On JDK 21 or later these are virtual threads, so thousands of reads may be outstanding at once without sizing a
+ * pool of platform threads. On older JDKs, found at runtime rather than compile time, reads are queued for a fixed
+ * number of daemon platform threads instead.
+ * <br>
+ * Like {@link TypeHierarchyReader}, this performs no caching, and is intended to be decorated with one of the caching
+ * readers. It should be closed when no longer required, to stop its threads.
+ */
+public class VirtualThreadTypeHierarchyReader extends TypeHierarchyReader implements Closeable {
+
+    /**
+     * The number of platform threads to read with when virtual threads are not available.
+     */
+    public static final int DEFAULT_FALLBACK_THREADS = 64;
+
+    private final ClassFileSource source;
+    private final ExecutorService executor;
+    private final boolean usesVirtualThreads;
+
+    public VirtualThreadTypeHierarchyReader(ClassFileSource source) {
+        this(source, DEFAULT_FALLBACK_THREADS);
+    }
+
+    public VirtualThreadTypeHierarchyReader(ClassFileSource source, int fallbackThreads) {
+        this(source, fallbackThreads, true);
+    }
+
+    VirtualThreadTypeHierarchyReader(ClassFileSource source, int fallbackThreads, boolean useVirtualThreads) {
+        this.source = source;
+        ExecutorService virtualThreads = useVirtualThreads ? newVirtualThreadPerTaskExecutor() : null;
+        this.usesVirtualThreads = virtualThreads != null;
+        this.executor = usesVirtualThreads ? virtualThreads : newPlatformThreadPool(fallbackThreads);
+    }
+
+    /**
+     * Looked up reflectively, so that this class can be compiled for, and run on, JDKs without virtual threads.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        } catch (UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newPlatformThreadPool(int threads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r,
+                        VirtualThreadTypeHierarchyReader.class.getSimpleName() + "-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * True if reads are run on virtual threads, false if on the fallback pool of platform threads.
+     */
+    public boolean usesVirtualThreads() {
+        return usesVirtualThreads;
+    }
+
+    /**
+     * The threads on which this reader reads class files, e.g. for the asynchronous methods of a caching reader
+     * which decorates this one.
+     */
+    public ExecutorService executor() {
+        return executor;
+    }
+
+    /**
+     * Obtains the hierarchy of the given type, with its class file read on a thread of this reader's own.
+     */
+    public CompletableFuture<TypeHierarchy> hierarchyOfAsync(Type t) {
+        return hierarchyOfAsync(t, executor);
+    }
+
+    /**
+     * Determines assignability, with each class file read on a thread of this reader's own.
+     *
+     * @see TypeHierarchyReader#isAssignableFromAsync(Type, Type, java.util.concurrent.Executor)
+     */
+    public CompletableFuture<Boolean> isAssignableFromAsync(Type to, Type from) {
+        return isAssignableFromAsync(to, from, executor);
+    }
+
+    @Override
+    protected InputStream openClassFile(Type t) throws IOException {
+        return new ByteArrayInputStream(source.read(t.getInternalName()));
+    }
+
+    /**
+     * Stops the threads of this reader. Reads already started are completed, but no more are accepted.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,49 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports what a warm-up of a caching {@link TypeHierarchyReader} did.
+ *
+ * @see ConcurrentMapCachingTypeHierarchyReader#warmUp(Iterable)
+ */
+public final class WarmUpResult {
+
+    private final int typeCount;
+    private final int failureCount;
+    private final long durationNanos;
+
+    public WarmUpResult(int typeCount, int failureCount, long durationNanos) {
+        this.typeCount = typeCount;
+        this.failureCount = failureCount;
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * The number of types whose hierarchy was read into the cache.
+     */
+    public int typeCount() {
+        return typeCount;
+    }
+
+    /**
+     * The number of class files which could not be read, e.g. because they were malformed. These are left to fail
+     * again, or succeed, when looked up.
+     */
+    public int failureCount() {
+        return failureCount;
+    }
+
+    /**
+     * The time taken by the warm-up, from opening the classpath to the cache being filled.
+     */
+    public long duration(TimeUnit unit) {
+        return unit.convert(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [typeCount=%d, failureCount=%d, durationMillis=%d]",
+            getClass().getSimpleName(), typeCount, failureCount, duration(TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,326 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.objectweb.asm.Type;
+
+/**
+ * Caches hierarchies and assignability results, and keeps them up to date as class files in watched directories
+ * change, rather than requiring the whole cache to be thrown away.
+ * <br>
+ * As each hierarchy is cached, the type is added to a reverse index from its superclass and each of its interfaces
+ * to their direct subtypes. When the class file of a type changes, its hierarchy is evicted, and the index is walked
+ * to find every cached subtype of it. Every cached assignability result involving any of those types is evicted, and
+ * each {@link InvalidationListener} is told of them, e.g. to evict the results of a {@link CommonSuperClassFinder}.
+ * The hierarchies of the subtypes themselves are unchanged, so stay cached, as does everything else.
+ * <br>
+ * Directories registered with {@link #watch(File)} are watched, with their subdirectories, by a {@link WatchService}
+ * on a daemon thread. Types can also be invalidated directly. The underlying reader must read class files afresh on
+ * each lookup. It is told of each type invalidated, and of everything being invalidated when the {@link WatchService}
+ * overflows, so that {@link ClassPathTypeHierarchyReader}, or a {@link MissingTypeCachingTypeHierarchyReader}, can
+ * find class files which have been created or deleted since it was created.
+ * <br>
+ * A lookup which was in progress when one of its types was invalidated is answered, but not cached. This reader should
+ * be closed when no longer required, to stop watching.
+ */
+public class WatchingCachingTypeHierarchyReader extends TypeHierarchyReader implements Closeable {
+
+    /**
+     * Told of the types whose cached results have been evicted.
+     */
+    public interface InvalidationListener {
+        /**
+         * @param types each type whose class file changed, and each of its cached subtypes, transitively
+         */
+        void invalidated(Set<Type> types);
+    }
+
+    private final TypeHierarchyReader baseReader;
+    private final ConcurrentMap<Type, TypeHierarchy> hierarchies = new ConcurrentHashMap<Type, TypeHierarchy>();
+    private final ConcurrentMap<Type, Set<Type>> directSubtypes = new ConcurrentHashMap<Type, Set<Type>>();
+    private final ConcurrentMap<Type, ConcurrentMap<Type, Boolean>> isAssignableFromResults =
+        new ConcurrentHashMap<Type, ConcurrentMap<Type, Boolean>>();
+    private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<InvalidationListener>();
+    private final Map<WatchKey, Path[]> watchedDirectories = new ConcurrentHashMap<WatchKey, Path[]>();
+    private final Object invalidationLock = new Object();
+    private volatile long generation;
+    private WatchService watchService;
+
+    public WatchingCachingTypeHierarchyReader(TypeHierarchyReader baseReader) {
+        this.baseReader = baseReader;
+    }
+
+    public void addInvalidationListener(InvalidationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Creates a {@link CommonSuperClassFinder} which uses this reader, and whose results are evicted along with those
+     * of this reader.
+     */
+    public CommonSuperClassFinder newCommonSuperClassFinder() {
+        final CommonSuperClassFinder finder = new CommonSuperClassFinder(this);
+        addInvalidationListener(new InvalidationListener() {
+            @Override
+            public void invalidated(Set<Type> types) {
+                finder.invalidate(types);
+            }
+        });
+        return finder;
+    }
+
+    @Override
+    public TypeHierarchy hierarchyOf(Type t) {
+        TypeHierarchy cached = hierarchies.get(t);
+        if (cached != null) {
+            return cached;
+        }
+        long generationBefore = generation;
+        TypeHierarchy loaded = baseReader.hierarchyOf(t);
+        synchronized (invalidationLock) {
+            if (generation != generationBefore) {
+                return loaded;
+            }
+            TypeHierarchy raced = hierarchies.putIfAbsent(t, loaded);
+            if (raced != null) {
+                return raced;
+            }
+            if (loaded.getSuperClass() != null) {
+                subtypesOf(loaded.getSuperClass()).add(t);
+            }
+            for (Type implemented : loaded.getInterfaces()) {
+                subtypesOf(implemented).add(t);
+            }
+            return loaded;
+        }
+    }
+
+    @Override
+    public boolean isAssignableFrom(Type to, Type from) {
+        ConcurrentMap<Type, Boolean> resultsFrom = isAssignableFromResults.get(from);
+        Boolean cached = resultsFrom == null ? null : resultsFrom.get(to);
+        if (cached != null) {
+            return cached;
+        }
+        long generationBefore = generation;
+        boolean isAssignableFrom = super.isAssignableFrom(to, from);
+        synchronized (invalidationLock) {
+            if (generation == generationBefore) {
+                if (resultsFrom == null) {
+                    resultsFrom = new ConcurrentHashMap<Type, Boolean>();
+                    ConcurrentMap<Type, Boolean> raced = isAssignableFromResults.putIfAbsent(from, resultsFrom);
+                    if (raced != null) {
+                        resultsFrom = raced;
+                    }
+                }
+                resultsFrom.put(to, isAssignableFrom);
+            }
+        }
+        return isAssignableFrom;
+    }
+
+    private Set<Type> subtypesOf(Type t) {
+        Set<Type> subtypes = directSubtypes.get(t);
+        if (subtypes == null) {
+            subtypes = Collections.newSetFromMap(new ConcurrentHashMap<Type, Boolean>());
+            Set<Type> raced = directSubtypes.putIfAbsent(t, subtypes);
+            if (raced != null) {
+                subtypes = raced;
+            }
+        }
+        return subtypes;
+    }
+
+    /**
+     * Evicts the hierarchy of the given type, and every cached result which depended on it.
+     *
+     * @return the given type, and each of its cached subtypes, transitively
+     */
+    public Set<Type> invalidate(Type changed) {
+        baseReader.classFileChanged(changed);
+        Set<Type> affected;
+        synchronized (invalidationLock) {
+            generation++;
+            TypeHierarchy evicted = hierarchies.remove(changed);
+            if (evicted != null) {
+                if (evicted.getSuperClass() != null) {
+                    subtypesOf(evicted.getSuperClass()).remove(changed);
+                }
+                for (Type implemented : evicted.getInterfaces()) {
+                    subtypesOf(implemented).remove(changed);
+                }
+            }
+            affected = subtypesOfIncluding(changed);
+            Iterator<Map.Entry<Type, ConcurrentMap<Type, Boolean>>> results =
+                isAssignableFromResults.entrySet().iterator();
+            while (results.hasNext()) {
+                Map.Entry<Type, ConcurrentMap<Type, Boolean>> resultsFrom = results.next();
+                if (involvesAny(resultsFrom.getKey(), affected)) {
+                    results.remove();
+                    continue;
+                }
+                for (Iterator<Type> tos = resultsFrom.getValue().keySet().iterator(); tos.hasNext(); ) {
+                    if (involvesAny(tos.next(), affected)) {
+                        tos.remove();
+                    }
+                }
+            }
+        }
+        for (InvalidationListener listener : listeners) {
+            listener.invalidated(affected);
+        }
+        return affected;
+    }
+
+    /**
+     * Evicts everything, e.g. because changes were missed.
+     */
+    public void invalidateAll() {
+        baseReader.allClassFilesChanged();
+        Set<Type> affected;
+        synchronized (invalidationLock) {
+            generation++;
+            affected = new HashSet<Type>(hierarchies.keySet());
+            hierarchies.clear();
+            directSubtypes.clear();
+            isAssignableFromResults.clear();
+        }
+        for (InvalidationListener listener : listeners) {
+            listener.invalidated(Collections.unmodifiableSet(affected));
+        }
+    }
+
+    /**
+     * Walks the reverse index breadth first. Each type is visited once, so a cycle, which only a malformed classpath
+     * could contain, does not loop.
+     */
+    private Set<Type> subtypesOfIncluding(Type changed) {
+        Set<Type> visited = new HashSet<Type>();
+        Deque<Type> toVisit = new ArrayDeque<Type>();
+        visited.add(changed);
+        toVisit.add(changed);
+        while (!toVisit.isEmpty()) {
+            Set<Type> subtypes = directSubtypes.get(toVisit.poll());
+            if (subtypes != null) {
+                for (Type subtype : subtypes) {
+                    if (visited.add(subtype)) {
+                        toVisit.add(subtype);
+                    }
+                }
+            }
+        }
+        return Collections.unmodifiableSet(visited);
+    }
+
+    private static boolean involvesAny(Type t, Set<Type> types) {
+        return types.contains(t.getSort() == Type.ARRAY ? t.getElementType() : t);
+    }
+
+    /**
+     * Starts watching the given directory of class files, and each directory beneath it, invalidating each type whose
+     * class file is created, modified or deleted.
+     */
+    public synchronized void watch(File classDirectory) throws IOException {
+        if (watchService == null) {
+            watchService = FileSystems.getDefault().newWatchService();
+            Thread watcher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    processEvents();
+                }
+            }, getClass().getSimpleName());
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+        Path root = classDirectory.toPath().toAbsolutePath();
+        watchTree(root, root);
+    }
+
+    private void watchTree(final Path root, Path directory) throws IOException {
+        final WatchService watchService = this.watchService;
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                watchedDirectories.put(key, new Path[] { root, dir });
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void processEvents() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path[] rootAndDirectory = watchedDirectories.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        invalidateAll();
+                    } else if (rootAndDirectory != null) {
+                        changed(rootAndDirectory[0], rootAndDirectory[1].resolve((Path) event.context()), event.kind());
+                    }
+                }
+                if (!key.reset()) {
+                    watchedDirectories.remove(key);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            return;
+        } catch (InterruptedException e) {
+            return;
+        }
+    }
+
+    private void changed(Path root, Path file, WatchEvent.Kind<?> kind) {
+        if (kind == ENTRY_CREATE && Files.isDirectory(file)) {
+            try {
+                watchTree(root, file);
+            } catch (IOException e) {
+                invalidateAll();
+            }
+            return;
+        }
+        String entryName = ClassPathScanner.entryNameOf(root, file);
+        if (ClassPathScanner.isClassFile(entryName)) {
+            invalidate(Type.getObjectType(ClassPathScanner.internalNameOf(entryName)));
+        }
+    }
+
+    /**
+     * Stops watching. The cache can still be used, but is no longer kept up to date.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package org.mutabilitydetector.asm;
+
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.JSR;
+import static org.objectweb.asm.Opcodes.RET;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_4;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import junit.framework.TestCase;
+
+import org.mutabilitydetector.asm.typehierarchy.ConcurrentMapCachingTypeHierarchyReader;
+import org.mutabilitydetector.asm.typehierarchy.TypeHierarchyReader;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+public class JarFrameRecomputerTest extends TestCase {
+
+    private static final byte[] RESOURCE = "not a class".getBytes();
+
+    /**
+     * Class files of this project, rather than of the running JDK, whose class files may be of a version which
+     * {@link ClassReader} cannot read.
+     */
+    private static final String RECOMPUTER = Type.getInternalName(JarFrameRecomputer.class) + ".class";
+    private static final String CLASS_WRITER = Type.getInternalName(NonClassloadingClassWriter.class) + ".class";
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final JarFrameRecomputer recomputer = new JarFrameRecomputer(
+        new ConcurrentMapCachingTypeHierarchyReader(new TypeHierarchyReader()), executor, 2);
+    private final List<File> files = new ArrayList<File>();
+
+    @Override
+    protected void tearDown() {
+        executor.shutdownNow();
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    public void testRecomputesFramesAndCopiesOtherEntriesInOrder() throws Exception {
+        File input = jarOf(
+            RECOMPUTER, classFileOf(RECOMPUTER),
+            "generated/Branching.class", branchingClassFile("java/util/ArrayList", "java/util/LinkedList"),
+            "META-INF/resource.txt", RESOURCE,
+            CLASS_WRITER, classFileOf(CLASS_WRITER));
+        File output = file();
+
+        assertEquals(3, recomputer.recompute(input, output));
+
+        ZipFile written = new ZipFile(output);
+        try {
+            assertEquals(Arrays.asList(RECOMPUTER, "generated/Branching.class", "META-INF/resource.txt", CLASS_WRITER),
+                entryNames(written));
+            assertTrue(Arrays.equals(RESOURCE, readFully(written.getInputStream(written.getEntry("META-INF/resource.txt")))));
+            ClassNode branching = new ClassNode();
+            new ClassReader(readFully(written.getInputStream(written.getEntry("generated/Branching.class"))))
+                .accept(branching, 0);
+            assertTrue(hasFrame(branching.methods.get(0)));
+        } finally {
+            written.close();
+        }
+    }
+
+    public void testCopiesClassWithSubroutinesUnchanged() throws Exception {
+        byte[] subroutine = subroutineClassFile();
+        File input = jarOf("generated/Subroutine.class", subroutine);
+        File output = file();
+
+        assertEquals(1, recomputer.recompute(input, output));
+
+        ZipFile written = new ZipFile(output);
+        try {
+            assertTrue(Arrays.equals(subroutine,
+                readFully(written.getInputStream(written.getEntry("generated/Subroutine.class")))));
+        } finally {
+            written.close();
+        }
+    }
+
+    public void testReportsClassWhoseFramesCannotBeComputed() throws Exception {
+        File input = jarOf("generated/Branching.class", branchingClassFile("missing/A", "missing/B"));
+        File output = file();
+
+        try {
+            recomputer.recompute(input, output);
+            fail("Expected class referring to missing types to be reported");
+        } catch (IOException expected) {
+        }
+        assertFalse(output.exists());
+    }
+
+    public void testReportsExecutorWhichRejectsClassesRatherThanWaitingForThem() throws Exception {
+        ExecutorService shutDown = Executors.newSingleThreadExecutor();
+        shutDown.shutdown();
+        JarFrameRecomputer rejected = new JarFrameRecomputer(new TypeHierarchyReader(), shutDown, 2);
+        File output = file();
+
+        try {
+            rejected.recompute(jarOf(RECOMPUTER, classFileOf(RECOMPUTER)), output);
+            fail("Expected rejected class to be reported");
+        } catch (IOException expected) {
+            assertTrue(expected.getCause() instanceof RejectedExecutionException);
+        }
+        assertFalse(output.exists());
+    }
+
+    public void testLeavesOutputUnsigned() throws Exception {
+        byte[] manifest = ("Manifest-Version: 1.0\r\n"
+            + "Main-Class: generated.Main\r\n"
+            + "\r\n"
+            + "Name: " + RECOMPUTER + "\r\n"
+            + "SHA-256-Digest: AAAA\r\n"
+            + "\r\n").getBytes("UTF-8");
+        File input = jarOf(
+            "META-INF/MANIFEST.MF", manifest,
+            "META-INF/SIGNER.SF", RESOURCE,
+            "META-INF/SIGNER.RSA", RESOURCE,
+            "META-INF/maven/pom.properties", RESOURCE,
+            RECOMPUTER, classFileOf(RECOMPUTER));
+        File output = file();
+
+        recomputer.recompute(input, output);
+
+        JarFile written = new JarFile(output);
+        try {
+            assertEquals(Arrays.asList("META-INF/MANIFEST.MF", "META-INF/maven/pom.properties", RECOMPUTER),
+                entryNames(written));
+            Manifest writtenManifest = written.getManifest();
+            assertEquals("generated.Main", writtenManifest.getMainAttributes().getValue("Main-Class"));
+            assertTrue(writtenManifest.getEntries().isEmpty());
+        } finally {
+            written.close();
+        }
+    }
+
+    private File file() throws IOException {
+        File file = File.createTempFile("frames", ".jar");
+        files.add(file);
+        return file;
+    }
+
+    private File jarOf(Object... namesAndContents) throws IOException {
+        File jar = file();
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                out.putNextEntry(new ZipEntry((String) namesAndContents[i]));
+                out.write((byte[]) namesAndContents[i + 1]);
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        return jar;
+    }
+
+    private static List<String> entryNames(ZipFile zipFile) {
+        List<String> names = new ArrayList<String>();
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+            names.add(entries.nextElement().getName());
+        }
+        return names;
+    }
+
+    private static boolean hasFrame(MethodNode method) {
+        for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (insn.getType() == AbstractInsnNode.FRAME) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] classFileOf(String entryName) throws IOException {
+        return readFully(ClassLoader.getSystemResourceAsStream(entryName));
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * A class of a version before frames were required, with a method which calls a subroutine.
+     */
+    private static byte[] subroutineClassFile() {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(V1_4, ACC_PUBLIC, "generated/Subroutine", null, "java/lang/Object", null);
+        MethodVisitor method = writer.visitMethod(ACC_PUBLIC | ACC_STATIC, "run", "()V", null, null);
+        method.visitCode();
+        Label subroutine = new Label();
+        method.visitJumpInsn(JSR, subroutine);
+        method.visitInsn(RETURN);
+        method.visitLabel(subroutine);
+        method.visitVarInsn(ASTORE, 0);
+        method.visitVarInsn(RET, 0);
+        method.visitMaxs(1, 1);
+        method.visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * A class, without frames, with a method returning an instance of one of two types depending on a branch, so
+     * that computing its frames needs the common superclass of the two types.
+     */
+    private static byte[] branchingClassFile(String type1, String type2) {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(V1_8, ACC_PUBLIC, "generated/Branching", null, "java/lang/Object", null);
+        MethodVisitor method = writer.visitMethod(ACC_PUBLIC | ACC_STATIC, "choose", "(Z)Ljava/lang/Object;", null, null);
+        method.visitCode();
+        Label otherwise = new Label();
+        Label end = new Label();
+        method.visitVarInsn(ILOAD, 0);
+        method.visitJumpInsn(IFEQ, otherwise);
+        method.visitInsn(ACONST_NULL);
+        method.visitTypeInsn(CHECKCAST, type1);
+        method.visitJumpInsn(GOTO, end);
+        method.visitLabel(otherwise);
+        method.visitTypeInsn(NEW, type2);
+        method.visitInsn(DUP);
+        method.visitMethodInsn(INVOKESPECIAL, type2, "<init>", "()V", false);
+        method.visitLabel(end);
+        method.visitInsn(ARETURN);
+        method.visitMaxs(2, 1);
+        method.visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+}
@@ -1,6 +1,8 @@
 package org.mutabilitydetector.asm;
 
 import junit.framework.TestCase;
+import org.mutabilitydetector.asm.typehierarchy.CommonSuperClassFinder;
+import org.mutabilitydetector.asm.typehierarchy.TypeHierarchyReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
 
@@ -34,6 +36,17 @@ public class NonClassloadingClassWriterCommonSuperClassTest extends TestCase {
         assertCommonSuperclass(Object.class, SubInterface.class, OtherSubInterface.class);
     }
 
+    public void testGetCommonSuperClass_shouldBeConsistentWhenFinderIsSharedBetweenWriters() throws Exception {
+        CommonSuperClassFinder sharedFinder = new CommonSuperClassFinder(new TypeHierarchyReader());
+        String type1 = slashedName(Subclass.class);
+        String type2 = slashedName(OtherSubclass.class);
+
+        assertEquals(slashedName(Superclass.class),
+            new MoreVisibleNonClassloadingClassWriter(sharedFinder).getCommonSuperClass(type1, type2));
+        assertEquals(slashedName(Superclass.class),
+            new MoreVisibleNonClassloadingClassWriter(sharedFinder).getCommonSuperClass(type1, type2));
+    }
+
     private void assertCommonSuperclass(Class<?> expected, Class<?> first, Class<?> second) {
         String expectedType = slashedName(expected);
         String type1 = slashedName(first);
@@ -73,6 +86,10 @@ public class NonClassloadingClassWriterCommonSuperClassTest extends TestCase {
             super(Opcodes.ASM5);
         }
 
+        MoreVisibleNonClassloadingClassWriter(CommonSuperClassFinder commonSuperClassFinder) {
+            super(null, Opcodes.ASM5, commonSuperClassFinder);
+        }
+
         @Override
         public String getCommonSuperClass(String type1, String type2) {
             return super.getCommonSuperClass(type1, type2);
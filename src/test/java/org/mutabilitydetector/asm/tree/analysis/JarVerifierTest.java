@@ -0,0 +1,175 @@
+package org.mutabilitydetector.asm.tree.analysis;
+
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import junit.framework.TestCase;
+
+import org.mutabilitydetector.asm.typehierarchy.ConcurrentMapCachingTypeHierarchyReader;
+import org.mutabilitydetector.asm.typehierarchy.TypeHierarchy;
+import org.mutabilitydetector.asm.typehierarchy.TypeHierarchyReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+public class JarVerifierTest extends TestCase {
+
+    /**
+     * Classes of this project, rather than of the running JDK, whose class files may be of a version which
+     * {@link org.objectweb.asm.ClassReader} cannot read.
+     */
+    private static final Class<?>[] CLASSES = {
+        JarVerifier.class, ClassVerification.class, NonClassloadingSimpleVerifier.class, TypeHierarchyReader.class,
+        ConcurrentMapCachingTypeHierarchyReader.class
+    };
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final List<ClassVerification> results = new ArrayList<ClassVerification>();
+    private File jar;
+
+    @Override
+    protected void setUp() throws Exception {
+        jar = File.createTempFile("verify", ".jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            for (Class<?> c : CLASSES) {
+                String internalName = Type.getInternalName(c);
+                addEntry(out, internalName, classFileOf(internalName));
+            }
+            addEntry(out, "generated/Invalid", invalidClassFile("generated/Invalid"));
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() {
+        executor.shutdownNow();
+        jar.delete();
+    }
+
+    public void testReportsEveryClassInJarOrder() throws Exception {
+        JarVerifier verifier = new JarVerifier(sharedReader(), executor, 2);
+
+        assertTrue(verifier.verify(jar, collectingHandler(Integer.MAX_VALUE)));
+
+        assertEquals(CLASSES.length + 1, results.size());
+        for (int i = 0; i < CLASSES.length; i++) {
+            assertEquals(Type.getInternalName(CLASSES[i]), results.get(i).getClassName());
+            assertTrue(results.get(i).toString(), results.get(i).isValid());
+            assertTrue(results.get(i).getMethodCount() > 0);
+        }
+    }
+
+    public void testReportsEachFailingMethod() throws Exception {
+        new JarVerifier(sharedReader(), executor).verify(jar, collectingHandler(Integer.MAX_VALUE));
+
+        ClassVerification invalid = results.get(results.size() - 1);
+        assertEquals("generated/Invalid", invalid.getClassName());
+        assertEquals(2, invalid.getMethodCount());
+        assertEquals(1, invalid.getFailures().size());
+        assertTrue(invalid.getFailures().containsKey("invalid()I"));
+    }
+
+    public void testStopsWhenHandlerCancels() throws Exception {
+        JarVerifier verifier = new JarVerifier(sharedReader(), executor, 2);
+
+        assertFalse(verifier.verify(jar, collectingHandler(2)));
+        assertEquals(2, results.size());
+    }
+
+    public void testStopsWhenDeadlinePasses() throws Exception {
+        TypeHierarchyReader slowReader = new ConcurrentMapCachingTypeHierarchyReader(new TypeHierarchyReader() {
+            @Override
+            public TypeHierarchy hierarchyOf(Type t) {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.hierarchyOf(t);
+            }
+        });
+
+        try {
+            new JarVerifier(slowReader, executor).verify(jar, 10, TimeUnit.MILLISECONDS, collectingHandler(Integer.MAX_VALUE));
+            fail("Expected deadline to pass");
+        } catch (TimeoutException expected) {
+        }
+    }
+
+    private JarVerifier.ResultHandler collectingHandler(final int stopAfter) {
+        return new JarVerifier.ResultHandler() {
+            @Override
+            public boolean handle(ClassVerification result) {
+                results.add(result);
+                return results.size() < stopAfter;
+            }
+        };
+    }
+
+    private static TypeHierarchyReader sharedReader() {
+        return new ConcurrentMapCachingTypeHierarchyReader(new TypeHierarchyReader());
+    }
+
+    private static void addEntry(JarOutputStream out, String internalName, byte[] classFile) throws IOException {
+        out.putNextEntry(new ZipEntry(internalName + ".class"));
+        out.write(classFile);
+        out.closeEntry();
+    }
+
+    private static byte[] classFileOf(String internalName) throws IOException {
+        InputStream in = ClassLoader.getSystemResourceAsStream(internalName + ".class");
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * A class with a valid constructor, and a method which returns a reference where an int is expected.
+     */
+    private static byte[] invalidClassFile(String internalName) {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(V1_8, ACC_PUBLIC, internalName, null, "java/lang/Object", null);
+        MethodVisitor constructor = writer.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(RETURN);
+        constructor.visitMaxs(1, 1);
+        constructor.visitEnd();
+        MethodVisitor invalid = writer.visitMethod(ACC_PUBLIC, "invalid", "()I", null, null);
+        invalid.visitCode();
+        invalid.visitVarInsn(ALOAD, 0);
+        invalid.visitInsn(IRETURN);
+        invalid.visitMaxs(1, 1);
+        invalid.visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+}
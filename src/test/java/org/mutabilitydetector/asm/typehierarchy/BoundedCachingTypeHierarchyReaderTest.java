@@ -0,0 +1,110 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.Type;
+
+public class BoundedCachingTypeHierarchyReaderTest extends TestCase {
+
+    private final CountingTypeHierarchyReader baseReader = new CountingTypeHierarchyReader();
+
+    public void testCachesReturnValueOfUnderlyingReader() throws Exception {
+        BoundedCachingTypeHierarchyReader reader = new BoundedCachingTypeHierarchyReader(baseReader, 10);
+        Type type = generatedType(1);
+
+        TypeHierarchy first = reader.hierarchyOf(type);
+        TypeHierarchy second = reader.hierarchyOf(type);
+
+        assertSame(first, second);
+        assertEquals(1, baseReader.readCountOf(type));
+    }
+
+    public void testNeverHoldsMoreThanMaximumSize() throws Exception {
+        BoundedCachingTypeHierarchyReader reader = new BoundedCachingTypeHierarchyReader(baseReader, 50);
+
+        for (int i = 0; i < 1000; i++) {
+            reader.hierarchyOf(generatedType(i));
+            assertTrue(reader.size() <= 50);
+        }
+        assertEquals(50, reader.size());
+    }
+
+    public void testCountsHitsMissesAndEvictions() throws Exception {
+        BoundedCachingTypeHierarchyReader reader = new BoundedCachingTypeHierarchyReader(baseReader, 2);
+
+        reader.hierarchyOf(generatedType(1));
+        reader.hierarchyOf(generatedType(1));
+        reader.hierarchyOf(generatedType(2));
+        reader.hierarchyOf(generatedType(3));
+
+        CacheStats stats = reader.stats();
+        assertEquals(1, stats.hitCount());
+        assertEquals(3, stats.missCount());
+        assertEquals(1, stats.evictionCount());
+        assertEquals(2, stats.size());
+        assertEquals(0.25, stats.hitRate(), 0.0001);
+    }
+
+    public void testKeepsFrequentlyUsedTypeThroughScanOfTypesUsedOnce() throws Exception {
+        BoundedCachingTypeHierarchyReader reader = new BoundedCachingTypeHierarchyReader(baseReader, 100);
+        Type frequentlyUsed = Type.getObjectType("frequently/Used");
+
+        for (int i = 0; i < 5; i++) {
+            reader.hierarchyOf(frequentlyUsed);
+        }
+        for (int i = 0; i < 10000; i++) {
+            reader.hierarchyOf(generatedType(i));
+            if (i % 200 == 0) {
+                reader.hierarchyOf(frequentlyUsed);
+            }
+        }
+
+        assertEquals(1, baseReader.readCountOf(frequentlyUsed));
+    }
+
+    public void testNeverEvictsPinnedTypes() throws Exception {
+        BoundedCachingTypeHierarchyReader reader = new BoundedCachingTypeHierarchyReader(baseReader, 1);
+        Type object = Type.getType(Object.class);
+
+        reader.hierarchyOf(object);
+        for (int i = 0; i < 100; i++) {
+            reader.hierarchyOf(generatedType(i));
+        }
+        reader.hierarchyOf(object);
+
+        assertEquals(1, baseReader.readCountOf(object));
+        assertEquals(2, reader.size());
+    }
+
+    public void testRejectsMaximumSizeLessThanOne() throws Exception {
+        try {
+            new BoundedCachingTypeHierarchyReader(baseReader, 0);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static Type generatedType(int i) {
+        return Type.getObjectType("generated/Type" + i);
+    }
+
+    private static final class CountingTypeHierarchyReader extends TypeHierarchyReader {
+        private final Map<Type, Integer> readCounts = new HashMap<Type, Integer>();
+
+        @Override
+        public synchronized TypeHierarchy hierarchyOf(Type t) {
+            Integer count = readCounts.get(t);
+            readCounts.put(t, count == null ? 1 : count + 1);
+            return new TypeHierarchy(t, Type.getType(Object.class), Collections.<Type>emptyList(), false);
+        }
+
+        synchronized int readCountOf(Type t) {
+            Integer count = readCounts.get(t);
+            return count == null ? 0 : count;
+        }
+    }
+}
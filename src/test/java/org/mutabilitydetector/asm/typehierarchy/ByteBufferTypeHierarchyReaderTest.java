@@ -0,0 +1,145 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import static org.mutabilitydetector.asm.typehierarchy.ClassFileHeaderTest.classFileOf;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.Type;
+
+public class ByteBufferTypeHierarchyReaderTest extends TestCase {
+
+    private final TemporaryClassPath classPath = new TemporaryClassPath();
+
+    @Override
+    protected void tearDown() {
+        classPath.delete();
+    }
+
+    public void testReadsStoredJarEntriesAsSlicesOfTheMapping() throws Exception {
+        MappedJarClassFileBufferSource source = new MappedJarClassFileBufferSource(storedJarOf(ArrayList.class));
+
+        ByteBuffer classFile = source.open("java/util/ArrayList");
+
+        assertTrue(classFile.isDirect());
+        assertEquals(classFileOf(ArrayList.class).length, classFile.remaining());
+        assertEquals("java/util/ArrayList", ClassFileHeader.read(classFile).getClassName());
+    }
+
+    public void testInflatesCompressedJarEntries() throws Exception {
+        MappedJarClassFileBufferSource source =
+            new MappedJarClassFileBufferSource(classPath.jarOf(ArrayList.class, List.class));
+
+        assertEquals(2, source.size());
+        assertEquals("java/util/AbstractList", ClassFileHeader.read(source.open("java/util/ArrayList")).getSuperName());
+        assertEquals("java/util/List", ClassFileHeader.read(source.open("java/util/List")).getClassName());
+    }
+
+    public void testSearchesSourcesInOrder() throws Exception {
+        Class<?> fixture = ClassFileHeaderTest.HasSeveralInterfaces.class;
+        ByteBufferTypeHierarchyReader reader = new ByteBufferTypeHierarchyReader(
+            new MappedJarClassFileBufferSource(classPath.jarOf(ArrayList.class, fixture)),
+            new DirectoryClassFileBufferSource(classPath.directoryOf(AbstractList.class, ArrayList.class)));
+        try {
+            assertEquals(Type.getType(AbstractList.class), reader.getSuperClass(Type.getType(ArrayList.class)));
+            assertEquals(Type.getType(AbstractCollection.class), reader.getSuperClass(Type.getType(AbstractList.class)));
+            assertEquals(Type.getInternalName(fixture), reader.reader(Type.getType(fixture)).getClassName());
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testReportsTypeFoundInNoSource() throws Exception {
+        ByteBufferTypeHierarchyReader reader = new ByteBufferTypeHierarchyReader(
+            new DirectoryClassFileBufferSource(classPath.directoryOf(ArrayList.class)));
+        Type missingType = Type.getObjectType("does/not/Exist");
+        try {
+            reader.hierarchyOf(missingType);
+            fail("Expected missing class file to be reported");
+        } catch (TypeNotFoundException expected) {
+            assertEquals(missingType, expected.getType());
+        }
+    }
+
+    public void testFindsNothingForTypeWhichIsNotInTheSource() throws Exception {
+        MappedJarClassFileBufferSource jar = new MappedJarClassFileBufferSource(classPath.jarOf(ArrayList.class));
+        DirectoryClassFileBufferSource directory =
+            new DirectoryClassFileBufferSource(classPath.directoryOf(ArrayList.class));
+
+        assertNull(jar.find("does/not/Exist"));
+        assertNull(directory.find("does/not/Exist"));
+        assertEquals("java/util/ArrayList", ClassFileHeader.read(directory.find("java/util/ArrayList")).getClassName());
+    }
+
+    public void testReportsMalformedJarWithCentralDirectoryOutsideTheJar() throws Exception {
+        File jar = storedJarOf(ArrayList.class);
+        RandomAccessFile file = new RandomAccessFile(jar, "rw");
+        try {
+            file.seek(file.length() - 22 + 16);
+            file.writeInt(0x7FFFFFFF);
+        } finally {
+            file.close();
+        }
+
+        try {
+            new MappedJarClassFileBufferSource(jar);
+            fail("Expected malformed jar to be reported");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().startsWith("Malformed jar"));
+        }
+    }
+
+    public void testReportsMalformedJarWithEntryOutsideTheJar() throws Exception {
+        File jar = storedJarOf(ArrayList.class);
+        RandomAccessFile file = new RandomAccessFile(jar, "rw");
+        try {
+            file.seek(file.length() - 22 + 16);
+            int centralDirectoryOffset = Integer.reverseBytes(file.readInt());
+            file.seek(centralDirectoryOffset + 42);
+            file.writeInt(Integer.reverseBytes((int) file.length() - 10));
+        } finally {
+            file.close();
+        }
+
+        try {
+            new MappedJarClassFileBufferSource(jar);
+            fail("Expected malformed jar to be reported");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().startsWith("Malformed jar"));
+        }
+    }
+
+    private File storedJarOf(Class<?> c) throws Exception {
+        byte[] classFile = classFileOf(c);
+        CRC32 crc = new CRC32();
+        crc.update(classFile);
+        ZipEntry entry = new ZipEntry(Type.getInternalName(c) + ".class");
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(classFile.length);
+        entry.setCompressedSize(classFile.length);
+        entry.setCrc(crc.getValue());
+
+        File jar = classPath.file(".jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(entry);
+            out.write(classFile);
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+        return jar;
+    }
+}
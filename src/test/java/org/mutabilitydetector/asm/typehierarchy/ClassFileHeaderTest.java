@@ -0,0 +1,174 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Class files are taken from the classes of this test, rather than from the running JDK, whose class files may be of
+ * a version which {@link ClassReader} cannot read.
+ */
+public class ClassFileHeaderTest extends TestCase {
+
+    public void testHeaderIsConsistentWithClassReader() throws Exception {
+        assertConsistentWithClassReader(javaLangObjectClassFile());
+        assertConsistentWithClassReader(classFileOf(ClassFileHeaderTest.class));
+        assertConsistentWithClassReader(classFileOf(HasSeveralInterfaces.class));
+        assertConsistentWithClassReader(classFileOf(AbstractFixtureList.class));
+        assertConsistentWithClassReader(classFileOf(ExtendsSeveralInterfaces.class));
+        assertConsistentWithClassReader(classFileOf(Marker.class));
+        assertConsistentWithClassReader(classFileOf(NestedEnum.class));
+        assertConsistentWithClassReader(classFileOf(HasWideConstants.class));
+        assertConsistentWithClassReader(classFileOf(HasNonAsciiConstant.class));
+    }
+
+    public void testStopsReadingAfterInterfacesTable() throws Exception {
+        byte[] classFile = classFileOf(HasSeveralInterfaces.class);
+        ClassReader classReader = new ClassReader(classFile);
+        int endOfInterfacesTable = classReader.header + 8 + 2 * classReader.getInterfaces().length;
+
+        byte[] truncated = Arrays.copyOf(classFile, endOfInterfacesTable);
+        ClassFileHeader header = ClassFileHeader.read(truncated);
+
+        assertEquals(classReader.getClassName(), header.getClassName());
+        assertEquals(Arrays.asList(classReader.getInterfaces()), Arrays.asList(header.getInterfaces()));
+    }
+
+    public void testReadsHeaderInPlaceFromPositionOfBuffer() throws Exception {
+        byte[] classFile = classFileOf(ArrayList.class);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(classFile.length + 3);
+        buffer.put(new byte[] { 1, 2, 3 }).put(classFile).flip().position(3);
+
+        ClassFileHeader header = ClassFileHeader.read(buffer);
+
+        assertEquals("java/util/ArrayList", header.getClassName());
+        assertEquals(3, buffer.position());
+        assertEquals(ClassFileHeader.read(new ByteArrayInputStream(classFile)).getSuperName(), header.getSuperName());
+    }
+
+    public void testRejectsTruncatedHeader() throws Exception {
+        byte[] classFile = classFileOf(HasSeveralInterfaces.class);
+        try {
+            ClassFileHeader.read(Arrays.copyOf(classFile, new ClassReader(classFile).header + 4));
+            fail("Expected truncated class file to be rejected");
+        } catch (IOException expected) { }
+    }
+
+    public void testRejectsFileWithoutMagicNumber() throws Exception {
+        try {
+            ClassFileHeader.read(new byte[] { 0x50, 0x4B, 0x03, 0x04, 0, 0, 0, 0 });
+            fail("Expected non class file to be rejected");
+        } catch (IOException expected) { }
+    }
+
+    public void testRejectsClassIndexOutsideConstantPool() throws Exception {
+        assertRejectsThisClassIndex(0xFFFF);
+        assertRejectsThisClassIndex(0);
+    }
+
+    private static void assertRejectsThisClassIndex(int thisClass) throws Exception {
+        byte[] classFile = classFileOf(HasSeveralInterfaces.class);
+        int thisClassOffset = new ClassReader(classFile).header + 2;
+        classFile[thisClassOffset] = (byte) (thisClass >>> 8);
+        classFile[thisClassOffset + 1] = (byte) thisClass;
+        try {
+            ClassFileHeader.read(classFile);
+            fail("Expected class index " + thisClass + " to be rejected");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().startsWith("Malformed class file"));
+        }
+    }
+
+    public void testHierarchyFromHeaderIsSameAsFromClassReader() throws Exception {
+        TypeHierarchyReader typeHierarchyReader = new TypeHierarchyReader();
+        List<byte[]> classFiles = Arrays.asList(javaLangObjectClassFile(), classFileOf(AbstractFixtureList.class),
+            classFileOf(ExtendsSeveralInterfaces.class), classFileOf(Marker.class));
+        for (byte[] classFile : classFiles) {
+            TypeHierarchy fromHeader = typeHierarchyReader.obtainHierarchyOf(ClassFileHeader.read(classFile));
+            TypeHierarchy fromClassReader = typeHierarchyReader.obtainHierarchyOf(new ClassReader(classFile));
+
+            assertEquals(fromClassReader.type(), fromHeader.type());
+            assertEquals(fromClassReader.getSuperClass(), fromHeader.getSuperClass());
+            assertEquals(fromClassReader.getInterfaces(), fromHeader.getInterfaces());
+            assertEquals(fromClassReader.isInterface(), fromHeader.isInterface());
+        }
+    }
+
+    private void assertConsistentWithClassReader(byte[] classFile) throws IOException {
+        ClassReader classReader = new ClassReader(classFile);
+        ClassFileHeader header = ClassFileHeader.read(classFile);
+
+        assertEquals(classReader.getAccess(), header.getAccess());
+        assertEquals(classReader.getClassName(), header.getClassName());
+        assertEquals(classReader.getSuperName(), header.getSuperName());
+        assertEquals(Arrays.asList(classReader.getInterfaces()), Arrays.asList(header.getInterfaces()));
+    }
+
+    static byte[] classFileOf(Class<?> c) throws IOException {
+        InputStream in = ClassLoader.getSystemResourceAsStream(c.getName().replace('.', '/') + ".class");
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * A class with no superclass, which only java.lang.Object may be, written at a version {@link ClassReader} reads.
+     */
+    private static byte[] javaLangObjectClassFile() {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, "java/lang/Object", null, null, null);
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    @SuppressWarnings("serial")
+    static class HasSeveralInterfaces<E> extends ArrayList<E>
+        implements List<E>, RandomAccess, Cloneable, Serializable { }
+
+    static abstract class AbstractFixtureList<E> extends AbstractList<E> { }
+
+    interface ExtendsSeveralInterfaces extends Collection<Object>, Runnable { }
+
+    interface Marker { }
+
+    enum NestedEnum { FIRST, SECOND }
+
+    @SuppressWarnings("unused")
+    static class HasWideConstants implements Serializable, Comparable<HasWideConstants> {
+        private static final long serialVersionUID = 7_312_391_923_344L;
+        private final double d = Math.random() * 1.2345678901E10;
+        private final long l = System.nanoTime() + 1_234_567_890_123L;
+
+        public int compareTo(HasWideConstants o) {
+            return 0;
+        }
+    }
+
+    static class HasNonAsciiConstant implements Runnable {
+        public void run() {
+            System.out.println("café € \u0000");
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import static org.mutabilitydetector.asm.typehierarchy.ClassFileHeaderTest.classFileOf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.Type;
+
+public class ClassPathTypeHierarchyReaderTest extends TestCase {
+
+    private final TemporaryClassPath classPath = new TemporaryClassPath();
+    private final TypeHierarchyReader plainReader = new TypeHierarchyReader();
+
+    @Override
+    protected void tearDown() {
+        classPath.delete();
+    }
+
+    public void testReadsHierarchiesFromJarsAndDirectories() throws Exception {
+        File jar = classPath.jarOf(ArrayList.class, AbstractList.class, List.class);
+        File directory = classPath.directoryOf(AbstractCollection.class, Collection.class, RandomAccess.class);
+        ClassPathTypeHierarchyReader reader = new ClassPathTypeHierarchyReader(jar, directory);
+        try {
+            for (Class<?> c : new Class<?>[] { ArrayList.class, List.class, AbstractCollection.class, Collection.class }) {
+                assertSameHierarchy(plainReader.hierarchyOf(Type.getType(c)), reader.hierarchyOf(Type.getType(c)));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testResolvesAssignabilityAcrossClassPathEntries() throws Exception {
+        ClassPathTypeHierarchyReader reader = new ClassPathTypeHierarchyReader(
+            classPath.jarOf(ArrayList.class, AbstractList.class),
+            classPath.directoryOf(AbstractCollection.class, Collection.class, List.class, RandomAccess.class),
+            classPath.jarOf(Object.class, Iterable.class, Cloneable.class, Serializable.class));
+        try {
+            assertTrue(reader.isAssignableFrom(Type.getType(Collection.class), Type.getType(ArrayList.class)));
+            assertFalse(reader.isAssignableFrom(Type.getType(ArrayList.class), Type.getType(Collection.class)));
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testFirstClassPathEntryContainingATypeIsUsed() throws Exception {
+        byte[] shadowingClassFile = classFileOf(ArrayList.class);
+        ClassPathTypeHierarchyReader reader = new ClassPathTypeHierarchyReader(
+            classPath.jarWithEntry("java/util/List.class", shadowingClassFile),
+            classPath.jarOf(List.class));
+        try {
+            assertFalse(reader.isInterface(Type.getType(List.class)));
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testOnlyTypesOnTheGivenClassPathAreFound() throws Exception {
+        ClassPathTypeHierarchyReader reader = new ClassPathTypeHierarchyReader(classPath.jarOf(List.class));
+        try {
+            assertTrue(reader.contains(Type.getType(List.class)));
+            assertFalse(reader.contains(Type.getType(ArrayList.class)));
+            reader.hierarchyOf(Type.getType(ArrayList.class));
+            fail("Expected type outwith classpath not to be found");
+        } catch (RuntimeException expected) {
+            assertTrue(expected.getCause() instanceof IOException);
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testIndexesEveryClassFileOfTestClassesDirectory() throws Exception {
+        ClassPathTypeHierarchyReader reader = new ClassPathTypeHierarchyReader(TemporaryClassPath.testClassesDirectory());
+        try {
+            Type subclass = Type.getType(TypeHierarchyReaderConsistentWithJavaLangClassTest.Subclass.class);
+            assertTrue(reader.contains(subclass));
+            assertSameHierarchy(plainReader.hierarchyOf(subclass), reader.hierarchyOf(subclass));
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void assertSameHierarchy(TypeHierarchy expected, TypeHierarchy actual) {
+        assertEquals(expected.type(), actual.type());
+        assertEquals(expected.getSuperClass(), actual.getSuperClass());
+        assertEquals(expected.getInterfaces(), actual.getInterfaces());
+        assertEquals(expected.isInterface(), actual.isInterface());
+    }
+}
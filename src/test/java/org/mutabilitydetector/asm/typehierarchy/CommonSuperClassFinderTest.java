@@ -0,0 +1,91 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Stack;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.Type;
+
+public class CommonSuperClassFinderTest extends TestCase {
+
+    private final CommonSuperClassFinder finder = new CommonSuperClassFinder(new TypeHierarchyReader());
+
+    public void testFindsClosestCommonSuperClassOfClassesAtDifferentDepths() throws Exception {
+        assertCommonSuperClass(AbstractList.class, Stack.class, ArrayList.class);
+        assertCommonSuperClass(AbstractList.class, ArrayList.class, LinkedList.class);
+        assertCommonSuperClass(Number.class, Integer.class, Long.class);
+        assertCommonSuperClass(AbstractMap.class, HashMap.class, ConcurrentSkipListMap.class);
+        assertCommonSuperClass(Object.class, String.class, TreeMap.class);
+    }
+
+    public void testFindsSuperClassWhenOneTypeExtendsTheOther() throws Exception {
+        assertCommonSuperClass(AbstractList.class, AbstractList.class, Stack.class);
+        assertCommonSuperClass(AbstractList.class, Stack.class, AbstractList.class);
+    }
+
+    public void testKeepsOriginalAnswersForInterfaces() throws Exception {
+        assertCommonSuperClass(List.class, List.class, ArrayList.class);
+        assertCommonSuperClass(List.class, ArrayList.class, List.class);
+        assertCommonSuperClass(Object.class, Serializable.class, List.class);
+    }
+
+    public void testFindsCommonSuperClassOfArrays() throws Exception {
+        assertEquals("java/lang/Object", finder.commonSuperClassOf("[I", "[Ljava/lang/String;"));
+    }
+
+    public void testDoesNotRememberResultFoundWhileItsTypesWereInvalidated() throws Exception {
+        final Type linkedList = Type.getType(LinkedList.class);
+        final List<Type> lookups = new ArrayList<Type>();
+        final boolean[] invalidated = new boolean[1];
+        final CommonSuperClassFinder[] invalidatingFinder = new CommonSuperClassFinder[1];
+        invalidatingFinder[0] = new CommonSuperClassFinder(new TypeHierarchyReader() {
+            @Override
+            public TypeHierarchy hierarchyOf(Type t) {
+                lookups.add(t);
+                if (t.equals(linkedList) && !invalidated[0]) {
+                    invalidated[0] = true;
+                    invalidatingFinder[0].invalidate(Collections.singleton(linkedList));
+                }
+                return super.hierarchyOf(t);
+            }
+        });
+
+        assertEquals("java/util/AbstractList",
+            invalidatingFinder[0].commonSuperClassOf("java/util/ArrayList", "java/util/LinkedList"));
+        lookups.clear();
+        invalidatingFinder[0].commonSuperClassOf("java/util/ArrayList", "java/util/LinkedList");
+
+        assertTrue(lookups.contains(linkedList));
+    }
+
+    public void testRemembersResultForPairOfTypes() throws Exception {
+        TypeHierarchyReader reader = spy(new TypeHierarchyReader());
+        CommonSuperClassFinder rememberingFinder = new CommonSuperClassFinder(reader);
+        rememberingFinder.commonSuperClassOf("java/util/ArrayList", "java/util/LinkedList");
+        reset(reader);
+
+        assertEquals("java/util/AbstractList",
+            rememberingFinder.commonSuperClassOf("java/util/ArrayList", "java/util/LinkedList"));
+
+        verifyNoMoreInteractions(reader);
+    }
+
+    private void assertCommonSuperClass(Class<?> expected, Class<?> first, Class<?> second) {
+        assertEquals(Type.getInternalName(expected),
+            finder.commonSuperClassOf(Type.getInternalName(first), Type.getInternalName(second)));
+    }
+}
@@ -3,11 +3,26 @@ package org.mutabilitydetector.asm.typehierarchy;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
+import java.util.AbstractCollection;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.TestCase;
 
@@ -19,6 +34,12 @@ public class ConcurrentMapCachingTypeHierarchyReaderTest extends TestCase {
     private final Type toType = Type.getType(List.class);
     private final Type fromType = Type.getType(ArrayList.class);
     private final ConcurrentMapCachingTypeHierarchyReader reader = new ConcurrentMapCachingTypeHierarchyReader(baseReader);
+    private final TemporaryClassPath classPath = new TemporaryClassPath();
+
+    @Override
+    protected void tearDown() {
+        classPath.delete();
+    }
 
     public void testUsesUnderlyingReaderToCalculateTypeHierarchy() throws Exception {
         TypeHierarchy fromTypeHierarchy = new TypeHierarchy(fromType, toType, Collections.<Type>emptyList(), false);
@@ -55,5 +76,171 @@ public class ConcurrentMapCachingTypeHierarchyReaderTest extends TestCase {
             
         assertEquals(toType, reader.getSuperClass(fromType));
     }
-    
+
+    public void testOnlyOneOfManyConcurrentMissesOnSameTypeUsesUnderlyingReader() throws Exception {
+        final int threadCount = 8;
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch allWaiting = new CountDownLatch(threadCount);
+        final ConcurrentMapCachingTypeHierarchyReader coalescingReader = new ConcurrentMapCachingTypeHierarchyReader(
+            new TypeHierarchyReader() {
+                @Override
+                public TypeHierarchy hierarchyOf(Type t) {
+                    loads.incrementAndGet();
+                    try {
+                        allWaiting.await(100, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new TypeHierarchy(t, null, Collections.<Type>emptyList(), true);
+                }
+            });
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<TypeHierarchy>> results = new ArrayList<Future<TypeHierarchy>>();
+            for (int i = 0; i < threadCount; i++) {
+                results.add(executor.submit(new Callable<TypeHierarchy>() {
+                    @Override
+                    public TypeHierarchy call() {
+                        allWaiting.countDown();
+                        return coalescingReader.hierarchyOf(toType);
+                    }
+                }));
+            }
+            TypeHierarchy first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<TypeHierarchy> result : results) {
+                assertSame(first, result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+    }
+
+    public void testRecursiveLookupOfSameTypeWhileLoadingDoesNotDeadlock() throws Exception {
+        final ConcurrentMapCachingTypeHierarchyReader[] recursiveReader = new ConcurrentMapCachingTypeHierarchyReader[1];
+        final AtomicInteger depth = new AtomicInteger();
+        recursiveReader[0] = new ConcurrentMapCachingTypeHierarchyReader(new TypeHierarchyReader() {
+            @Override
+            public TypeHierarchy hierarchyOf(Type t) {
+                if (depth.incrementAndGet() == 1) {
+                    recursiveReader[0].hierarchyOf(t);
+                }
+                return new TypeHierarchy(t, null, Collections.<Type>emptyList(), true);
+            }
+        });
+
+        assertEquals(toType, recursiveReader[0].hierarchyOf(toType).type());
+    }
+
+    public void testFailureOfUnderlyingReaderIsNotCached() throws Exception {
+        TypeHierarchy fromTypeHierarchy = new TypeHierarchy(fromType, toType, Collections.<Type>emptyList(), false);
+        RuntimeException failure = new RuntimeException("Class not found");
+        when(baseReader.hierarchyOf(fromType)).thenThrow(failure).thenReturn(fromTypeHierarchy);
+
+        try {
+            reader.hierarchyOf(fromType);
+            fail("Expected failure of underlying reader to be rethrown");
+        } catch (RuntimeException e) {
+            assertSame(failure, e);
+        }
+        assertSame(fromTypeHierarchy, reader.hierarchyOf(fromType));
+    }
+
+    public void testWarmUpFillsCacheFromJarsAndDirectories() throws Exception {
+        File jar = classPath.jarOf(ArrayList.class, AbstractList.class, List.class);
+        File directory = classPath.directoryOf(AbstractCollection.class, Collection.class);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        WarmUpResult result;
+        try {
+            result = reader.warmUp(Arrays.asList(jar, directory), pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(5, result.typeCount());
+        assertEquals(0, result.failureCount());
+        assertEquals(Type.getType(AbstractList.class), reader.getSuperClass(Type.getType(ArrayList.class)));
+        assertTrue(reader.isInterface(Type.getType(Collection.class)));
+        verifyNoInteractions(baseReader);
+    }
+
+    public void testWarmUpCountsUnreadableClassFilesAndKeepsExistingEntries() throws Exception {
+        TypeHierarchy cached = new TypeHierarchy(toType, null, Collections.<Type>emptyList(), true);
+        when(baseReader.hierarchyOf(toType)).thenReturn(cached);
+        reader.hierarchyOf(toType);
+        File jar = classPath.jarOf(List.class, ArrayList.class);
+        File broken = classPath.jarWithEntry("generated/Broken.class", new byte[] { 1, 2, 3 });
+
+        WarmUpResult result = reader.warmUp(Arrays.asList(jar, broken));
+
+        assertEquals(1, result.typeCount());
+        assertEquals(1, result.failureCount());
+        assertSame(cached, reader.hierarchyOf(toType));
+    }
+
+
+    public void testPrefetchesSupertypesUpToConfiguredDepth() throws Exception {
+        final List<Type> read = Collections.synchronizedList(new ArrayList<Type>());
+        ConcurrentMapCachingTypeHierarchyReader prefetchingReader = new ConcurrentMapCachingTypeHierarchyReader(
+            recordingReader(read), new PrefetchPolicy(CALLING_THREAD, 1, 16));
+
+        prefetchingReader.hierarchyOf(fromType);
+
+        assertTrue(read.contains(Type.getType(AbstractList.class)));
+        assertTrue(read.contains(toType));
+        assertFalse(read.contains(Type.getType(AbstractCollection.class)));
+        int readsAfterPrefetch = read.size();
+        prefetchingReader.hierarchyOf(Type.getType(AbstractList.class));
+        prefetchingReader.hierarchyOf(toType);
+        assertEquals(readsAfterPrefetch, read.size());
+    }
+
+    public void testPrefetchesNoMoreThanMaximumConcurrentLoads() throws Exception {
+        List<Type> read = Collections.synchronizedList(new ArrayList<Type>());
+        final List<Runnable> queued = new ArrayList<Runnable>();
+        ConcurrentMapCachingTypeHierarchyReader prefetchingReader = new ConcurrentMapCachingTypeHierarchyReader(
+            recordingReader(read), new PrefetchPolicy(new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    queued.add(command);
+                }
+            }, 3, 2));
+
+        prefetchingReader.hierarchyOf(fromType);
+
+        assertEquals(2, queued.size());
+        assertEquals(1, read.size());
+    }
+
+    public void testCountsPrefetchesWhichFail() throws Exception {
+        Type missingType = Type.getObjectType("does/not/Exist");
+        when(baseReader.hierarchyOf(fromType)).thenReturn(
+            new TypeHierarchy(fromType, missingType, Collections.<Type>emptyList(), false));
+        when(baseReader.hierarchyOf(missingType)).thenThrow(new TypeNotFoundException(missingType, null));
+        ConcurrentMapCachingTypeHierarchyReader prefetchingReader = new ConcurrentMapCachingTypeHierarchyReader(
+            baseReader, new PrefetchPolicy(CALLING_THREAD, 1, 16));
+
+        prefetchingReader.hierarchyOf(fromType);
+
+        assertEquals(1, prefetchingReader.droppedPrefetches());
+    }
+
+    private static final Executor CALLING_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static TypeHierarchyReader recordingReader(final List<Type> read) {
+        return new TypeHierarchyReader() {
+            @Override
+            public TypeHierarchy hierarchyOf(Type t) {
+                read.add(t);
+                return super.hierarchyOf(t);
+            }
+        };
+    }
 }
@@ -0,0 +1,69 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.Type;
+
+public class FrozenTypeHierarchyReaderTest extends TestCase {
+
+    public void testAnswersFrozenTypesWithoutAskingUnderlyingReader() throws Exception {
+        TypeHierarchyReader baseReader = spy(new TypeHierarchyReader());
+        ConcurrentMapCachingTypeHierarchyReader cache = new ConcurrentMapCachingTypeHierarchyReader(baseReader);
+        Type arrayList = Type.getType(ArrayList.class);
+        TypeHierarchy cached = cache.hierarchyOf(arrayList);
+
+        FrozenTypeHierarchyReader frozen = FrozenTypeHierarchyReader.freeze(cache);
+
+        assertSame(cached, frozen.hierarchyOf(arrayList));
+        assertEquals(1, frozen.frozenSize());
+        verify(baseReader, times(1)).hierarchyOf(arrayList);
+    }
+
+    public void testKeepsNewTypesInOverflowUntilRefrozen() throws Exception {
+        TypeHierarchyReader baseReader = spy(new TypeHierarchyReader());
+        FrozenTypeHierarchyReader frozen =
+            new FrozenTypeHierarchyReader(baseReader, Collections.<TypeHierarchy>emptyList());
+        Type list = Type.getType(List.class);
+
+        TypeHierarchy loaded = frozen.hierarchyOf(list);
+        assertSame(loaded, frozen.hierarchyOf(list));
+        assertEquals(1, frozen.overflowSize());
+        assertEquals(0, frozen.frozenSize());
+
+        assertEquals(1, frozen.refreeze());
+        assertEquals(0, frozen.refreeze());
+
+        assertSame(loaded, frozen.hierarchyOf(list));
+        assertEquals(0, frozen.overflowSize());
+        assertEquals(1, frozen.frozenSize());
+        assertEquals(1, frozen.generation());
+        verify(baseReader, times(1)).hierarchyOf(list);
+    }
+
+    public void testFindsEveryTypeOfALargeGeneration() throws Exception {
+        List<TypeHierarchy> hierarchies = new ArrayList<TypeHierarchy>();
+        for (int i = 0; i < 5000; i++) {
+            hierarchies.add(new TypeHierarchy(Type.getObjectType("generated/Type" + i), Type.getType(Object.class),
+                                              Arrays.<Type>asList(), false));
+        }
+        TypeHierarchyReader baseReader = mock(TypeHierarchyReader.class);
+        FrozenTypeHierarchyReader frozen = new FrozenTypeHierarchyReader(baseReader, hierarchies);
+
+        for (TypeHierarchy hierarchy : hierarchies) {
+            assertSame(hierarchy, frozen.hierarchyOf(Type.getObjectType(hierarchy.type().getInternalName())));
+        }
+        assertEquals(5000, frozen.frozenSize());
+        verifyNoInteractions(baseReader);
+    }
+}
@@ -0,0 +1,10 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import junit.framework.TestCase;
+
+public class HierarchyEventsTest extends TestCase {
+
+    public void testBeginsNothingWhileEventsAreDisabled() throws Exception {
+        assertSame(HierarchyEvents.DISABLED, HierarchyEvents.begin(HierarchyEvents.Kind.HIERARCHY_OF));
+    }
+}
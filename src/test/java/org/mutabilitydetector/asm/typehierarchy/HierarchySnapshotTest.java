@@ -0,0 +1,125 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.io.File;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.Type;
+
+public class HierarchySnapshotTest extends TestCase {
+
+    private final TemporaryClassPath classPath = new TemporaryClassPath();
+
+    @Override
+    protected void tearDown() {
+        classPath.delete();
+    }
+
+    public void testRestoresCachedHierarchiesAndAssignabilityResults() throws Exception {
+        ClassPathTypeHierarchyReader origins = new ClassPathTypeHierarchyReader(classPath.directoryOf(Superclass.class, Subclass.class));
+        try {
+            ConcurrentMapCachingTypeHierarchyReader hierarchies = new ConcurrentMapCachingTypeHierarchyReader(origins);
+            IsAssignableFromCachingTypeHierarchyReader assignability = new IsAssignableFromCachingTypeHierarchyReader(hierarchies);
+            assertTrue(assignability.isAssignableFrom(Type.getType(Superclass.class), Type.getType(Subclass.class)));
+            assertFalse(assignability.isAssignableFrom(Type.getType(Subclass.class), Type.getType(Superclass.class)));
+            File snapshot = classPath.file(".snapshot");
+
+            assertEquals(2, HierarchySnapshot.write(hierarchies, assignability, origins, snapshot));
+
+            ConcurrentMapCachingTypeHierarchyReader restoredHierarchies = new ConcurrentMapCachingTypeHierarchyReader(unusableReader());
+            IsAssignableFromCachingTypeHierarchyReader restoredAssignability = new IsAssignableFromCachingTypeHierarchyReader(unusableReader());
+            SnapshotRestoreResult result = HierarchySnapshot.restore(snapshot, restoredHierarchies, restoredAssignability, origins);
+
+            assertEquals(2, result.typeCount());
+            assertEquals(0, result.staleTypeCount());
+            assertEquals(2, result.resultCount());
+            assertEquals(hierarchies.hierarchyOf(Type.getType(Subclass.class)).getSuperClass(),
+                restoredHierarchies.hierarchyOf(Type.getType(Subclass.class)).getSuperClass());
+            assertTrue(restoredAssignability.isAssignableFrom(Type.getType(Superclass.class), Type.getType(Subclass.class)));
+            assertFalse(restoredAssignability.isAssignableFrom(Type.getType(Subclass.class), Type.getType(Superclass.class)));
+        } finally {
+            origins.close();
+        }
+    }
+
+    public void testRejectsTypesWhoseClassFileHasChanged() throws Exception {
+        File directory = classPath.directoryOf(Superclass.class, Subclass.class);
+        File snapshot = classPath.file(".snapshot");
+        ClassPathTypeHierarchyReader origins = new ClassPathTypeHierarchyReader(directory);
+        try {
+            ConcurrentMapCachingTypeHierarchyReader hierarchies = new ConcurrentMapCachingTypeHierarchyReader(origins);
+            IsAssignableFromCachingTypeHierarchyReader assignability = new IsAssignableFromCachingTypeHierarchyReader(hierarchies);
+            assignability.isAssignableFrom(Type.getType(Superclass.class), Type.getType(Subclass.class));
+            HierarchySnapshot.write(hierarchies, assignability, origins, snapshot);
+        } finally {
+            origins.close();
+        }
+        File changed = new File(directory, Type.getInternalName(Subclass.class) + ".class");
+        assertTrue(changed.setLastModified(changed.lastModified() - 60000));
+
+        ClassPathTypeHierarchyReader laterOrigins = new ClassPathTypeHierarchyReader(directory);
+        try {
+            IsAssignableFromCachingTypeHierarchyReader restoredAssignability = new IsAssignableFromCachingTypeHierarchyReader(laterOrigins);
+            SnapshotRestoreResult result = HierarchySnapshot.restore(snapshot,
+                new ConcurrentMapCachingTypeHierarchyReader(laterOrigins), restoredAssignability, laterOrigins);
+
+            assertEquals(1, result.typeCount());
+            assertEquals(1, result.staleTypeCount());
+            assertEquals(0, result.resultCount());
+        } finally {
+            laterOrigins.close();
+        }
+    }
+
+    public void testWritesEachNameOnceAndSkipsArrays() throws Exception {
+        ConcurrentMapCachingTypeHierarchyReader hierarchies = new ConcurrentMapCachingTypeHierarchyReader(new TypeHierarchyReader());
+        hierarchies.hierarchyOf(Type.getType(ArrayList.class));
+        hierarchies.hierarchyOf(Type.getType(AbstractList.class));
+        hierarchies.hierarchyOf(Type.getType(List.class));
+        hierarchies.hierarchyOf(Type.getType(String[].class));
+        File snapshot = classPath.file(".snapshot");
+
+        assertEquals(3, HierarchySnapshot.write(hierarchies, snapshot));
+
+        ConcurrentMapCachingTypeHierarchyReader restored = new ConcurrentMapCachingTypeHierarchyReader(unusableReader());
+        assertEquals(3, HierarchySnapshot.restore(snapshot, restored).typeCount());
+        assertEquals(Type.getType(AbstractList.class), restored.getSuperClass(Type.getType(ArrayList.class)));
+        assertTrue(restored.isInterface(Type.getType(List.class)));
+    }
+
+    public void testReplacesExistingSnapshotWithoutLeavingTemporaryFiles() throws Exception {
+        ConcurrentMapCachingTypeHierarchyReader hierarchies =
+            new ConcurrentMapCachingTypeHierarchyReader(new TypeHierarchyReader());
+        hierarchies.hierarchyOf(Type.getType(List.class));
+        File directory = classPath.directoryOf();
+        File snapshot = new File(directory, "hierarchy.snapshot");
+        try {
+            HierarchySnapshot.write(hierarchies, snapshot);
+            hierarchies.hierarchyOf(Type.getType(ArrayList.class));
+            HierarchySnapshot.write(hierarchies, snapshot);
+
+            ConcurrentMapCachingTypeHierarchyReader restored =
+                new ConcurrentMapCachingTypeHierarchyReader(unusableReader());
+            assertEquals(2, HierarchySnapshot.restore(snapshot, restored).typeCount());
+            assertEquals(Arrays.asList("hierarchy.snapshot"), Arrays.asList(directory.list()));
+        } finally {
+            snapshot.delete();
+        }
+    }
+
+    private static TypeHierarchyReader unusableReader() {
+        return new TypeHierarchyReader() {
+            @Override
+            public TypeHierarchy hierarchyOf(Type t) {
+                throw new AssertionError("Should have been restored: " + t);
+            }
+        };
+    }
+
+    static class Superclass { }
+    static class Subclass extends Superclass { }
+}
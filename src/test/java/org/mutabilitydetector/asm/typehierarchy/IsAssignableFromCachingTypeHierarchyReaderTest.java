@@ -0,0 +1,81 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.Type;
+
+public class IsAssignableFromCachingTypeHierarchyReaderTest extends TestCase {
+
+    private final TypeHierarchyReader baseReader = mock(TypeHierarchyReader.class);
+    private final Type toType = Type.getType(List.class);
+    private final Type fromType = Type.getType(ArrayList.class);
+    private final IsAssignableFromCachingTypeHierarchyReader reader = new IsAssignableFromCachingTypeHierarchyReader(baseReader);
+
+    public void testCachesResultOfUnderlyingReader() throws Exception {
+        when(baseReader.isAssignableFrom(toType, fromType)).thenReturn(true);
+
+        assertTrue(reader.isAssignableFrom(toType, fromType));
+        assertTrue(reader.isAssignableFrom(toType, fromType));
+
+        verify(baseReader, times(1)).isAssignableFrom(toType, fromType);
+    }
+
+    public void testCachesFalseResults() throws Exception {
+        when(baseReader.isAssignableFrom(fromType, toType)).thenReturn(false);
+
+        assertFalse(reader.isAssignableFrom(fromType, toType));
+        assertFalse(reader.isAssignableFrom(fromType, toType));
+
+        verify(baseReader, times(1)).isAssignableFrom(fromType, toType);
+    }
+
+    public void testDistinguishesOrderOfTypes() throws Exception {
+        when(baseReader.isAssignableFrom(toType, fromType)).thenReturn(true);
+        when(baseReader.isAssignableFrom(fromType, toType)).thenReturn(false);
+
+        assertTrue(reader.isAssignableFrom(toType, fromType));
+        assertFalse(reader.isAssignableFrom(fromType, toType));
+        assertTrue(reader.isAssignableFrom(toType, fromType));
+    }
+
+    public void testTypesEqualButNotIdenticalShareCachedResult() throws Exception {
+        when(baseReader.isAssignableFrom(toType, fromType)).thenReturn(true);
+
+        reader.isAssignableFrom(toType, fromType);
+        reader.isAssignableFrom(Type.getType("Ljava/util/List;"), Type.getObjectType("java/util/ArrayList"));
+
+        verify(baseReader, times(1)).isAssignableFrom(toType, fromType);
+    }
+
+    public void testKeepsAllResultsAsCacheGrows() throws Exception {
+        TypeHierarchyReader evenIsAssignable = new TypeHierarchyReader() {
+            @Override
+            public boolean isAssignableFrom(Type to, Type from) {
+                return numberOf(to) % 2 == 0;
+            }
+        };
+        IsAssignableFromCachingTypeHierarchyReader growingReader = new IsAssignableFromCachingTypeHierarchyReader(evenIsAssignable);
+
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 5000; i++) {
+                assertEquals(i % 2 == 0, growingReader.isAssignableFrom(generatedType(i), fromType));
+            }
+        }
+    }
+
+    private static Type generatedType(int i) {
+        return Type.getObjectType("generated/Type" + i);
+    }
+
+    private static int numberOf(Type generatedType) {
+        return Integer.parseInt(generatedType.getInternalName().substring("generated/Type".length()));
+    }
+}
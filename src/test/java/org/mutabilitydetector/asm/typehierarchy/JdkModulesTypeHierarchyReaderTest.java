@@ -0,0 +1,106 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.Type;
+
+/**
+ * The jrt:/ file system only exists on JDK 9 and later, and jmods are only shipped with a JDK 9+ installation, so
+ * tests quietly pass when run on earlier JDKs.
+ */
+public class JdkModulesTypeHierarchyReaderTest extends TestCase {
+
+    private static final File JMODS = new File(System.getProperty("java.home"), "jmods");
+
+    private final TypeHierarchyReader plainReader = new TypeHierarchyReader();
+    private final List<JdkModulesTypeHierarchyReader> readers = new ArrayList<JdkModulesTypeHierarchyReader>();
+
+    @Override
+    protected void tearDown() throws IOException {
+        for (JdkModulesTypeHierarchyReader reader : readers) {
+            reader.close();
+        }
+    }
+
+    public void testHierarchiesFromRuntimeImageAreSameAsFromSystemClassLoader() throws Exception {
+        for (JdkModulesTypeHierarchyReader reader : availableReaders()) {
+            assertSameHierarchy(Object.class, reader);
+            assertSameHierarchy(String.class, reader);
+            assertSameHierarchy(ArrayList.class, reader);
+            assertSameHierarchy(ConcurrentHashMap.class, reader);
+            assertSameHierarchy(java.sql.Timestamp.class, reader);
+            assertTrue(reader.isAssignableFrom(Type.getType(java.util.Date.class), Type.getType(java.sql.Timestamp.class)));
+        }
+    }
+
+    public void testIndexesPackagesByModule() throws Exception {
+        for (JdkModulesTypeHierarchyReader reader : availableReaders()) {
+            assertEquals("java.base", reader.moduleOf(Type.getType(Object.class)));
+            assertEquals("java.base", reader.moduleOf(Type.getType(ConcurrentHashMap.class)));
+            assertEquals("java.sql", reader.moduleOf(Type.getType(java.sql.Timestamp.class)));
+            assertNull(reader.moduleOf(Type.getType(JdkModulesTypeHierarchyReaderTest.class)));
+        }
+    }
+
+    public void testTypesOutwithPlatformModulesAreNotFound() throws Exception {
+        for (JdkModulesTypeHierarchyReader reader : availableReaders()) {
+            try {
+                reader.hierarchyOf(Type.getType(JdkModulesTypeHierarchyReaderTest.class));
+                fail("Expected class outwith JDK not to be found");
+            } catch (RuntimeException expected) { }
+            try {
+                reader.hierarchyOf(Type.getObjectType("java/lang/DoesNotExist"));
+                fail("Expected missing class within JDK package not to be found");
+            } catch (RuntimeException expected) { }
+        }
+    }
+
+    public void testListsEveryClassInEveryModule() throws Exception {
+        for (JdkModulesTypeHierarchyReader reader : availableReaders()) {
+            List<String> internalNames = reader.internalNames();
+            assertTrue(internalNames.contains("java/lang/Object"));
+            assertTrue(internalNames.contains("java/sql/Timestamp"));
+            assertFalse(internalNames.contains("module-info"));
+        }
+    }
+
+    public void testRuntimeImageIsUnavailableBeforeJdk9() throws Exception {
+        if (isJdk9OrLater()) {
+            return;
+        }
+        try {
+            JdkModulesTypeHierarchyReader.fromRuntimeImage();
+            fail("Expected jrt:/ to be unavailable");
+        } catch (IOException expected) { }
+    }
+
+    private List<JdkModulesTypeHierarchyReader> availableReaders() throws IOException {
+        if (isJdk9OrLater()) {
+            readers.add(JdkModulesTypeHierarchyReader.fromRuntimeImage());
+            readers.add(JdkModulesTypeHierarchyReader.fromRuntimeImage(new File(System.getProperty("java.home"))));
+        }
+        if (JMODS.isDirectory()) {
+            readers.add(JdkModulesTypeHierarchyReader.fromJmods(JMODS));
+        }
+        return readers;
+    }
+
+    private static boolean isJdk9OrLater() {
+        return !System.getProperty("java.specification.version").startsWith("1.");
+    }
+
+    private void assertSameHierarchy(Class<?> c, TypeHierarchyReader reader) {
+        TypeHierarchy expected = plainReader.hierarchyOf(Type.getType(c));
+        TypeHierarchy actual = reader.hierarchyOf(Type.getType(c));
+        assertEquals(expected.type(), actual.type());
+        assertEquals(expected.getSuperClass(), actual.getSuperClass());
+        assertEquals(expected.getInterfaces(), actual.getInterfaces());
+        assertEquals(expected.isInterface(), actual.isInterface());
+    }
+}
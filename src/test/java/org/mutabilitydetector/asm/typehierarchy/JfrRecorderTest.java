@@ -0,0 +1,97 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import junit.framework.TestCase;
+
+import org.objectweb.asm.Type;
+
+public class JfrRecorderTest extends TestCase {
+
+    public void testBeginsNothingForKindWhichIsNotBeingRecorded() throws Exception {
+        final HierarchyEvents.Scope[] begun = new HierarchyEvents.Scope[1];
+        record(new Runnable() {
+            @Override
+            public void run() {
+                begun[0] = HierarchyEvents.begin(HierarchyEvents.Kind.IS_ASSIGNABLE_FROM);
+            }
+        });
+
+        assertSame(HierarchyEvents.DISABLED, begun[0]);
+    }
+
+    public void testRecordsNestedHierarchyOfAndClassFileReadEvents() throws Exception {
+        List<RecordedEvent> events = record(new Runnable() {
+            @Override
+            public void run() {
+                new TypeHierarchyReader().hierarchyOf(Type.getType(ArrayList.class));
+            }
+        });
+
+        RecordedEvent hierarchyOf = only("org.mutabilitydetector.asm.HierarchyOf", events);
+        assertEquals("java/util/ArrayList", hierarchyOf.getString("firstType"));
+        assertEquals(0, hierarchyOf.getInt("depth"));
+        RecordedEvent classFileRead = only("org.mutabilitydetector.asm.ClassFileRead", events);
+        assertEquals("java/util/ArrayList", classFileRead.getString("firstType"));
+        assertEquals(1, classFileRead.getInt("depth"));
+        assertTrue(hierarchyOf.getDuration().compareTo(classFileRead.getDuration()) >= 0);
+    }
+
+    public void testRecordsClassFileReadEventsOfReaderWhichReadsBuffers() throws Exception {
+        final TemporaryClassPath classPath = new TemporaryClassPath();
+        try {
+            final ByteBufferTypeHierarchyReader reader = new ByteBufferTypeHierarchyReader(
+                new DirectoryClassFileBufferSource(classPath.directoryOf(ArrayList.class)));
+            List<RecordedEvent> events = record(new Runnable() {
+                @Override
+                public void run() {
+                    reader.hierarchyOf(Type.getType(ArrayList.class));
+                }
+            });
+
+            only("org.mutabilitydetector.asm.HierarchyOf", events);
+            RecordedEvent classFileRead = only("org.mutabilitydetector.asm.ClassFileRead", events);
+            assertEquals("java/util/ArrayList", classFileRead.getString("firstType"));
+            assertEquals(1, classFileRead.getInt("depth"));
+        } finally {
+            classPath.delete();
+        }
+    }
+
+    private static List<RecordedEvent> record(Runnable lookups) throws Exception {
+        File file = File.createTempFile("hierarchy", ".jfr");
+        try {
+            Recording recording = new Recording();
+            try {
+                recording.enable("org.mutabilitydetector.asm.HierarchyOf");
+                recording.enable("org.mutabilitydetector.asm.ClassFileRead");
+                recording.start();
+                lookups.run();
+                recording.stop();
+                recording.dump(file.toPath());
+            } finally {
+                recording.close();
+            }
+            return RecordingFile.readAllEvents(file.toPath());
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static RecordedEvent only(String name, List<RecordedEvent> events) {
+        RecordedEvent found = null;
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                assertNull("More than one " + name, found);
+                found = event;
+            }
+        }
+        assertNotNull("No " + name, found);
+        return found;
+    }
+}
@@ -0,0 +1,184 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import static java.util.Arrays.asList;
+import static org.mutabilitydetector.asm.typehierarchy.ClassFileHeaderTest.classFileOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.Type;
+
+public class MappedIndexTypeHierarchyReaderTest extends TestCase {
+
+    private final TypeHierarchyReader plainReader = new TypeHierarchyReader();
+    private final TypeHierarchyReader fallbackReader = mock(TypeHierarchyReader.class);
+    private final TemporaryClassPath classPath = new TemporaryClassPath();
+
+    @Override
+    protected void tearDown() {
+        classPath.delete();
+    }
+
+    public void testHierarchiesFromIndexAreSameAsFromClassFiles() throws Exception {
+        File jar = classPath.jarOf(ArrayList.class, AbstractList.class, List.class, Collection.class, RandomAccess.class);
+        MappedIndexTypeHierarchyReader reader = new MappedIndexTypeHierarchyReader(indexOf(jar), fallbackReader);
+
+        assertEquals(5, reader.size());
+        for (Class<?> c : asList(ArrayList.class, AbstractList.class, List.class, Collection.class, RandomAccess.class)) {
+            assertSameHierarchy(plainReader.hierarchyOf(Type.getType(c)), reader.hierarchyOf(Type.getType(c)));
+        }
+        verifyNoInteractions(fallbackReader);
+    }
+
+    public void testTypesNotInIndexAreObtainedFromFallbackReader() throws Exception {
+        Type notIndexed = Type.getType(Object.class);
+        when(fallbackReader.hierarchyOf(notIndexed)).thenReturn(TypeHierarchy.JAVA_LANG_OBJECT);
+        MappedIndexTypeHierarchyReader reader = new MappedIndexTypeHierarchyReader(
+            indexOf(classPath.jarOf(List.class)), fallbackReader);
+
+        assertSame(TypeHierarchy.JAVA_LANG_OBJECT, reader.hierarchyOf(notIndexed));
+        verify(fallbackReader).hierarchyOf(notIndexed);
+    }
+
+    public void testIndexesClassFilesInDirectories() throws Exception {
+        MappedIndexTypeHierarchyReader reader = new MappedIndexTypeHierarchyReader(
+            indexOf(TemporaryClassPath.testClassesDirectory()), new TypeHierarchyReader());
+
+        Type subclass = Type.getType(TypeHierarchyReaderConsistentWithJavaLangClassTest.SubSubclass.class);
+        Type superclass = Type.getType(TypeHierarchyReaderConsistentWithJavaLangClassTest.Superclass.class);
+        assertSameHierarchy(plainReader.hierarchyOf(subclass), reader.hierarchyOf(subclass));
+        assertTrue(reader.isAssignableFrom(superclass, subclass));
+    }
+
+    public void testFirstClassPathEntryContainingATypeIsIndexed() throws Exception {
+        File first = classPath.jarWithEntry("java/util/List.class", classFileOf(ArrayList.class));
+        File second = classPath.jarOf(List.class);
+        MappedIndexTypeHierarchyReader reader = new MappedIndexTypeHierarchyReader(indexOf(first, second));
+
+        assertEquals(Type.getType(ArrayList.class), reader.hierarchyOf(Type.getType(ArrayList.class)).type());
+        assertTrue(reader.isInterface(Type.getType(List.class)));
+    }
+
+    public void testIndexOfEmptyClassPathFallsBackForEverything() throws Exception {
+        MappedIndexTypeHierarchyReader reader = new MappedIndexTypeHierarchyReader(
+            indexOf(), new TypeHierarchyReader());
+
+        assertEquals(0, reader.size());
+        assertTrue(reader.isInterface(Type.getType(List.class)));
+    }
+
+    public void testRejectsFilesWhichAreNotAnIndex() throws Exception {
+        try {
+            new MappedIndexTypeHierarchyReader(classPath.jarOf(List.class));
+            fail("Expected jar file to be rejected");
+        } catch (IOException expected) { }
+    }
+
+    public void testRejectsTruncatedIndex() throws Exception {
+        File index = indexOf(classPath.jarOf(ArrayList.class, List.class));
+        truncate(index, TypeHierarchyIndexWriter.HEADER_SIZE + 4);
+        try {
+            new MappedIndexTypeHierarchyReader(index, fallbackReader);
+            fail("Expected truncated index to be rejected");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().startsWith("Malformed type hierarchy index"));
+        }
+    }
+
+    public void testRejectsTableSizeWhichIsNotAPowerOfTwo() throws Exception {
+        File index = indexOf(classPath.jarOf(List.class));
+        writeInt(index, 12, 3);
+        try {
+            new MappedIndexTypeHierarchyReader(index, fallbackReader);
+            fail("Expected table size to be rejected");
+        } catch (IOException expected) { }
+    }
+
+    public void testReportsRecordOffsetOutsideOfIndexRatherThanReadingIt() throws Exception {
+        File index = indexOf(classPath.jarOf(List.class));
+        int tableSize = TypeHierarchyIndexWriter.tableSizeFor(1);
+        for (int slot = 0; slot < tableSize; slot++) {
+            writeInt(index, TypeHierarchyIndexWriter.HEADER_SIZE + slot * 4, Integer.MAX_VALUE);
+        }
+        MappedIndexTypeHierarchyReader reader = new MappedIndexTypeHierarchyReader(index, fallbackReader);
+        try {
+            reader.hierarchyOf(Type.getType(List.class));
+            fail("Expected corrupt record offset to be reported");
+        } catch (RuntimeException expected) {
+            assertTrue(expected.getCause() instanceof IOException);
+        }
+    }
+
+    public void testLookupInTableWithNoEmptySlotFallsBack() throws Exception {
+        File index = indexOf(classPath.jarOf(List.class));
+        int tableSize = TypeHierarchyIndexWriter.tableSizeFor(1);
+        int recordsOffset = TypeHierarchyIndexWriter.HEADER_SIZE + tableSize * 4;
+        for (int slot = 0; slot < tableSize; slot++) {
+            writeInt(index, TypeHierarchyIndexWriter.HEADER_SIZE + slot * 4, recordsOffset);
+        }
+        Type notIndexed = Type.getType(Object.class);
+        when(fallbackReader.hierarchyOf(notIndexed)).thenReturn(TypeHierarchy.JAVA_LANG_OBJECT);
+        MappedIndexTypeHierarchyReader reader = new MappedIndexTypeHierarchyReader(index, fallbackReader);
+
+        assertSame(TypeHierarchy.JAVA_LANG_OBJECT, reader.hierarchyOf(notIndexed));
+        assertTrue(reader.isInterface(Type.getType(List.class)));
+    }
+
+    public void testReplacesExistingIndexWithoutLeavingTemporaryFiles() throws Exception {
+        File directory = classPath.directoryOf();
+        File index = new File(directory, "hierarchy.idx");
+        try {
+            TypeHierarchyIndexWriter.write(asList(classPath.jarOf(List.class)), index);
+            TypeHierarchyIndexWriter.write(asList(classPath.jarOf(ArrayList.class, List.class)), index);
+
+            assertEquals(2, new MappedIndexTypeHierarchyReader(index, fallbackReader).size());
+            assertEquals(asList("hierarchy.idx"), asList(directory.list()));
+        } finally {
+            index.delete();
+        }
+    }
+
+    private static void truncate(File file, int length) throws IOException {
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(length);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeInt(File file, int offset, int value) throws IOException {
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.seek(offset);
+            out.writeInt(value);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void assertSameHierarchy(TypeHierarchy expected, TypeHierarchy actual) {
+        assertEquals(expected.type(), actual.type());
+        assertEquals(expected.getSuperClass(), actual.getSuperClass());
+        assertEquals(expected.getInterfaces(), actual.getInterfaces());
+        assertEquals(expected.isInterface(), actual.isInterface());
+    }
+
+    private File indexOf(File... classPathEntries) throws IOException {
+        File index = classPath.file(".idx");
+        TypeHierarchyIndexWriter.write(asList(classPathEntries), index);
+        return index;
+    }
+}
@@ -0,0 +1,120 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.Type;
+
+public class MetricsTypeHierarchyReaderTest extends TestCase {
+
+    private final TypeHierarchyMetrics metrics = new TypeHierarchyMetrics();
+    private final TypeHierarchyReader reader = new MetricsTypeHierarchyReader("cache",
+        new ConcurrentMapCachingTypeHierarchyReader(
+            new MetricsTypeHierarchyReader("classFiles", new TypeHierarchyReader(), metrics)),
+        metrics);
+
+    public void testCountsHitsInTheLayerWhichAnsweredAndMissesInTheLayersAbove() throws Exception {
+        Type arrayList = Type.getType(ArrayList.class);
+
+        reader.hierarchyOf(arrayList);
+        reader.hierarchyOf(arrayList);
+
+        Map<String, LayerStats> snapshot = metrics.snapshot();
+        LayerStats cache = snapshot.get("cache");
+        assertEquals(2, cache.calls(QueryKind.HIERARCHY_OF));
+        assertEquals(1, cache.hits(QueryKind.HIERARCHY_OF));
+        assertEquals(1, cache.misses(QueryKind.HIERARCHY_OF));
+        LayerStats classFiles = snapshot.get("classFiles");
+        assertEquals(1, classFiles.calls());
+        assertEquals(1, classFiles.misses());
+        assertEquals(1, classFiles.classFileReads());
+    }
+
+    public void testCountsBytesReadAndParseLatencyOfEachClassFile() throws Exception {
+        reader.hierarchyOf(Type.getType(ArrayList.class));
+
+        LayerStats classFiles = metrics.snapshot().get("classFiles");
+        assertTrue(classFiles.bytesRead(QueryKind.HIERARCHY_OF) > 0);
+        long parsed = 0;
+        for (long count : classFiles.parseLatencyHistogram(QueryKind.HIERARCHY_OF)) {
+            parsed += count;
+        }
+        assertEquals(1, parsed);
+    }
+
+    public void testAttributesLookupsToTheOutermostQuery() throws Exception {
+        reader.isAssignableFrom(Type.getType(Object.class), Type.getType(ArrayList.class));
+        reader.isInterface(Type.getType(Runnable.class));
+        reader.getSuperClass(Type.getType(ArrayList.class));
+
+        LayerStats classFiles = metrics.snapshot().get("classFiles");
+        assertEquals(0, classFiles.calls(QueryKind.HIERARCHY_OF));
+        assertTrue(classFiles.calls(QueryKind.IS_ASSIGNABLE_FROM) > 0);
+        assertEquals(1, classFiles.classFileReads(QueryKind.IS_INTERFACE));
+        assertEquals(0, classFiles.classFileReads(QueryKind.GET_SUPER_CLASS));
+        assertEquals(1, metrics.snapshot().get("cache").hits(QueryKind.GET_SUPER_CLASS));
+    }
+
+    public void testCountsClassFilesReadForEachQueryOfAReaderWhichReadsThemItself() throws Exception {
+        TypeHierarchyReader classFiles = new MetricsTypeHierarchyReader("classFiles", new TypeHierarchyReader(), metrics);
+
+        classFiles.isInterface(Type.getType(Runnable.class));
+        classFiles.getSuperClass(Type.getType(ArrayList.class));
+        classFiles.isAssignableFrom(Type.getType(List.class), Type.getType(ArrayList.class));
+
+        LayerStats stats = metrics.snapshot().get("classFiles");
+        assertEquals(1, stats.classFileReads(QueryKind.IS_INTERFACE));
+        assertEquals(1, stats.misses(QueryKind.IS_INTERFACE));
+        assertTrue(stats.bytesRead(QueryKind.IS_INTERFACE) > 0);
+        assertEquals(1, stats.classFileReads(QueryKind.GET_SUPER_CLASS));
+        assertTrue(stats.classFileReads(QueryKind.IS_ASSIGNABLE_FROM) >= 2);
+        assertEquals(0, stats.classFileReads(QueryKind.HIERARCHY_OF));
+    }
+
+    public void testCountsClassFilesReadThroughOverriddenHierarchyOfOfUnderlyingReader() throws Exception {
+        final List<Type> looked = new ArrayList<Type>();
+        TypeHierarchyReader classFiles = new MetricsTypeHierarchyReader("classFiles", new TypeHierarchyReader() {
+            @Override
+            public TypeHierarchy hierarchyOf(Type t) {
+                looked.add(t);
+                return super.hierarchyOf(t);
+            }
+        }, metrics);
+
+        classFiles.isInterface(Type.getType(Runnable.class));
+
+        assertEquals(1, looked.size());
+        LayerStats stats = metrics.snapshot().get("classFiles");
+        assertEquals(1, stats.classFileReads(QueryKind.IS_INTERFACE));
+        assertEquals(1, stats.misses(QueryKind.IS_INTERFACE));
+    }
+
+    public void testPrimitivesAndArraysAreHitsWithoutReadingClassFiles() throws Exception {
+        reader.hierarchyOf(Type.INT_TYPE);
+        reader.hierarchyOf(Type.getType(String[].class));
+
+        LayerStats classFiles = metrics.snapshot().get("classFiles");
+        assertEquals(2, classFiles.hits());
+        assertEquals(0, classFiles.classFileReads());
+    }
+
+    public void testIsAvailableThroughPlatformMBeanServer() throws Exception {
+        reader.hierarchyOf(Type.getType(ArrayList.class));
+        ObjectName name = metrics.registerMBean("org.mutabilitydetector.asm:type=TypeHierarchyMetrics,name=test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertEquals(1L, server.invoke(name, "getClassFileReads",
+                new Object[] { "classFiles" }, new String[] { String.class.getName() }));
+            assertTrue(((String) server.invoke(name, "report", new Object[0], new String[0])).contains("classFiles"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
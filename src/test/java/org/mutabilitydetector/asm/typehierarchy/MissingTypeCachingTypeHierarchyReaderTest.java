@@ -0,0 +1,91 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.Type;
+
+public class MissingTypeCachingTypeHierarchyReaderTest extends TestCase {
+
+    private final TypeHierarchyReader baseReader = mock(TypeHierarchyReader.class);
+    private final Type missingType = Type.getObjectType("optional/dependency/Missing");
+    private final TypeNotFoundException notFound = new TypeNotFoundException(missingType, null);
+
+    public void testThrowPolicyRethrowsWithoutAskingUnderlyingReaderAgain() throws Exception {
+        when(baseReader.hierarchyOf(missingType)).thenThrow(notFound);
+        MissingTypeCachingTypeHierarchyReader reader =
+            new MissingTypeCachingTypeHierarchyReader(baseReader, MissingTypePolicy.THROW);
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                reader.hierarchyOf(missingType);
+                fail("Expected missing type to be reported");
+            } catch (TypeNotFoundException expected) {
+                assertSame(notFound, expected);
+            }
+        }
+        verify(baseReader, times(1)).hierarchyOf(missingType);
+    }
+
+    public void testTreatAsObjectSubclassPolicyAnswersForMissingType() throws Exception {
+        when(baseReader.hierarchyOf(missingType)).thenThrow(notFound);
+        TypeHierarchy listHierarchy = new TypeHierarchy(Type.getType(List.class), null,
+            Collections.<Type>emptyList(), true);
+        when(baseReader.hierarchyOf(Type.getType(List.class))).thenReturn(listHierarchy);
+        when(baseReader.hierarchyOf(Type.getType(Object.class))).thenReturn(TypeHierarchy.JAVA_LANG_OBJECT);
+        MissingTypeCachingTypeHierarchyReader reader =
+            new MissingTypeCachingTypeHierarchyReader(baseReader, MissingTypePolicy.TREAT_AS_OBJECT_SUBCLASS);
+
+        assertEquals(Type.getType(Object.class), reader.getSuperClass(missingType));
+        assertFalse(reader.isInterface(missingType));
+        assertTrue(reader.isAssignableFrom(Type.getType(Object.class), missingType));
+        assertFalse(reader.isAssignableFrom(Type.getType(List.class), missingType));
+        verify(baseReader, times(1)).hierarchyOf(missingType);
+    }
+
+    public void testTreatAsObjectSubclassPolicyAnswersWithSameHierarchyEachTime() throws Exception {
+        when(baseReader.hierarchyOf(missingType)).thenThrow(notFound);
+        MissingTypeCachingTypeHierarchyReader reader =
+            new MissingTypeCachingTypeHierarchyReader(baseReader, MissingTypePolicy.TREAT_AS_OBJECT_SUBCLASS);
+
+        TypeHierarchy answered = reader.hierarchyOf(missingType);
+
+        assertEquals(missingType, answered.type());
+        assertSame(answered, reader.hierarchyOf(missingType));
+    }
+
+    public void testOtherFailuresAreRetried() throws Exception {
+        RuntimeException unreadable = new RuntimeException("Truncated class file");
+        TypeHierarchy hierarchy = new TypeHierarchy(missingType, Type.getType(Object.class),
+            Collections.<Type>emptyList(), false);
+        when(baseReader.hierarchyOf(missingType)).thenThrow(unreadable).thenReturn(hierarchy);
+        MissingTypeCachingTypeHierarchyReader reader =
+            new MissingTypeCachingTypeHierarchyReader(baseReader, MissingTypePolicy.TREAT_AS_OBJECT_SUBCLASS);
+
+        try {
+            reader.hierarchyOf(missingType);
+            fail("Expected failure other than a missing type to be passed on");
+        } catch (RuntimeException expected) {
+            assertSame(unreadable, expected);
+        }
+        assertSame(hierarchy, reader.hierarchyOf(missingType));
+        assertTrue(reader.missingTypes().isEmpty());
+    }
+
+    public void testReportsMissingTypes() throws Exception {
+        MissingTypeCachingTypeHierarchyReader reader = new MissingTypeCachingTypeHierarchyReader(
+            new TypeHierarchyReader(), MissingTypePolicy.TREAT_AS_OBJECT_SUBCLASS);
+
+        reader.hierarchyOf(missingType);
+        reader.hierarchyOf(Type.getType(List.class));
+
+        assertEquals(Collections.singleton(missingType), reader.missingTypes());
+    }
+}
@@ -0,0 +1,84 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import static org.objectweb.asm.Opcodes.ACC_INTERFACE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.mutabilitydetector.asm.NonClassloadingClassWriter;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+
+public class OverlayTypeHierarchyReaderTest extends TestCase {
+
+    private final OverlayTypeHierarchyReader reader = new OverlayTypeHierarchyReader(new TypeHierarchyReader());
+    private final Type generatedList = Type.getObjectType("generated/GeneratedList");
+    private final Type generatedInterface = Type.getObjectType("generated/GeneratedInterface");
+
+    public void testAnswersForRegisteredClassNode() throws Exception {
+        reader.register(classNode("generated/GeneratedList", "java/util/ArrayList", 0));
+
+        assertTrue(reader.isRegistered(generatedList));
+        assertEquals(Type.getType(ArrayList.class), reader.getSuperClass(generatedList));
+        assertTrue(reader.isAssignableFrom(Type.getType(List.class), generatedList));
+    }
+
+    public void testAnswersForRegisteredClassReaderAndBytes() throws Exception {
+        byte[] classFile = classFileOf(classNode("generated/GeneratedInterface", "java/lang/Object", ACC_INTERFACE));
+
+        reader.register(new ClassReader(classFile));
+        assertTrue(reader.isInterface(generatedInterface));
+
+        OverlayTypeHierarchyReader fromBytes = new OverlayTypeHierarchyReader(new TypeHierarchyReader());
+        assertEquals(generatedInterface, fromBytes.register(classFile));
+        assertTrue(fromBytes.isInterface(generatedInterface));
+    }
+
+    public void testRegisteredClassesMayReferToEachOther() throws Exception {
+        reader.register(classNode("generated/GeneratedInterface", "java/lang/Object", ACC_INTERFACE));
+        ClassNode implementation = classNode("generated/Implementation", "java/lang/Object", 0);
+        implementation.interfaces.add("generated/GeneratedInterface");
+        reader.register(implementation);
+
+        assertTrue(reader.isAssignableFrom(generatedInterface, Type.getObjectType("generated/Implementation")));
+    }
+
+    public void testRegisteredClassHidesClassFileOfSameName() throws Exception {
+        reader.register(classNode("java/util/ArrayList", "java/lang/Object", 0));
+
+        assertEquals(Type.getType(Object.class), reader.getSuperClass(Type.getType(ArrayList.class)));
+
+        reader.unregister(Type.getType(ArrayList.class));
+        assertEquals(Type.getObjectType("java/util/AbstractList"), reader.getSuperClass(Type.getType(ArrayList.class)));
+    }
+
+    public void testFindsCommonSuperClassOfRegisteredClasses() throws Exception {
+        reader.register(classNode("generated/GeneratedList", "java/util/ArrayList", 0));
+        reader.register(classNode("generated/OtherList", "java/util/LinkedList", 0));
+
+        CommonSuperClassFinder finder = new CommonSuperClassFinder(reader);
+
+        assertEquals("java/util/AbstractList", finder.commonSuperClassOf("generated/GeneratedList", "generated/OtherList"));
+    }
+
+    private static ClassNode classNode(String name, String superName, int access) {
+        ClassNode classNode = new ClassNode();
+        classNode.version = V1_8;
+        classNode.access = ACC_PUBLIC | access;
+        classNode.name = name;
+        classNode.superName = superName;
+        return classNode;
+    }
+
+    private static byte[] classFileOf(ClassNode classNode) {
+        ClassWriter writer = new NonClassloadingClassWriter(0);
+        classNode.accept(writer);
+        return writer.toByteArray();
+    }
+}
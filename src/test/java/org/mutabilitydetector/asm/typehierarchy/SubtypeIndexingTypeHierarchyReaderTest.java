@@ -0,0 +1,89 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import static java.util.Arrays.asList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.Type;
+
+public class SubtypeIndexingTypeHierarchyReaderTest extends TestCase {
+
+    private final TemporaryClassPath classPath = new TemporaryClassPath();
+    private final SubtypeIndexingTypeHierarchyReader reader =
+        new SubtypeIndexingTypeHierarchyReader(new ConcurrentMapCachingTypeHierarchyReader(new TypeHierarchyReader()));
+
+    @Override
+    protected void tearDown() {
+        classPath.delete();
+    }
+
+    public void testIndexesTypesAsTheirHierarchiesAreRead() throws Exception {
+        reader.hierarchyOf(Type.getType(ArrayList.class));
+
+        assertTrue(reader.directSubtypesOf(Type.getType(AbstractList.class)).contains(Type.getType(ArrayList.class)));
+        assertTrue(reader.directSubtypesOf(Type.getType(RandomAccess.class)).contains(Type.getType(ArrayList.class)));
+        assertTrue(reader.directSubtypesOf(Type.getType(ArrayList.class)).isEmpty());
+    }
+
+    public void testEnumeratesSubtypesTransitivelyAndOnlyOnce() throws Exception {
+        reader.hierarchyOf(Type.getType(Implementation.class));
+        reader.hierarchyOf(Type.getType(Subclass.class));
+        reader.hierarchyOf(Type.getType(SubInterface.class));
+
+        assertEquals(types(SubInterface.class, Implementation.class, Subclass.class),
+            reader.subtypesOf(Type.getType(Interface.class)));
+        assertEquals(types(Subclass.class), reader.subtypesOf(Type.getType(Implementation.class)));
+    }
+
+    public void testStopsVisitingWhenVisitorReturnsFalse() throws Exception {
+        reader.hierarchyOf(Type.getType(Implementation.class));
+        reader.hierarchyOf(Type.getType(Subclass.class));
+        final List<Type> visited = new ArrayList<Type>();
+
+        reader.forEachSubtype(Type.getType(Interface.class), new SubtypeIndexingTypeHierarchyReader.SubtypeVisitor() {
+            @Override
+            public boolean visitSubtype(Type subtype) {
+                visited.add(subtype);
+                return false;
+            }
+        });
+
+        assertEquals(1, visited.size());
+    }
+
+    public void testIndexesClassPathInBulkWithoutReadingHierarchies() throws Exception {
+        TypeHierarchyReader baseReader = mock(TypeHierarchyReader.class);
+        SubtypeIndexingTypeHierarchyReader bulkReader = new SubtypeIndexingTypeHierarchyReader(baseReader);
+
+        int added = bulkReader.indexClassPath(
+            asList(classPath.jarOf(Interface.class, SubInterface.class, Implementation.class, Subclass.class)));
+
+        assertEquals(4, added);
+        assertEquals(types(SubInterface.class, Implementation.class, Subclass.class),
+            bulkReader.subtypesOf(Type.getType(Interface.class)));
+        assertEquals(0, bulkReader.indexClassPath(asList(classPath.jarOf(Subclass.class))));
+        verifyNoMoreInteractions(baseReader);
+    }
+
+    private static Set<Type> types(Class<?>... classes) {
+        Set<Type> types = new HashSet<Type>();
+        for (Class<?> c : classes) {
+            types.add(Type.getType(c));
+        }
+        return types;
+    }
+
+    interface Interface { }
+    interface SubInterface extends Interface { }
+    static class Implementation implements Interface, SubInterface { }
+    static class Subclass extends Implementation implements Interface { }
+}
@@ -0,0 +1,97 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import static org.mutabilitydetector.asm.typehierarchy.ClassFileHeaderTest.classFileOf;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.objectweb.asm.Type;
+
+/**
+ * Creates jars and directories of class files for tests, and deletes them afterwards.
+ */
+final class TemporaryClassPath {
+
+    private final List<File> filesToDelete = new ArrayList<File>();
+
+    File jarOf(Class<?>... classes) throws IOException {
+        File jar = file(".jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            for (Class<?> c : classes) {
+                out.putNextEntry(new ZipEntry(Type.getInternalName(c) + ".class"));
+                out.write(classFileOf(c));
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        return jar;
+    }
+
+    File jarWithEntry(String entryName, byte[] content) throws IOException {
+        File jar = file(".jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new ZipEntry(entryName));
+            out.write(content);
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+        return jar;
+    }
+
+    File directoryOf(Class<?>... classes) throws IOException {
+        File directory = file("");
+        directory.delete();
+        directory.mkdir();
+        for (Class<?> c : classes) {
+            writeClassFile(directory, Type.getInternalName(c), classFileOf(c));
+        }
+        return directory;
+    }
+
+    File writeClassFile(File directory, String internalName, byte[] content) throws IOException {
+        File classFile = new File(directory, internalName + ".class");
+        for (File parent = classFile.getParentFile(); !parent.equals(directory); parent = parent.getParentFile()) {
+            filesToDelete.add(0, parent);
+        }
+        classFile.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(classFile);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        filesToDelete.add(0, classFile);
+        return classFile;
+    }
+
+    File file(String suffix) throws IOException {
+        File file = File.createTempFile(TemporaryClassPath.class.getSimpleName(), suffix);
+        filesToDelete.add(file);
+        return file;
+    }
+
+    static File testClassesDirectory() {
+        try {
+            return new File(TemporaryClassPath.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    void delete() {
+        for (File file : filesToDelete) {
+            file.delete();
+        }
+        filesToDelete.clear();
+    }
+}
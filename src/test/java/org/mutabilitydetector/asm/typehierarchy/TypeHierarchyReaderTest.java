@@ -0,0 +1,206 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import static org.mutabilitydetector.asm.typehierarchy.ClassFileHeaderTest.classFileOf;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+
+public class TypeHierarchyReaderTest extends TestCase {
+
+    private final Type listType = Type.getType(List.class);
+    private final Type arrayListType = Type.getType(ArrayList.class);
+
+    public void testReadsClassFilesFromOverriddenOpenClassFile() throws Exception {
+        final List<Type> opened = new ArrayList<Type>();
+        TypeHierarchyReader reader = new TypeHierarchyReader() {
+            @Override
+            protected InputStream openClassFile(Type t) throws IOException {
+                opened.add(t);
+                return super.openClassFile(t);
+            }
+        };
+
+        assertEquals(Type.getType("Ljava/util/AbstractList;"), reader.getSuperClass(arrayListType));
+        assertTrue(reader.isInterface(listType));
+        assertEquals(2, opened.size());
+    }
+
+    public void testStillReadsClassFilesFromOverriddenReaderMethod() throws Exception {
+        Type fixtureType = Type.getType(ClassFileHeaderTest.HasSeveralInterfaces.class);
+        final List<Type> read = new ArrayList<Type>();
+        TypeHierarchyReader reader = new TypeHierarchyReader() {
+            @Override
+            protected boolean readsWholeClassFile() {
+                return true;
+            }
+
+            @Override
+            protected ClassReader reader(Type t) throws IOException {
+                read.add(t);
+                byte[] classFile = classFileOf(ClassFileHeaderTest.HasSeveralInterfaces.class);
+                return new ClassReader(new ByteArrayInputStream(classFile));
+            }
+        };
+
+        assertEquals(fixtureType, reader.hierarchyOf(listType).type());
+        assertEquals(1, read.size());
+    }
+
+    public void testMissingClassFileIsReportedAsRuntimeException() throws Exception {
+        try {
+            new TypeHierarchyReader().hierarchyOf(Type.getObjectType("does/not/Exist"));
+            fail("Expected missing class file to be reported");
+        } catch (RuntimeException expected) {
+            assertTrue(expected.getCause() instanceof IOException);
+        }
+    }
+
+    public void testMissingClassFileIsReportedAsStacklessTypeNotFoundException() throws Exception {
+        Type missingType = Type.getObjectType("does/not/Exist");
+        try {
+            new TypeHierarchyReader().hierarchyOf(missingType);
+            fail("Expected missing class file to be reported");
+        } catch (TypeNotFoundException expected) {
+            assertEquals(missingType, expected.getType());
+            assertEquals(0, expected.getStackTrace().length);
+            assertEquals(0, expected.getCause().getStackTrace().length);
+        }
+    }
+
+    public void testClassReaderWhichCannotFindClassFileIsReportedAsTypeNotFoundException() throws Exception {
+        TypeHierarchyReader reader = new TypeHierarchyReader() {
+            @Override
+            protected boolean readsWholeClassFile() {
+                return true;
+            }
+
+            @Override
+            protected ClassReader reader(Type t) throws IOException {
+                InputStream classFile = ClassLoader.getSystemResourceAsStream(t.getInternalName() + ".class");
+                if (classFile == null) {
+                    throw new ClassFileNotFoundException();
+                }
+                try {
+                    return new ClassReader(classFile);
+                } finally {
+                    classFile.close();
+                }
+            }
+        };
+        Type missingType = Type.getObjectType("does/not/Exist");
+        try {
+            reader.hierarchyOf(missingType);
+            fail("Expected missing class file to be reported");
+        } catch (TypeNotFoundException expected) {
+            assertEquals(missingType, expected.getType());
+        }
+    }
+
+    public void testAsyncIsAssignableFromIsConsistentWithIsAssignableFrom() throws Exception {
+        TypeHierarchyReader reader = new TypeHierarchyReader();
+        Class<?>[] classes = {
+            Object.class, List.class, ArrayList.class, Collection.class, RandomAccess.class, Serializable.class,
+            String.class, CharSequence.class, Integer.class, int.class, Object[].class, String[].class,
+            CharSequence[].class, int[].class, Object[][].class, String[][].class, Runnable.class
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (Class<?> to : classes) {
+                for (Class<?> from : classes) {
+                    Type toType = Type.getType(to);
+                    Type fromType = Type.getType(from);
+                    assertEquals(to + " from " + from, reader.isAssignableFrom(toType, fromType),
+                        reader.isAssignableFromAsync(toType, fromType, executor).get().booleanValue());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testAsyncIsAssignableFromLooksUpSupertypesConcurrently() throws Exception {
+        final AtomicInteger inProgress = new AtomicInteger();
+        final AtomicInteger mostInProgress = new AtomicInteger();
+        TypeHierarchyReader slowReader = new TypeHierarchyReader() {
+            @Override
+            public TypeHierarchy hierarchyOf(Type t) {
+                int now = inProgress.incrementAndGet();
+                try {
+                    int most;
+                    do {
+                        most = mostInProgress.get();
+                    } while (now > most && !mostInProgress.compareAndSet(most, now));
+                    Thread.sleep(20);
+                    return super.hierarchyOf(t);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    inProgress.decrementAndGet();
+                }
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            assertFalse(slowReader.isAssignableFromAsync(Type.getType(Runnable.class), arrayListType, executor).get());
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(mostInProgress.get() > 1);
+    }
+
+    public void testAsyncLookupReportsMissingType() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Type missingType = Type.getObjectType("does/not/Exist");
+            new TypeHierarchyReader().isAssignableFromAsync(listType, missingType, executor).get();
+            fail("Expected missing class file to be reported");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof TypeNotFoundException);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testAsyncLookupIsAssignableThroughSuperClassDespiteMissingInterface() throws Exception {
+        final Type child = Type.getObjectType("generated/Child");
+        final Type missingInterface = Type.getObjectType("does/not/Exist");
+        TypeHierarchyReader reader = new TypeHierarchyReader() {
+            @Override
+            public TypeHierarchy hierarchyOf(Type t) {
+                if (t.equals(child)) {
+                    return new TypeHierarchy(child, arrayListType, Arrays.asList(missingInterface), false);
+                } else if (t.equals(missingInterface)) {
+                    throw new TypeNotFoundException(t, null);
+                }
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return super.hierarchyOf(t);
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertTrue(reader.isAssignableFromAsync(listType, child, executor).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
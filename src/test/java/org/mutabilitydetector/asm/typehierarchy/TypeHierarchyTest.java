@@ -0,0 +1,45 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.Type;
+
+public class TypeHierarchyTest extends TestCase {
+
+    public void testArrayHierarchyCarriesElementTypeAndDimensions() throws Exception {
+        TypeHierarchy hierarchy = TypeHierarchy.hierarchyForArrayOfType(Type.getType(String[][].class));
+
+        assertTrue(hierarchy.isArray());
+        assertEquals(Type.getType(String.class), hierarchy.elementType());
+        assertEquals(2, hierarchy.dimensions());
+        assertTrue(hierarchy.isReferenceArrayType());
+    }
+
+    public void testNonArrayHierarchyHasNoElementType() throws Exception {
+        assertFalse(TypeHierarchy.JAVA_LANG_OBJECT.isArray());
+        assertNull(TypeHierarchy.JAVA_LANG_OBJECT.elementType());
+        assertEquals(0, TypeHierarchy.JAVA_LANG_OBJECT.dimensions());
+        assertNull(TypeHierarchy.INT_HIERARCHY.elementType());
+    }
+
+    public void testSharesHierarchiesOfCommonArrayTypes() throws Exception {
+        assertSame(TypeHierarchy.hierarchyForArrayOfType(Type.getType(int[].class)),
+            TypeHierarchy.hierarchyForArrayOfType(Type.getType("[I")));
+        assertSame(TypeHierarchy.hierarchyForArrayOfType(Type.getType(Object[].class)),
+            TypeHierarchy.hierarchyForArrayOfType(Type.getType("[Ljava/lang/Object;")));
+    }
+
+    public void testPrimitiveArrayAssignabilityDoesNotUseReader() throws Exception {
+        TypeHierarchyReader reader = mock(TypeHierarchyReader.class);
+        TypeHierarchy intArrays = TypeHierarchy.hierarchyForArrayOfType(Type.getType(int[][].class));
+
+        assertTrue(intArrays.isAssignableFrom(
+            TypeHierarchy.hierarchyForArrayOfType(Type.getType(int[][].class)), reader));
+        assertFalse(intArrays.isAssignableFrom(
+            TypeHierarchy.hierarchyForArrayOfType(Type.getType(long[][].class)), reader));
+        verifyNoInteractions(reader);
+    }
+}
@@ -0,0 +1,91 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import static org.mutabilitydetector.asm.typehierarchy.ClassFileHeaderTest.classFileOf;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.Type;
+
+public class VirtualThreadTypeHierarchyReaderTest extends TestCase {
+
+    private static final Class<?>[] CLASSES = { ArrayList.class, List.class, String.class, Integer.class };
+
+    private final ClassFileSource slowSource = new ClassFileSource() {
+        @Override
+        public byte[] read(String internalName) throws IOException {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (Class<?> c : CLASSES) {
+                if (Type.getInternalName(c).equals(internalName)) {
+                    return classFileOf(c);
+                }
+            }
+            throw new FileNotFoundException("Class not found");
+        }
+    };
+
+    public void testUsesVirtualThreadsOnlyWhereAvailable() throws Exception {
+        VirtualThreadTypeHierarchyReader reader = new VirtualThreadTypeHierarchyReader(slowSource);
+        try {
+            assertEquals(virtualThreadsAvailable(), reader.usesVirtualThreads());
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testCompletesManyOutstandingLoads() throws Exception {
+        VirtualThreadTypeHierarchyReader reader = new VirtualThreadTypeHierarchyReader(slowSource, 16);
+        try {
+            List<CompletableFuture<TypeHierarchy>> loads = new ArrayList<CompletableFuture<TypeHierarchy>>();
+            for (int i = 0; i < 400; i++) {
+                loads.add(reader.hierarchyOfAsync(Type.getType(CLASSES[i % CLASSES.length])));
+            }
+            for (int i = 0; i < loads.size(); i++) {
+                assertEquals(Type.getType(CLASSES[i % CLASSES.length]), loads.get(i).get().type());
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testFallsBackToPlatformThreads() throws Exception {
+        VirtualThreadTypeHierarchyReader reader = new VirtualThreadTypeHierarchyReader(slowSource, 2, false);
+        try {
+            assertFalse(reader.usesVirtualThreads());
+            assertTrue(reader.isAssignableFromAsync(Type.getType(List.class), Type.getType(ArrayList.class)).get());
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testReportsMissingClassFileFromSource() throws Exception {
+        VirtualThreadTypeHierarchyReader reader = new VirtualThreadTypeHierarchyReader(slowSource);
+        try {
+            reader.hierarchyOfAsync(Type.getObjectType("does/not/Exist")).get();
+            fail("Expected missing class file to be reported");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof TypeNotFoundException);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static boolean virtualThreadsAvailable() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
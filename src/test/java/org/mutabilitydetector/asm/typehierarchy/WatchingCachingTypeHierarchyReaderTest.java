@@ -0,0 +1,161 @@
+package org.mutabilitydetector.asm.typehierarchy;
+
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Type;
+
+public class WatchingCachingTypeHierarchyReaderTest extends TestCase {
+
+    private static final Type SUPERCLASS = Type.getType(Superclass.class);
+    private static final Type SUBCLASS = Type.getType(Subclass.class);
+    private static final Type SUB_SUBCLASS = Type.getType(SubSubclass.class);
+    private static final Type UNRELATED = Type.getType(Unrelated.class);
+
+    private final TemporaryClassPath classPath = new TemporaryClassPath();
+    private final List<Type> lookups = new ArrayList<Type>();
+    private File directory;
+    private ClassPathTypeHierarchyReader classFiles;
+    private WatchingCachingTypeHierarchyReader reader;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = classPath.directoryOf(Superclass.class, Subclass.class, SubSubclass.class, Unrelated.class);
+        classFiles = new ClassPathTypeHierarchyReader(directory);
+        reader = new WatchingCachingTypeHierarchyReader(new TypeHierarchyReader() {
+            @Override
+            public TypeHierarchy hierarchyOf(Type t) {
+                lookups.add(t);
+                return t.getSort() == Type.OBJECT && classFiles.contains(t)
+                    ? classFiles.hierarchyOf(t)
+                    : new TypeHierarchyReader().hierarchyOf(t);
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        reader.close();
+        classFiles.close();
+        classPath.delete();
+    }
+
+    public void testInvalidatingATypeFindsEveryCachedSubtype() throws Exception {
+        reader.hierarchyOf(SUB_SUBCLASS);
+        reader.hierarchyOf(SUBCLASS);
+        reader.hierarchyOf(UNRELATED);
+
+        Set<Type> affected = reader.invalidate(SUPERCLASS);
+
+        assertEquals(3, affected.size());
+        assertTrue(affected.contains(SUPERCLASS));
+        assertTrue(affected.contains(SUBCLASS));
+        assertTrue(affected.contains(SUB_SUBCLASS));
+    }
+
+    public void testEvictsOnlyResultsWhichDependedOnTheChangedType() throws Exception {
+        reader.isAssignableFrom(SUPERCLASS, SUB_SUBCLASS);
+        reader.isAssignableFrom(Type.getType(Object.class), UNRELATED);
+        reader.isAssignableFrom(Type.getType(Superclass[].class), Type.getType(Subclass[].class));
+        reader.invalidate(SUPERCLASS);
+        lookups.clear();
+
+        reader.isAssignableFrom(Type.getType(Object.class), UNRELATED);
+        assertTrue(lookups.isEmpty());
+        reader.hierarchyOf(SUBCLASS);
+        assertTrue(lookups.isEmpty());
+
+        reader.isAssignableFrom(SUPERCLASS, SUB_SUBCLASS);
+        assertEquals(1, lookups.size());
+        assertEquals(SUPERCLASS, lookups.get(0));
+        reader.isAssignableFrom(Type.getType(Superclass[].class), Type.getType(Subclass[].class));
+        assertEquals(1, lookups.size());
+    }
+
+    public void testEvictsResultsOfCommonSuperClassFinder() throws Exception {
+        CommonSuperClassFinder finder = reader.newCommonSuperClassFinder();
+        assertEquals(SUPERCLASS.getInternalName(),
+            finder.commonSuperClassOf(SUB_SUBCLASS.getInternalName(), Type.getInternalName(OtherSubclass.class)));
+
+        reader.invalidate(SUBCLASS);
+        lookups.clear();
+        finder.commonSuperClassOf(SUB_SUBCLASS.getInternalName(), Type.getInternalName(OtherSubclass.class));
+
+        assertTrue(lookups.contains(SUBCLASS));
+        assertFalse(lookups.contains(Type.getType(OtherSubclass.class)));
+    }
+
+    public void testInvalidatesTypeWhenItsClassFileChanges() throws Exception {
+        reader.watch(directory);
+        assertEquals(SUPERCLASS, reader.getSuperClass(SUBCLASS));
+
+        classPath.writeClassFile(directory, SUBCLASS.getInternalName(), classFileExtending(SUBCLASS, UNRELATED));
+
+        long deadline = System.currentTimeMillis() + 30000;
+        while (!UNRELATED.equals(reader.getSuperClass(SUBCLASS)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(UNRELATED, reader.getSuperClass(SUBCLASS));
+    }
+
+    public void testFindsClassFilesCreatedBeforeEverythingWasInvalidated() throws Exception {
+        Type created = Type.getObjectType("generated/Created");
+        WatchingCachingTypeHierarchyReader watching = new WatchingCachingTypeHierarchyReader(
+            new MissingTypeCachingTypeHierarchyReader(classFiles, MissingTypePolicy.THROW));
+        assertNotFound(watching, created);
+
+        File classFile =
+            classPath.writeClassFile(directory, created.getInternalName(), classFileExtending(created, UNRELATED));
+        watching.invalidateAll();
+        assertEquals(UNRELATED, watching.getSuperClass(created));
+
+        classFile.delete();
+        watching.invalidateAll();
+        assertNotFound(watching, created);
+    }
+
+    public void testFindsClassFilesCreatedAndDeletedAfterTheUnderlyingReaderWasCreated() throws Exception {
+        Type created = Type.getObjectType("generated/Created");
+        WatchingCachingTypeHierarchyReader watching = new WatchingCachingTypeHierarchyReader(
+            new MissingTypeCachingTypeHierarchyReader(classFiles, MissingTypePolicy.THROW));
+        assertNotFound(watching, created);
+
+        File classFile =
+            classPath.writeClassFile(directory, created.getInternalName(), classFileExtending(created, UNRELATED));
+        watching.invalidate(created);
+        assertEquals(UNRELATED, watching.getSuperClass(created));
+
+        classFile.delete();
+        watching.invalidate(created);
+        assertNotFound(watching, created);
+    }
+
+    private static void assertNotFound(TypeHierarchyReader reader, Type t) {
+        try {
+            reader.hierarchyOf(t);
+            fail("Expected " + t + " not to be found");
+        } catch (TypeNotFoundException expected) {
+        }
+    }
+
+    private static byte[] classFileExtending(Type type, Type superClass) {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(V1_8, ACC_PUBLIC, type.getInternalName(), null, superClass.getInternalName(), null);
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    static class Superclass { }
+    static class Subclass extends Superclass { }
+    static class SubSubclass extends Subclass { }
+    static class OtherSubclass extends Superclass { }
+    static class Unrelated { }
+}